@@ -29,12 +29,14 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.ZoneId;
 import java.util.Date;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.restlet.Server;
@@ -44,6 +46,9 @@ import org.restlet.util.Series;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.blackducksoftware.integration.email.batch.processor.ComponentVulnerabilityCache;
+import com.blackducksoftware.integration.email.batch.processor.OpenPolicyViolationStore;
+import com.blackducksoftware.integration.email.batch.processor.RollupProcessor;
 import com.blackducksoftware.integration.email.extension.config.ExtensionConfigManager;
 import com.blackducksoftware.integration.email.extension.config.ExtensionInfo;
 import com.blackducksoftware.integration.email.extension.server.EmailExtensionApplication;
@@ -52,12 +57,23 @@ import com.blackducksoftware.integration.email.extension.server.oauth.OAuthEndpo
 import com.blackducksoftware.integration.email.extension.server.oauth.listeners.IAuthorizedListener;
 import com.blackducksoftware.integration.email.model.ExtensionProperties;
 import com.blackducksoftware.integration.email.model.JavaMailWrapper;
+import com.blackducksoftware.integration.email.model.MailSpool;
+import com.blackducksoftware.integration.email.model.SmtpConnectionPool;
 import com.blackducksoftware.integration.email.notifier.CustomDigestNotifier;
 import com.blackducksoftware.integration.email.notifier.DailyDigestNotifier;
+import com.blackducksoftware.integration.email.notifier.DailyRollupBuilder;
+import com.blackducksoftware.integration.email.notifier.DailyRollupStore;
+import com.blackducksoftware.integration.email.notifier.DigestResources;
+import com.blackducksoftware.integration.email.notifier.MonthlyDigestNotifier;
 import com.blackducksoftware.integration.email.notifier.NotifierManager;
+import com.blackducksoftware.integration.email.notifier.PreAggregationNotifier;
 import com.blackducksoftware.integration.email.notifier.RealTimeDigestNotifier;
 import com.blackducksoftware.integration.email.notifier.TestEmailNotifier;
+import com.blackducksoftware.integration.email.notifier.WeeklyDigestNotifier;
 import com.blackducksoftware.integration.email.service.EmailMessagingService;
+import com.blackducksoftware.integration.email.service.MailDeliveryService;
+import com.blackducksoftware.integration.email.service.NotificationIngestService;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
 import com.blackducksoftware.integration.hub.builder.HubServerConfigBuilder;
 import com.blackducksoftware.integration.hub.dataservice.extension.ExtensionConfigDataService;
 import com.blackducksoftware.integration.hub.dataservice.notification.NotificationDataService;
@@ -82,6 +98,8 @@ public class EmailEngine implements IAuthorizedListener {
 
     private EmailMessagingService emailMessagingService;
 
+    private MailDeliveryService mailDeliveryService;
+
     private HubServerConfig hubServerConfig;
 
     private RestConnection restConnection;
@@ -94,6 +112,8 @@ public class EmailEngine implements IAuthorizedListener {
 
     private NotifierManager notifierManager;
 
+    private DigestResources digestResources;
+
     private final ExtensionTokenManager tokenManager;
 
     private final OAuthEndpoint restletComponent;
@@ -108,6 +128,8 @@ public class EmailEngine implements IAuthorizedListener {
 
     private EmailExtensionApplication emailExtensionApplication;
 
+    private ExecutorService executorService;
+
     public EmailEngine() throws FileNotFoundException, IOException {
         appProperties = createAppProperties();
         extensionProperties = createExtensionProperties();
@@ -158,6 +180,10 @@ public class EmailEngine implements IAuthorizedListener {
         return notifierManager;
     }
 
+    public DigestResources getDigestResources() {
+        return digestResources;
+    }
+
     public ExtensionTokenManager getTokenManager() {
         return tokenManager;
     }
@@ -182,6 +208,14 @@ public class EmailEngine implements IAuthorizedListener {
         return hubServicesFactory;
     }
 
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    public MailDeliveryService getMailDeliveryService() {
+        return mailDeliveryService;
+    }
+
     public void start() {
         try {
             restletComponent.start();
@@ -194,6 +228,18 @@ public class EmailEngine implements IAuthorizedListener {
     public void shutDown() {
         try {
             notifierManager.stop();
+            if (executorService != null) {
+                executorService.shutdown();
+            }
+            if (digestResources != null) {
+                digestResources.shutDown();
+            }
+            if (mailDeliveryService != null) {
+                mailDeliveryService.shutDown();
+            }
+            if (javaMailWrapper != null) {
+                javaMailWrapper.shutDown();
+            }
             restletComponent.stop();
         } catch (final Exception e) {
             logger.error("Error stopping Email Engine", e);
@@ -254,7 +300,7 @@ public class EmailEngine implements IAuthorizedListener {
 
     public ExecutorService createExecutorService() {
         final ThreadFactory threadFactory = Executors.defaultThreadFactory();
-        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), threadFactory);
+        return Executors.newFixedThreadPool(extensionProperties.getNotifierThreadCount(), threadFactory);
     }
 
     public ExtensionProperties createExtensionProperties() {
@@ -262,11 +308,28 @@ public class EmailEngine implements IAuthorizedListener {
     }
 
     public JavaMailWrapper createJavaMailWrapper() {
-        return new JavaMailWrapper();
+        final SmtpConnectionPool connectionPool = new SmtpConnectionPool(extensionProperties.getSmtpPoolMaxMessages(),
+                extensionProperties.getSmtpPoolMaxIdle(), TimeUnit.SECONDS.toMillis(extensionProperties.getSmtpPoolIdleSeconds()));
+        return new JavaMailWrapper(connectionPool);
     }
 
     public EmailMessagingService createEmailMessagingService() {
-        return new EmailMessagingService(extensionProperties, configuration, javaMailWrapper);
+        return new EmailMessagingService(extensionProperties, configuration, javaMailWrapper, mailDeliveryService);
+    }
+
+    // returns null unless the spool is enabled; then messages are queued on disk and delivered by a separate worker pool
+    public MailDeliveryService createMailDeliveryService() throws IOException {
+        if (!extensionProperties.isMailSpoolEnabled()) {
+            return null;
+        }
+        String spoolDirectory = extensionProperties.getMailSpoolDirectory();
+        if (StringUtils.isBlank(spoolDirectory)) {
+            final String configLocation = System.getProperty(ExtensionConfigManager.PROPERTY_KEY_CONFIG_LOCATION_PATH);
+            spoolDirectory = new File(configLocation, "mail-spool").getCanonicalPath();
+        }
+        final MailSpool mailSpool = new MailSpool(new File(spoolDirectory));
+        return new MailDeliveryService(javaMailWrapper, mailSpool, extensionProperties.getMailDeliveryThreadCount(),
+                extensionProperties.getMailDeliveryMaxAttempts());
     }
 
     public HubServerConfig createHubConfig(final String hubUri) {
@@ -321,20 +384,56 @@ public class EmailEngine implements IAuthorizedListener {
         return restConnection;
     }
 
+    // returns null unless ingest is enabled; then the digest notifiers share one reader of the Hub's notifications
+    public NotificationIngestService createNotificationIngestService() {
+        if (!extensionProperties.isNotificationIngestEnabled()) {
+            return null;
+        }
+        return new NotificationIngestService(notificationDataService, extensionProperties.getNotificationMailboxIdleDays());
+    }
+
+    // the caches and stores shared by every digest notifier, kept in the config directory
+    public DigestResources createDigestResources() throws IOException {
+        final String configLocation = System.getProperty(ExtensionConfigManager.PROPERTY_KEY_CONFIG_LOCATION_PATH);
+        final MetaService metaService = hubServicesFactory.createMetaService(new ExtensionLogger(logger));
+        final ComponentVulnerabilityCache vulnerabilityCache = new ComponentVulnerabilityCache(hubServicesFactory.createHubResponseService(),
+                hubServicesFactory.createVulnerabilityRequestService(), metaService, extensionProperties.getVulnerabilityCacheExpireMinutes(),
+                extensionProperties.getVulnerabilityCacheMaxSize(), extensionProperties.getVulnerabilityLookupMaxInFlight());
+        final OpenPolicyViolationStore violationStore = new OpenPolicyViolationStore(
+                new File(configLocation, "policy-violations.properties").getCanonicalFile());
+        final DailyRollupStore rollupStore = new DailyRollupStore(new File(configLocation, "rollups").getCanonicalFile(), ZoneId.systemDefault());
+        final DailyRollupBuilder rollupBuilder = new DailyRollupBuilder(rollupStore, notificationDataService,
+                new RollupProcessor(vulnerabilityCache, metaService));
+        return new DigestResources(vulnerabilityCache, violationStore, rollupStore, rollupBuilder);
+    }
+
     public NotifierManager createNotifierManager() {
         final NotifierManager manager = new NotifierManager();
 
         final DailyDigestNotifier dailyNotifier = new DailyDigestNotifier(extensionProperties, emailMessagingService, hubServicesFactory,
-                getExtensionInfoData());
+                getExtensionInfoData(), digestResources);
         final TestEmailNotifier testNotifier = new TestEmailNotifier(extensionProperties, emailMessagingService, hubServicesFactory, getExtensionInfoData());
         final RealTimeDigestNotifier realTimeNotifier = new RealTimeDigestNotifier(extensionProperties, emailMessagingService, hubServicesFactory,
-                getExtensionInfoData());
+                getExtensionInfoData(), digestResources);
         final CustomDigestNotifier customNotifier = new CustomDigestNotifier(extensionProperties, emailMessagingService, hubServicesFactory,
-                getExtensionInfoData());
+                getExtensionInfoData(), digestResources);
+        final WeeklyDigestNotifier weeklyNotifier = new WeeklyDigestNotifier(extensionProperties, emailMessagingService,
+                hubServicesFactory.createHubResponseService(), hubServicesFactory, getExtensionInfoData(), digestResources);
+        final MonthlyDigestNotifier monthlyNotifier = new MonthlyDigestNotifier(extensionProperties, emailMessagingService,
+                hubServicesFactory.createHubResponseService(), hubServicesFactory, getExtensionInfoData(), digestResources);
+        final NotificationIngestService ingestService = createNotificationIngestService();
+        dailyNotifier.setNotificationIngestService(ingestService);
+        realTimeNotifier.setNotificationIngestService(ingestService);
+        customNotifier.setNotificationIngestService(ingestService);
+        weeklyNotifier.setNotificationIngestService(ingestService);
+        monthlyNotifier.setNotificationIngestService(ingestService);
         manager.attach(dailyNotifier);
         manager.attach(realTimeNotifier);
         manager.attach(testNotifier);
         manager.attach(customNotifier);
+        manager.attach(weeklyNotifier);
+        manager.attach(monthlyNotifier);
+        manager.attach(new PreAggregationNotifier(dailyNotifier));
         emailExtensionApplication.getContext().getAttributes().put(EmailExtensionConstants.CONTEXT_ATTRIBUTE_KEY_TEST_NOTIFIER, testNotifier);
         return manager;
     }
@@ -438,14 +537,21 @@ public class EmailEngine implements IAuthorizedListener {
             hubServerConfig = createHubConfig(hubUri);
             restConnection = createRestConnection(hubUri);
             javaMailWrapper = createJavaMailWrapper();
+            mailDeliveryService = createMailDeliveryService();
+            if (mailDeliveryService != null) {
+                mailDeliveryService.start();
+            }
             hubServicesFactory = new HubServicesFactory(restConnection);
             emailMessagingService = createEmailMessagingService();
             notificationDataService = createNotificationDataService();
             extConfigDataService = createExtensionConfigDataService();
+            executorService = createExecutorService();
+            digestResources = createDigestResources();
             notifierManager = createNotifierManager();
             notifierManager.updateHubExtensionUri(tokenManager.getConfiguration().extensionUri);
+            notifierManager.updateExecutorService(executorService);
             notifierManager.start();
-        } catch (final MalformedURLException e) {
+        } catch (final IOException e) {
             logger.error("Error completing extension initialization", e);
         } finally {
             tokenManager.removeAuthorizedListener(this);
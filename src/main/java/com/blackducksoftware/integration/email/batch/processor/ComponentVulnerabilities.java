@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.blackducksoftware.integration.hub.model.enumeration.VulnerabilitySeverityEnum;
+import com.blackducksoftware.integration.hub.model.view.VulnerabilityView;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+
+// the vulnerabilities of a component version indexed by name so events can be classified without scanning the list.
+public class ComponentVulnerabilities {
+    private final List<VulnerabilityView> vulnerabilityList;
+
+    private final Map<String, NotificationCategoryEnum> categoryMap;
+
+    public ComponentVulnerabilities(final List<VulnerabilityView> vulnerabilityList) {
+        this.vulnerabilityList = Collections.unmodifiableList(vulnerabilityList);
+        final Map<String, NotificationCategoryEnum> categoryMap = new HashMap<>(vulnerabilityList.size() * 2);
+        for (final VulnerabilityView vulnerability : vulnerabilityList) {
+            if (!categoryMap.containsKey(vulnerability.vulnerabilityName)) {
+                categoryMap.put(vulnerability.vulnerabilityName, getEventCategory(vulnerability.severity));
+            }
+        }
+        this.categoryMap = Collections.unmodifiableMap(categoryMap);
+    }
+
+    public List<VulnerabilityView> getVulnerabilityList() {
+        return vulnerabilityList;
+    }
+
+    // null when the component version has no vulnerability with the name
+    public NotificationCategoryEnum getCategory(final String vulnerabilityName) {
+        return categoryMap.get(vulnerabilityName);
+    }
+
+    public int size() {
+        return vulnerabilityList.size();
+    }
+
+    private NotificationCategoryEnum getEventCategory(final String severityString) {
+        final VulnerabilitySeverityEnum severity = VulnerabilitySeverityEnum.valueOf(severityString.toUpperCase());
+
+        switch (severity) {
+        case HIGH: {
+            return NotificationCategoryEnum.HIGH_VULNERABILITY;
+        }
+        case MEDIUM: {
+            return NotificationCategoryEnum.MEDIUM_VULNERABILITY;
+        }
+        case LOW: {
+            return NotificationCategoryEnum.LOW_VULNERABILITY;
+        }
+        default: {
+            return NotificationCategoryEnum.VULNERABILITY;
+        }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.model.view.VulnerabilityView;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+// long lived cache of the indexed vulnerabilities of a component version shared by every user and every run.
+public class ComponentVulnerabilityCache {
+    public static final long DEFAULT_EXPIRE_MINUTES = 60;
+
+    public static final long DEFAULT_MAX_SIZE = 10000;
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    // lookup threads stop after this idle time, so a cache nobody uses any more holds no threads
+    private static final long LOOKUP_THREAD_IDLE_SECONDS = 60;
+
+    private final HubResponseService hubResponseService;
+
+    private final VulnerabilityRequestService vulnerabilityRequestService;
+
+    private final MetaService metaService;
+
+    private final Cache<String, ComponentVulnerabilities> vulnerabilityCache;
+
+    // the pool size is the limit of lookups in flight against the hub; null when lookups are made by the caller
+    private final ExecutorService lookupExecutor;
+
+    public ComponentVulnerabilityCache(final HubResponseService hubResponseService, final VulnerabilityRequestService vulnerabilityRequestService,
+            final MetaService metaService) {
+        this(hubResponseService, vulnerabilityRequestService, metaService, DEFAULT_EXPIRE_MINUTES, DEFAULT_MAX_SIZE, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public ComponentVulnerabilityCache(final HubResponseService hubResponseService, final VulnerabilityRequestService vulnerabilityRequestService,
+            final MetaService metaService, final long expireMinutes, final long maxSize, final int maxInFlight) {
+        this.hubResponseService = hubResponseService;
+        this.vulnerabilityRequestService = vulnerabilityRequestService;
+        this.metaService = metaService;
+        this.vulnerabilityCache = CacheBuilder.newBuilder().expireAfterWrite(expireMinutes, TimeUnit.MINUTES).maximumSize(maxSize).recordStats().build();
+        if (maxInFlight > 1) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, LOOKUP_THREAD_IDLE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new ThreadFactoryBuilder().setNameFormat("vulnerability-lookup-%d").setDaemon(true).build());
+            executor.allowCoreThreadTimeOut(true);
+            lookupExecutor = executor;
+        } else {
+            lookupExecutor = null;
+        }
+    }
+
+    public ComponentVulnerabilities getVulnerabilities(final String componentVersionUrl) throws IntegrationException {
+        try {
+            return vulnerabilityCache.get(componentVersionUrl, () -> fetchVulnerabilities(componentVersionUrl));
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IntegrationException) {
+                throw (IntegrationException) cause;
+            }
+            throw new IntegrationException(cause);
+        }
+    }
+
+    // resolves every distinct url once, concurrently when a lookup pool is configured. the map iterates in the order of the given urls.
+    public Map<String, ComponentVulnerabilities> getVulnerabilities(final Collection<String> componentVersionUrls) throws IntegrationException {
+        final Map<String, ComponentVulnerabilities> vulnerabilityMap = new LinkedHashMap<>();
+        if (lookupExecutor == null || lookupExecutor.isShutdown()) {
+            for (final String componentVersionUrl : componentVersionUrls) {
+                if (!vulnerabilityMap.containsKey(componentVersionUrl)) {
+                    vulnerabilityMap.put(componentVersionUrl, getVulnerabilities(componentVersionUrl));
+                }
+            }
+        } else {
+            final Map<String, Future<ComponentVulnerabilities>> lookupMap = new LinkedHashMap<>();
+            for (final String componentVersionUrl : componentVersionUrls) {
+                if (!lookupMap.containsKey(componentVersionUrl)) {
+                    lookupMap.put(componentVersionUrl, lookupExecutor.submit(() -> getVulnerabilities(componentVersionUrl)));
+                }
+            }
+            try {
+                for (final Map.Entry<String, Future<ComponentVulnerabilities>> entry : lookupMap.entrySet()) {
+                    vulnerabilityMap.put(entry.getKey(), waitForLookup(entry.getValue()));
+                }
+            } finally {
+                for (final Future<ComponentVulnerabilities> lookup : lookupMap.values()) {
+                    lookup.cancel(false);
+                }
+            }
+        }
+        return vulnerabilityMap;
+    }
+
+    // stops the lookup pool; the cache keeps answering with lookups made by the caller
+    public void shutDown() {
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdownNow();
+        }
+    }
+
+    public void invalidateAll() {
+        vulnerabilityCache.invalidateAll();
+    }
+
+    public long size() {
+        return vulnerabilityCache.size();
+    }
+
+    public CacheStats getStats() {
+        return vulnerabilityCache.stats();
+    }
+
+    private ComponentVulnerabilities waitForLookup(final Future<ComponentVulnerabilities> lookup) throws IntegrationException {
+        try {
+            return lookup.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IntegrationException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IntegrationException) {
+                throw (IntegrationException) cause;
+            }
+            throw new IntegrationException(cause);
+        }
+    }
+
+    private ComponentVulnerabilities fetchVulnerabilities(final String componentVersionUrl) throws IntegrationException {
+        final String vulnerabilityUrl = findVulnerabilityUrl(componentVersionUrl);
+        return new ComponentVulnerabilities(createVulnerabilityItemList(vulnerabilityUrl));
+    }
+
+    private String findVulnerabilityUrl(final String componentVersionUrl) throws IntegrationException {
+        String url = null;
+        final ComponentVersionView compVersion = hubResponseService.getItem(componentVersionUrl, ComponentVersionView.class);
+        url = metaService.getLinks(compVersion, MetaService.VULNERABILITIES_LINK).get(0);
+        return url;
+    }
+
+    private List<VulnerabilityView> createVulnerabilityItemList(final String vulnerabilityUrl) throws IntegrationException {
+        List<VulnerabilityView> itemList = Collections.emptyList();
+        if (!StringUtils.isBlank(vulnerabilityUrl)) {
+            itemList = vulnerabilityRequestService.getComponentVersionVulnerabilities(vulnerabilityUrl);
+        }
+        return itemList;
+    }
+}
@@ -22,11 +22,17 @@
 package com.blackducksoftware.integration.email.batch.processor;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import com.blackducksoftware.integration.email.model.batch.CategoryDataBuilder;
+import com.blackducksoftware.integration.email.model.batch.CategoryItemLimit;
 import com.blackducksoftware.integration.email.model.batch.ItemData;
 import com.blackducksoftware.integration.email.model.batch.ProjectData;
 import com.blackducksoftware.integration.email.model.batch.ProjectDataBuilder;
@@ -46,18 +52,69 @@ import com.blackducksoftware.integration.hub.notification.processor.event.Notifi
 import com.blackducksoftware.integration.hub.service.HubResponseService;
 
 public class EmailProcessor extends NotificationProcessor<Collection<ProjectData>> {
+    // the policy notifications cancel each other out so they are processed together for any policy trigger
+    public static final Set<NotificationCategoryEnum> POLICY_CATEGORIES = Collections.unmodifiableSet(EnumSet.of(
+            NotificationCategoryEnum.POLICY_VIOLATION, NotificationCategoryEnum.POLICY_VIOLATION_CLEARED, NotificationCategoryEnum.POLICY_VIOLATION_OVERRIDE));
 
+    public static final Set<NotificationCategoryEnum> VULNERABILITY_CATEGORIES = Collections.unmodifiableSet(EnumSet.of(
+            NotificationCategoryEnum.VULNERABILITY, NotificationCategoryEnum.HIGH_VULNERABILITY, NotificationCategoryEnum.MEDIUM_VULNERABILITY,
+            NotificationCategoryEnum.LOW_VULNERABILITY));
+
+    private CategoryItemLimit itemLimit = CategoryItemLimit.UNBOUNDED;
+
+    // a private cache whose lookup threads stop when idle; the notifiers pass the shared cache instead
     public EmailProcessor(final HubResponseService hubResponseService, final VulnerabilityRequestService vulnerabilityRequestService,
             final MetaService metaService) {
-        final MapProcessorCache policyCache = new MapProcessorCache();
-        final VulnerabilityCache vulnerabilityCache = new VulnerabilityCache(hubResponseService, vulnerabilityRequestService, metaService);
-        getCacheList().add(policyCache);
-        getCacheList().add(vulnerabilityCache);
-        getProcessorMap().put(PolicyViolationContentItem.class, new PolicyViolationProcessor(policyCache, metaService));
-        getProcessorMap().put(PolicyViolationClearedContentItem.class, new PolicyViolationClearedProcessor(policyCache, metaService));
-        getProcessorMap().put(PolicyOverrideContentItem.class, new PolicyOverrideProcessor(policyCache, metaService));
-        getProcessorMap().put(VulnerabilityContentItem.class,
-                new VulnerabilityProcessor(vulnerabilityCache, metaService));
+        this(new ComponentVulnerabilityCache(hubResponseService, vulnerabilityRequestService, metaService), metaService);
+    }
+
+    public EmailProcessor(final ComponentVulnerabilityCache componentVulnerabilityCache, final MetaService metaService) {
+        this(componentVulnerabilityCache, metaService, EnumSet.allOf(NotificationCategoryEnum.class));
+    }
+
+    // only the sub processors the triggers can produce events for are registered, so without a vulnerability trigger
+    // no vulnerability severities are resolved at all
+    public EmailProcessor(final ComponentVulnerabilityCache componentVulnerabilityCache, final MetaService metaService,
+            final Set<NotificationCategoryEnum> triggers) {
+        this(componentVulnerabilityCache, metaService, triggers, null);
+    }
+
+    // with a violation store the policy notifications also cancel the violations reported by earlier windows
+    public EmailProcessor(final ComponentVulnerabilityCache componentVulnerabilityCache, final MetaService metaService,
+            final Set<NotificationCategoryEnum> triggers, final OpenPolicyViolationStore violationStore) {
+        if (!Collections.disjoint(triggers, POLICY_CATEGORIES)) {
+            final MapProcessorCache policyCache = new MapProcessorCache();
+            getCacheList().add(policyCache);
+            getProcessorMap().put(PolicyViolationContentItem.class, new PolicyViolationProcessor(policyCache, metaService, violationStore));
+            getProcessorMap().put(PolicyViolationClearedContentItem.class, new PolicyViolationClearedProcessor(policyCache, metaService, violationStore));
+            getProcessorMap().put(PolicyOverrideContentItem.class, new PolicyOverrideProcessor(policyCache, metaService, violationStore));
+        }
+        if (!Collections.disjoint(triggers, VULNERABILITY_CATEGORIES)) {
+            final VulnerabilityCache vulnerabilityCache = new VulnerabilityCache(componentVulnerabilityCache);
+            getCacheList().add(vulnerabilityCache);
+            getProcessorMap().put(VulnerabilityContentItem.class,
+                    new VulnerabilityProcessor(vulnerabilityCache, metaService));
+        }
+    }
+
+    public CategoryItemLimit getItemLimit() {
+        return itemLimit;
+    }
+
+    // with a bounded limit each category keeps its exact count but only its highest ranked items
+    public void setItemLimit(final CategoryItemLimit itemLimit) {
+        this.itemLimit = itemLimit;
+    }
+
+    // drops the notifications no registered sub processor handles before any of them are processed
+    public SortedSet<NotificationContentItem> filterNotifications(final SortedSet<NotificationContentItem> notifications) {
+        final SortedSet<NotificationContentItem> filteredNotifications = new TreeSet<>(notifications.comparator());
+        for (final NotificationContentItem notification : notifications) {
+            if (getProcessorMap().containsKey(notification.getClass())) {
+                filteredNotifications.add(notification);
+            }
+        }
+        return filteredNotifications.size() == notifications.size() ? notifications : filteredNotifications;
     }
 
     @Override
@@ -80,6 +137,7 @@ public class EmailProcessor extends NotificationProcessor<Collection<ProjectData
                 final ProjectDataBuilder projectBuilder = new ProjectDataBuilder();
                 projectBuilder.setProjectName(notificationContent.getProjectVersion().getProjectName());
                 projectBuilder.setProjectVersion(notificationContent.getProjectVersion().getProjectVersionName());
+                projectBuilder.setProjectVersionUrl(projectKey);
                 projectDataMap.put(projectKey, projectBuilder);
                 categoryBuilderMap = projectBuilder.getCategoryBuilderMap();
             } else {
@@ -90,7 +148,7 @@ public class EmailProcessor extends NotificationProcessor<Collection<ProjectData
             CategoryDataBuilder categoryData;
             final NotificationCategoryEnum categoryKey = event.getCategoryType();
             if (!categoryBuilderMap.containsKey(categoryKey)) {
-                categoryData = new CategoryDataBuilder();
+                categoryData = new CategoryDataBuilder(itemLimit);
                 categoryData.setCategoryKey(categoryKey.name());
                 categoryBuilderMap.put(categoryKey, categoryData);
             } else {
@@ -101,8 +159,7 @@ public class EmailProcessor extends NotificationProcessor<Collection<ProjectData
                 count = (Integer) event.getDataSet().get(ItemTypeEnum.COUNT.name());
             }
             categoryData.incrementItemCount(count);
-            categoryData.addItem(new ItemData(event.getDataSet()));
-            categoryData.addItem(new ItemData(event.getDataSet()));
+            categoryData.addItem(ItemData.fromDataSet(event.getDataSet()));
         }
         // build
         final Collection<ProjectData> dataList = new LinkedList<>();
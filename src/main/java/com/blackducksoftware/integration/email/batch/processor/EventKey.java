@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+// 128 bit key of a notification event, hashed straight from the urls that identify the event instead of concatenating
+// them into one long string first. the processor caches take string keys, so the key is handed to them in its fixed
+// width form of 32 hex digits.
+public final class EventKey {
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private static final char SEPARATOR = '\u0000';
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long high;
+
+    private final long low;
+
+    private EventKey(final long high, final long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static Builder builder(final String issueType) {
+        return new Builder().add(issueType);
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof EventKey)) {
+            return false;
+        }
+        final EventKey other = (EventKey) obj;
+        return high == other.high && low == other.low;
+    }
+
+    // the bits are already well mixed by the hash function
+    @Override
+    public int hashCode() {
+        return (int) low;
+    }
+
+    @Override
+    public String toString() {
+        final char[] chars = new char[32];
+        for (int index = 0; index < 16; index++) {
+            chars[15 - index] = HEX_DIGITS[(int) (high >>> (index * 4)) & 0xf];
+            chars[31 - index] = HEX_DIGITS[(int) (low >>> (index * 4)) & 0xf];
+        }
+        return new String(chars);
+    }
+
+    public static final class Builder {
+        private final Hasher hasher = HASH_FUNCTION.newHasher();
+
+        private Builder() {
+        }
+
+        // a missing value still takes its position so the values cannot shift into each other
+        public Builder add(final String value) {
+            if (value != null) {
+                hasher.putUnencodedChars(value);
+            }
+            hasher.putChar(SEPARATOR);
+            return this;
+        }
+
+        public EventKey build() {
+            final HashCode hashCode = hasher.hash();
+            final byte[] bytes = hashCode.asBytes();
+            return new EventKey(Longs.fromBytes(bytes[0], bytes[1], bytes[2], bytes[3], bytes[4], bytes[5], bytes[6], bytes[7]),
+                    Longs.fromBytes(bytes[8], bytes[9], bytes[10], bytes[11], bytes[12], bytes[13], bytes[14], bytes[15]));
+        }
+    }
+}
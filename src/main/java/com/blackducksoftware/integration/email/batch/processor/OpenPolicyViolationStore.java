@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// the policy violations seen by earlier runs, by event key, with when each was raised and when it was last cleared or
+// overridden. the per-run cache only cancels a violation raised in the same window, this lets a clearing or override
+// cancel a violation that was already reported by an earlier window. the state comes from the notifications themselves,
+// so every user and notifier processing the same notification gets the same answer whatever order they run in.
+public class OpenPolicyViolationStore {
+    private static final String VALUE_SEPARATOR = ",";
+
+    private final Logger logger = LoggerFactory.getLogger(OpenPolicyViolationStore.class);
+
+    private final File stateFile;
+
+    private final Map<String, ViolationState> violations = new ConcurrentHashMap<>();
+
+    // set when a violation is opened, closed or pruned so save only writes the file when the state changed
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private static class ViolationState {
+        private final long openedAt;
+
+        // 0 while the violation is open
+        private final long closedAt;
+
+        private ViolationState(final long openedAt, final long closedAt) {
+            this.openedAt = openedAt;
+            this.closedAt = closedAt;
+        }
+
+        // true when the violation was open just before the given time
+        private boolean isOpenBefore(final long time) {
+            return openedAt < time && (closedAt == 0 || closedAt >= time);
+        }
+
+        private long getLastChange() {
+            return Math.max(openedAt, closedAt);
+        }
+    }
+
+    public OpenPolicyViolationStore(final File stateFile) {
+        this.stateFile = stateFile;
+        if (stateFile.exists()) {
+            final Properties properties = new Properties();
+            try (InputStream input = new FileInputStream(stateFile)) {
+                properties.load(input);
+            } catch (final IOException ex) {
+                logger.error("Cannot read policy violation file {}", stateFile, ex);
+            }
+            for (final String eventKey : properties.stringPropertyNames()) {
+                final String[] times = StringUtils.split(properties.getProperty(eventKey), VALUE_SEPARATOR);
+                if (times.length == 2) {
+                    violations.put(eventKey, new ViolationState(NumberUtils.toLong(times[0]), NumberUtils.toLong(times[1])));
+                }
+            }
+        }
+    }
+
+    public void openViolation(final String eventKey, final Date openedAt) {
+        final long time = openedAt.getTime();
+        violations.compute(eventKey, (key, state) -> {
+            if (state == null) {
+                dirty.set(true);
+                return new ViolationState(time, 0);
+            }
+            if (time <= state.openedAt) {
+                return state;
+            }
+            dirty.set(true);
+            // a clearing after this violation still closes it
+            return new ViolationState(time, state.closedAt > time ? state.closedAt : 0);
+        });
+    }
+
+    // records the clearing or override and returns true when it closes a violation that was open before it
+    public boolean closeViolation(final String eventKey, final Date closedAt) {
+        final long time = closedAt.getTime();
+        final boolean[] wasOpen = new boolean[1];
+        violations.computeIfPresent(eventKey, (key, state) -> {
+            wasOpen[0] = state.isOpenBefore(time);
+            if (state.openedAt < time && (state.closedAt == 0 || time < state.closedAt)) {
+                dirty.set(true);
+                return new ViolationState(state.openedAt, time);
+            }
+            return state;
+        });
+        return wasOpen[0];
+    }
+
+    public int size() {
+        return violations.size();
+    }
+
+    // drops the violations that have not changed since the given time
+    public void prune(final Date before) {
+        final long time = before.getTime();
+        final Iterator<ViolationState> iterator = violations.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getLastChange() < time) {
+                iterator.remove();
+                dirty.set(true);
+            }
+        }
+    }
+
+    // written to a temporary file and moved into place so a crash leaves either the old or the new state. does nothing when
+    // no violation changed since the last save.
+    public synchronized void save() throws IOException {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            write();
+        } catch (final IOException ex) {
+            dirty.set(true);
+            throw ex;
+        }
+    }
+
+    private void write() throws IOException {
+        final Properties properties = new Properties();
+        for (final Map.Entry<String, ViolationState> entry : violations.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().openedAt + VALUE_SEPARATOR + entry.getValue().closedAt);
+        }
+        final File tempFile = new File(stateFile.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(tempFile)) {
+            properties.store(output, "open policy violations");
+            output.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -42,6 +42,10 @@ public class PolicyOverrideProcessor extends PolicyViolationProcessor {
         super(cache, metaService);
     }
 
+    public PolicyOverrideProcessor(final SubProcessorCache cache, final MetaService metaService, final OpenPolicyViolationStore violationStore) {
+        super(cache, metaService, violationStore);
+    }
+
     @Override
     public void process(final NotificationContentItem notification) throws HubIntegrationException {
         final PolicyOverrideContentItem policyOverrideContentItem = (PolicyOverrideContentItem) notification;
@@ -52,9 +56,10 @@ public class PolicyOverrideProcessor extends PolicyViolationProcessor {
             final String eventKey = generateEventKey(dataMap);
             final Map<String, Object> dataSet = generateDataSet(dataMap);
             final NotificationEvent event = new NotificationEvent(eventKey, NotificationCategoryEnum.POLICY_VIOLATION, dataSet);
+            final boolean closesReportedViolation = closeViolation(eventKey, notification);
             if (getCache().hasEvent(event.getEventKey())) {
                 getCache().removeEvent(event);
-            } else {
+            } else if (!closesReportedViolation) {
                 event.setCategoryType(NotificationCategoryEnum.POLICY_VIOLATION_OVERRIDE);
                 getCache().addEvent(event);
             }
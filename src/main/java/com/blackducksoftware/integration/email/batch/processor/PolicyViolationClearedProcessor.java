@@ -39,6 +39,10 @@ public class PolicyViolationClearedProcessor extends PolicyViolationProcessor {
         super(cache, metaService);
     }
 
+    public PolicyViolationClearedProcessor(final SubProcessorCache cache, final MetaService metaService, final OpenPolicyViolationStore violationStore) {
+        super(cache, metaService, violationStore);
+    }
+
     @Override
     public void process(final NotificationContentItem notification) throws HubIntegrationException {
         if (notification instanceof PolicyViolationClearedContentItem) {
@@ -50,9 +54,10 @@ public class PolicyViolationClearedProcessor extends PolicyViolationProcessor {
                 final String eventKey = generateEventKey(dataMap);
                 final Map<String, Object> dataSet = generateDataSet(dataMap);
                 final NotificationEvent event = new NotificationEvent(eventKey, NotificationCategoryEnum.POLICY_VIOLATION, dataSet);
+                final boolean closesReportedViolation = closeViolation(eventKey, notification);
                 if (getCache().hasEvent(event.getEventKey())) {
                     getCache().removeEvent(event);
-                } else {
+                } else if (!closesReportedViolation) {
                     event.setCategoryType(NotificationCategoryEnum.POLICY_VIOLATION_CLEARED);
                     getCache().addEvent(event);
                 }
@@ -42,8 +42,16 @@ public class PolicyViolationProcessor extends NotificationSubProcessor {
 
     public final static String POLICY_RULE = "policyRule";
 
+    private final OpenPolicyViolationStore violationStore;
+
     public PolicyViolationProcessor(final SubProcessorCache cache, final MetaService metaService) {
+        this(cache, metaService, null);
+    }
+
+    // without a violation store a clearing or override only cancels a violation raised in the same window
+    public PolicyViolationProcessor(final SubProcessorCache cache, final MetaService metaService, final OpenPolicyViolationStore violationStore) {
         super(cache, metaService);
+        this.violationStore = violationStore;
     }
 
     @Override
@@ -58,40 +66,29 @@ public class PolicyViolationProcessor extends NotificationSubProcessor {
                 final Map<String, Object> dataSet = generateDataSet(dataMap);
                 final NotificationEvent event = new NotificationEvent(eventKey, NotificationCategoryEnum.POLICY_VIOLATION, dataSet);
                 getCache().addEvent(event);
+                if (violationStore != null) {
+                    violationStore.openViolation(eventKey, notification.getCreatedAt());
+                }
             }
         }
     }
 
+    // true when the clearing or override closes a violation an earlier window has already reported
+    protected boolean closeViolation(final String eventKey, final NotificationContentItem notification) {
+        return violationStore != null && violationStore.closeViolation(eventKey, notification.getCreatedAt());
+    }
+
     @Override
     public String generateEventKey(final Map<String, Object> dataMap) throws HubIntegrationException {
         final PolicyViolationContentItem content = (PolicyViolationContentItem) dataMap.get(POLICY_CONTENT_ITEM);
         final PolicyRuleView rule = (PolicyRuleView) dataMap.get(POLICY_RULE);
-        final StringBuilder keyBuilder = new StringBuilder();
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_ISSUE_TYPE_NAME);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_SEPARATOR);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_ISSUE_TYPE_VALUE_POLICY);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_PAIR_SEPARATOR);
-
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_HUB_PROJECT_VERSION_REL_URL_HASHED_NAME);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_SEPARATOR);
-        keyBuilder.append(hashString(content.getProjectVersion().getUrl()));
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_PAIR_SEPARATOR);
-
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_HUB_COMPONENT_REL_URL_HASHED_NAME);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_SEPARATOR);
-        keyBuilder.append(hashString(content.getComponentUrl()));
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_PAIR_SEPARATOR);
-
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_HUB_COMPONENT_VERSION_REL_URL_HASHED_NAME);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_SEPARATOR);
-        keyBuilder.append(hashString(content.getComponentVersionUrl()));
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_PAIR_SEPARATOR);
-
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_HUB_POLICY_RULE_REL_URL_HASHED_NAME);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_SEPARATOR);
-        keyBuilder.append(hashString(getMetaService().getHref(rule)));
-        final String key = keyBuilder.toString();
-        return key;
+        final EventKey key = EventKey.builder(NotificationEventConstants.EVENT_KEY_ISSUE_TYPE_VALUE_POLICY)
+                .add(content.getProjectVersion().getUrl())
+                .add(content.getComponentUrl())
+                .add(content.getComponentVersionUrl())
+                .add(getMetaService().getHref(rule))
+                .build();
+        return key.toString();
     }
 
     @Override
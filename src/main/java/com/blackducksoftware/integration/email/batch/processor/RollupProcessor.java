@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+import com.blackducksoftware.integration.email.model.batch.CategoryDataBuilder;
+import com.blackducksoftware.integration.email.model.batch.CategoryItemLimit;
+import com.blackducksoftware.integration.email.model.batch.ItemData;
+import com.blackducksoftware.integration.email.model.batch.NotificationRollup;
+import com.blackducksoftware.integration.email.model.batch.PolicyRollup;
+import com.blackducksoftware.integration.email.model.batch.ProjectData;
+import com.blackducksoftware.integration.email.model.batch.ProjectDataBuilder;
+import com.blackducksoftware.integration.email.model.batch.ProjectRollup;
+import com.blackducksoftware.integration.email.model.batch.VulnerabilityRollup;
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.dataservice.model.ProjectVersionModel;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.PolicyOverrideContentItem;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.PolicyViolationClearedContentItem;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.PolicyViolationContentItem;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.VulnerabilityContentItem;
+import com.blackducksoftware.integration.hub.exception.HubIntegrationException;
+import com.blackducksoftware.integration.hub.notification.processor.ItemTypeEnum;
+import com.blackducksoftware.integration.hub.notification.processor.MapProcessorCache;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationSubProcessor;
+import com.blackducksoftware.integration.hub.notification.processor.event.NotificationEvent;
+
+// rolls a day of notifications up through the same sub processors as the EmailProcessor and turns a merged rollup back
+// into project data. the severities of vulnerabilities are only looked up when the project data is created, so a rollup
+// never holds severities that may have changed since.
+public class RollupProcessor {
+    private final ComponentVulnerabilityCache componentVulnerabilityCache;
+
+    private final MetaService metaService;
+
+    private CategoryItemLimit itemLimit = CategoryItemLimit.UNBOUNDED;
+
+    public RollupProcessor(final ComponentVulnerabilityCache componentVulnerabilityCache, final MetaService metaService) {
+        this.componentVulnerabilityCache = componentVulnerabilityCache;
+        this.metaService = metaService;
+    }
+
+    public NotificationRollup createRollup(final String day, final SortedSet<NotificationContentItem> notifications) throws HubIntegrationException {
+        // the day is replayed once as if no violation was pending before it and once as if every one of them was
+        final RollupCache policyCache = new RollupCache();
+        processPolicies(notifications, policyCache);
+        final PendingPolicyCache pendingPolicyCache = new PendingPolicyCache();
+        processPolicies(notifications, pendingPolicyCache);
+        final VulnerabilityRollupCache vulnerabilityCache = new VulnerabilityRollupCache();
+        final VulnerabilityProcessor vulnerabilityProcessor = new VulnerabilityProcessor(vulnerabilityCache, metaService);
+        for (final NotificationContentItem notification : notifications) {
+            if (notification instanceof VulnerabilityContentItem) {
+                vulnerabilityProcessor.process(notification);
+            }
+        }
+
+        final Map<String, ProjectRollup> projects = new LinkedHashMap<>();
+        final Set<String> policyKeys = new LinkedHashSet<>(policyCache.getSeenEvents().keySet());
+        policyKeys.addAll(pendingPolicyCache.getSeenEvents().keySet());
+        for (final String key : policyKeys) {
+            final NotificationEvent event = policyCache.getEventMap().get(key);
+            final boolean replacesPending = pendingPolicyCache.replacesPending(key);
+            final NotificationEvent pendingEvent = replacesPending ? pendingPolicyCache.getEventMap().get(key) : null;
+            final NotificationEvent seenEvent = policyCache.getSeenEvents().containsKey(key) ? policyCache.getSeenEvents().get(key)
+                    : pendingPolicyCache.getSeenEvents().get(key);
+            getProjectRollup(projects, seenEvent).getPolicies().put(key, new PolicyRollup(getCategory(event), getDataSet(event), replacesPending,
+                    getCategory(pendingEvent), getDataSet(pendingEvent)));
+        }
+        for (final Map.Entry<String, VulnerabilityRollup> entry : vulnerabilityCache.getRollups().entrySet()) {
+            getProjectRollup(projects, vulnerabilityCache.getSeenEvents().get(entry.getKey())).getVulnerabilities().put(entry.getKey(),
+                    entry.getValue());
+        }
+        return new NotificationRollup(day, day, projects);
+    }
+
+    private void processPolicies(final SortedSet<NotificationContentItem> notifications, final MapProcessorCache cache)
+            throws HubIntegrationException {
+        final Map<Class<?>, NotificationSubProcessor> processorMap = new HashMap<>();
+        processorMap.put(PolicyViolationContentItem.class, new PolicyViolationProcessor(cache, metaService));
+        processorMap.put(PolicyViolationClearedContentItem.class, new PolicyViolationClearedProcessor(cache, metaService));
+        processorMap.put(PolicyOverrideContentItem.class, new PolicyOverrideProcessor(cache, metaService));
+        for (final NotificationContentItem notification : notifications) {
+            final NotificationSubProcessor processor = processorMap.get(notification.getClass());
+            if (processor != null) {
+                processor.process(notification);
+            }
+        }
+    }
+
+    private ProjectRollup getProjectRollup(final Map<String, ProjectRollup> projects, final NotificationEvent event) {
+        final NotificationContentItem notificationContent = (NotificationContentItem) event.getDataSet()
+                .get(NotificationEvent.DATA_SET_KEY_NOTIFICATION_CONTENT);
+        final ProjectVersionModel projectVersion = notificationContent.getProjectVersion();
+        ProjectRollup project = projects.get(projectVersion.getUrl());
+        if (project == null) {
+            project = new ProjectRollup(projectVersion.getProjectName(), projectVersion.getProjectVersionName(), projectVersion.getUrl());
+            projects.put(projectVersion.getUrl(), project);
+        }
+        return project;
+    }
+
+    private String getCategory(final NotificationEvent event) {
+        return event == null ? null : event.getCategoryType().name();
+    }
+
+    // only the values shown in a digest are kept, the notification content itself is not rolled up
+    private static Map<String, String> getDataSet(final NotificationEvent event) {
+        if (event == null) {
+            return null;
+        }
+        final Map<String, String> dataSet = new HashMap<>();
+        for (final Map.Entry<String, Object> entry : event.getDataSet().entrySet()) {
+            if (entry.getValue() instanceof String) {
+                dataSet.put(entry.getKey(), (String) entry.getValue());
+            }
+        }
+        return dataSet;
+    }
+
+    public CategoryItemLimit getItemLimit() {
+        return itemLimit;
+    }
+
+    // with a bounded limit each category keeps its exact count but only its highest ranked items
+    public void setItemLimit(final CategoryItemLimit itemLimit) {
+        this.itemLimit = itemLimit;
+    }
+
+    // null when nothing is left of the project version in the rollup
+    public ProjectData createProjectData(final ProjectRollup project, final Set<NotificationCategoryEnum> triggers) throws IntegrationException {
+        final ProjectDataBuilder projectBuilder = new ProjectDataBuilder();
+        projectBuilder.setProjectName(project.getProjectName());
+        projectBuilder.setProjectVersion(project.getProjectVersion());
+        projectBuilder.setProjectVersionUrl(project.getProjectVersionUrl());
+        if (!Collections.disjoint(triggers, EmailProcessor.POLICY_CATEGORIES)) {
+            for (final PolicyRollup policy : project.getPolicies().values()) {
+                if (policy.getCategory() != null) {
+                    addItem(projectBuilder, NotificationCategoryEnum.valueOf(policy.getCategory()), ItemData.fromDataSet(policy.getDataSet()), 1);
+                }
+            }
+        }
+        if (!Collections.disjoint(triggers, EmailProcessor.VULNERABILITY_CATEGORIES)) {
+            addVulnerabilities(projectBuilder, project.getVulnerabilities().values());
+        }
+        if (projectBuilder.getCategoryBuilderMap().isEmpty()) {
+            return null;
+        }
+        return projectBuilder.build();
+    }
+
+    // grouped by severity like the VulnerabilityCache does for processed notifications
+    private void addVulnerabilities(final ProjectDataBuilder projectBuilder, final Collection<VulnerabilityRollup> vulnerabilities)
+            throws IntegrationException {
+        final List<String> componentVersionUrls = new ArrayList<>(vulnerabilities.size());
+        for (final VulnerabilityRollup vulnerability : vulnerabilities) {
+            if (!vulnerability.getAddedIds().isEmpty()) {
+                componentVersionUrls.add(vulnerability.getComponentVersionUrl());
+            }
+        }
+        if (componentVersionUrls.isEmpty()) {
+            return;
+        }
+        final Map<String, ComponentVulnerabilities> vulnerabilityMap = componentVulnerabilityCache.getVulnerabilities(componentVersionUrls);
+        for (final VulnerabilityRollup vulnerability : vulnerabilities) {
+            final ComponentVulnerabilities componentVulnerabilities = vulnerabilityMap.get(vulnerability.getComponentVersionUrl());
+            if (vulnerability.getAddedIds().isEmpty() || componentVulnerabilities == null) {
+                continue;
+            }
+            final Map<NotificationCategoryEnum, Set<String>> severityMap = new EnumMap<>(NotificationCategoryEnum.class);
+            for (final String vulnerabilityId : vulnerability.getAddedIds()) {
+                final NotificationCategoryEnum category = componentVulnerabilities.getCategory(vulnerabilityId);
+                if (category != null) {
+                    if (!severityMap.containsKey(category)) {
+                        severityMap.put(category, new HashSet<>());
+                    }
+                    severityMap.get(category).add(vulnerabilityId);
+                }
+            }
+            for (final Map.Entry<NotificationCategoryEnum, Set<String>> entry : severityMap.entrySet()) {
+                final int count = entry.getValue().size();
+                final ItemData item = ItemData.fromDataSet(vulnerability.getDataSet());
+                if (count > 1) {
+                    item.put(ItemTypeEnum.COUNT, count);
+                }
+                addItem(projectBuilder, entry.getKey(), item, count);
+            }
+        }
+    }
+
+    private void addItem(final ProjectDataBuilder projectBuilder, final NotificationCategoryEnum category, final ItemData item, final int count) {
+        CategoryDataBuilder categoryData = projectBuilder.getCategoryBuilderMap().get(category);
+        if (categoryData == null) {
+            categoryData = new CategoryDataBuilder(itemLimit);
+            categoryData.setCategoryKey(category.name());
+            projectBuilder.addCategoryBuilder(category, categoryData);
+        }
+        categoryData.incrementItemCount(count);
+        categoryData.addItem(item);
+    }
+
+    // a processor cache that also remembers the first event seen for every key, including the ones that were cancelled
+    private static class RollupCache extends MapProcessorCache {
+        private final Map<String, NotificationEvent> seenEvents = new LinkedHashMap<>();
+
+        @Override
+        public void addEvent(final NotificationEvent event) {
+            see(event);
+            super.addEvent(event);
+        }
+
+        @Override
+        public void removeEvent(final NotificationEvent event) {
+            see(event);
+            super.removeEvent(event);
+        }
+
+        protected void see(final NotificationEvent event) {
+            if (!seenEvents.containsKey(event.getEventKey())) {
+                seenEvents.put(event.getEventKey(), event);
+            }
+        }
+
+        public Map<String, NotificationEvent> getSeenEvents() {
+            return seenEvents;
+        }
+    }
+
+    // every violation counts as pending until the day clears or overrides it; after that it behaves like the plain cache
+    private static class PendingPolicyCache extends RollupCache {
+        private final Set<String> replacedKeys = new HashSet<>();
+
+        @Override
+        public boolean hasEvent(final String eventKey) {
+            return !replacedKeys.contains(eventKey) || super.hasEvent(eventKey);
+        }
+
+        @Override
+        public void addEvent(final NotificationEvent event) {
+            see(event);
+            if (replacedKeys.contains(event.getEventKey())) {
+                super.addEvent(event);
+            }
+        }
+
+        @Override
+        public void removeEvent(final NotificationEvent event) {
+            replacedKeys.add(event.getEventKey());
+            super.removeEvent(event);
+        }
+
+        public boolean replacesPending(final String eventKey) {
+            return replacedKeys.contains(eventKey);
+        }
+    }
+
+    // keeps the net vulnerabilities added and removed per component version instead of a single set
+    @SuppressWarnings("unchecked")
+    private static class VulnerabilityRollupCache extends RollupCache {
+        private final Map<String, VulnerabilityRollup> rollups = new LinkedHashMap<>();
+
+        @Override
+        public void addEvent(final NotificationEvent event) {
+            see(event);
+            final VulnerabilityRollup rollup = getRollup(event);
+            final Set<String> vulnerabilityIds = (Set<String>) event.getDataSet().get(VulnerabilityCache.VULNERABILITY_ID_SET);
+            rollup.getAddedIds().addAll(vulnerabilityIds);
+            rollup.getRemovedIds().removeAll(vulnerabilityIds);
+        }
+
+        @Override
+        public void removeEvent(final NotificationEvent event) {
+            see(event);
+            final VulnerabilityRollup rollup = getRollup(event);
+            final Set<String> vulnerabilityIds = (Set<String>) event.getDataSet().get(VulnerabilityCache.VULNERABILITY_ID_SET);
+            rollup.getRemovedIds().addAll(vulnerabilityIds);
+            rollup.getAddedIds().removeAll(vulnerabilityIds);
+        }
+
+        private VulnerabilityRollup getRollup(final NotificationEvent event) {
+            VulnerabilityRollup rollup = rollups.get(event.getEventKey());
+            if (rollup == null) {
+                final NotificationContentItem notificationContent = (NotificationContentItem) event.getDataSet()
+                        .get(NotificationEvent.DATA_SET_KEY_NOTIFICATION_CONTENT);
+                rollup = new VulnerabilityRollup(notificationContent.getComponentVersionUrl(), getDataSet(event), new HashSet<>(), new HashSet<>());
+                rollups.put(event.getEventKey(), rollup);
+            }
+            return rollup;
+        }
+
+        public Map<String, VulnerabilityRollup> getRollups() {
+            return rollups;
+        }
+    }
+}
@@ -21,8 +21,9 @@
  *******************************************************************************/
 package com.blackducksoftware.integration.email.batch.processor;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -30,16 +31,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
-
 import com.blackducksoftware.integration.exception.IntegrationException;
 import com.blackducksoftware.integration.hub.api.item.MetaService;
 import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
 import com.blackducksoftware.integration.hub.dataservice.notification.model.VulnerabilityContentItem;
 import com.blackducksoftware.integration.hub.exception.HubIntegrationException;
-import com.blackducksoftware.integration.hub.model.enumeration.VulnerabilitySeverityEnum;
-import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
-import com.blackducksoftware.integration.hub.model.view.VulnerabilityView;
 import com.blackducksoftware.integration.hub.notification.processor.ItemTypeEnum;
 import com.blackducksoftware.integration.hub.notification.processor.MapProcessorCache;
 import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
@@ -50,18 +46,16 @@ public class VulnerabilityCache extends MapProcessorCache {
 
     public final static String VULNERABILITY_ID_SET = "vulnerabilityIdSet";
 
-    private final HubResponseService hubResponseService;
-
-    private final VulnerabilityRequestService vulnerabilityRequestService;
-
-    private final MetaService metaService;
+    private final ComponentVulnerabilityCache componentVulnerabilityCache;
 
+    // a private cache whose lookup threads stop when idle; the notifiers pass the shared cache instead
     public VulnerabilityCache(final HubResponseService hubResponseService, final VulnerabilityRequestService vulnerabilityRequestService,
             final MetaService metaService) {
-        this.hubResponseService = hubResponseService;
-        this.vulnerabilityRequestService = vulnerabilityRequestService;
-        this.metaService = metaService;
+        this(new ComponentVulnerabilityCache(hubResponseService, vulnerabilityRequestService, metaService));
+    }
 
+    public VulnerabilityCache(final ComponentVulnerabilityCache componentVulnerabilityCache) {
+        this.componentVulnerabilityCache = componentVulnerabilityCache;
     }
 
     @SuppressWarnings("unchecked")
@@ -111,13 +105,19 @@ public class VulnerabilityCache extends MapProcessorCache {
         final Collection<NotificationEvent> vulnerabilities = super.getEvents();
         // need to group the vulnerabilities by severity which can be gathered by the vulnerability API.
         final Collection<NotificationEvent> result = new LinkedList<>();
+        final List<String> componentVersionUrls = new ArrayList<>(vulnerabilities.size());
         for (final NotificationEvent event : vulnerabilities) {
-            List<NotificationEvent> vulnerabilityEvents;
-            try {
-                vulnerabilityEvents = createVulnerabilityEvents(event);
-            } catch (final IntegrationException e) {
-                throw new HubIntegrationException(e);
-            }
+            componentVersionUrls.add(getComponentVersionUrl(event));
+        }
+        final Map<String, ComponentVulnerabilities> vulnerabilityMap;
+        try {
+            vulnerabilityMap = componentVulnerabilityCache.getVulnerabilities(componentVersionUrls);
+        } catch (final IntegrationException e) {
+            throw new HubIntegrationException(e);
+        }
+        // merged in the order of the cached events regardless of the order the lookups complete
+        for (final NotificationEvent event : vulnerabilities) {
+            final List<NotificationEvent> vulnerabilityEvents = createVulnerabilityEvents(event, vulnerabilityMap.get(getComponentVersionUrl(event)));
             for (final NotificationEvent vulnerability : vulnerabilityEvents) {
                 result.add(vulnerability);
             }
@@ -126,77 +126,57 @@ public class VulnerabilityCache extends MapProcessorCache {
         return result;
     }
 
-    private List<NotificationEvent> createVulnerabilityEvents(final NotificationEvent originalEvent) throws IntegrationException {
-        final List<NotificationEvent> eventList = new LinkedList<>();
-        final VulnerabilityContentItem vulnerabilityContent = (VulnerabilityContentItem) originalEvent.getDataSet()
+    private String getComponentVersionUrl(final NotificationEvent event) {
+        final VulnerabilityContentItem vulnerabilityContent = (VulnerabilityContentItem) event.getDataSet()
                 .get(NotificationEvent.DATA_SET_KEY_NOTIFICATION_CONTENT);
-        final String vulnerabilityUrl = findVulnerabilityUrl(vulnerabilityContent.getComponentVersionUrl());
-        final List<VulnerabilityView> vulnerabilityList = createVulnerabilityItemList(vulnerabilityUrl);
-        addEventsToList(originalEvent, vulnerabilityList, eventList);
-        addCountsToDataSet(eventList);
-        return eventList;
-    }
-
-    private String findVulnerabilityUrl(final String componentVersionUrl) throws IntegrationException {
-        String url = null;
-        final ComponentVersionView compVersion = hubResponseService.getItem(componentVersionUrl, ComponentVersionView.class);
-        url = metaService.getLinks(compVersion, MetaService.VULNERABILITIES_LINK).get(0);
-        return url;
+        return vulnerabilityContent.getComponentVersionUrl();
     }
 
-    private List<VulnerabilityView> createVulnerabilityItemList(final String vulnerabilityUrl) throws IntegrationException {
-        List<VulnerabilityView> itemList = Collections.emptyList();
-        if (!StringUtils.isBlank(vulnerabilityUrl)) {
-            itemList = vulnerabilityRequestService.getComponentVersionVulnerabilities(vulnerabilityUrl);
-        }
-        return itemList;
+    private List<NotificationEvent> createVulnerabilityEvents(final NotificationEvent originalEvent, final ComponentVulnerabilities vulnerabilities) {
+        final List<NotificationEvent> eventList = new LinkedList<>();
+        addEventsToList(originalEvent, vulnerabilities, eventList);
+        addCountsToDataSet(eventList);
+        return eventList;
     }
 
     @SuppressWarnings("unchecked")
-    private void addEventsToList(final NotificationEvent originalEvent, final List<VulnerabilityView> vulnerabilityList,
+    private void addEventsToList(final NotificationEvent originalEvent, final ComponentVulnerabilities vulnerabilities,
             final List<NotificationEvent> eventList) {
-        final Map<NotificationCategoryEnum, NotificationEvent> eventMap = new HashMap<>();
+        final Map<NotificationCategoryEnum, NotificationEvent> eventMap = new EnumMap<>(NotificationCategoryEnum.class);
         final Set<String> eventVulnIdSet = (Set<String>) originalEvent.getDataSet().get(VULNERABILITY_ID_SET);
         for (final String vulnId : eventVulnIdSet) {
-            for (final VulnerabilityView vulnerability : vulnerabilityList) {
-                final NotificationCategoryEnum eventCategory = getEventCategory(vulnerability.severity);
-                final String vulnName = vulnerability.vulnerabilityName;
-                if (vulnId.equals(vulnName)) {
-                    if (eventMap.containsKey(eventCategory)) {
-                        final NotificationEvent event = eventMap.get(eventCategory);
-                        final Set<String> vulnSet = (Set<String>) event.getDataSet().get(VULNERABILITY_ID_SET);
-                        vulnSet.add(vulnName);
-                    } else {
-                        final Set<String> vulnset = new HashSet<>();
-                        vulnset.add(vulnName);
-                        final Map<String, Object> dataSet = new HashMap<>(originalEvent.getDataSet());
-                        dataSet.put(VULNERABILITY_ID_SET, vulnset);
-                        final NotificationEvent event = new NotificationEvent(originalEvent.getEventKey(), eventCategory, dataSet);
-                        eventMap.put(eventCategory, event);
-                        eventList.add(event);
-                    }
-                }
+            final NotificationCategoryEnum eventCategory = vulnerabilities.getCategory(vulnId);
+            if (eventCategory == null) {
+                continue;
+            }
+            if (eventMap.containsKey(eventCategory)) {
+                final NotificationEvent event = eventMap.get(eventCategory);
+                final Set<String> vulnSet = (Set<String>) event.getDataSet().get(VULNERABILITY_ID_SET);
+                vulnSet.add(vulnId);
+            } else {
+                final Set<String> vulnset = new HashSet<>();
+                vulnset.add(vulnId);
+                final NotificationEvent event = new NotificationEvent(originalEvent.getEventKey(), eventCategory,
+                        createSeverityDataSet(originalEvent.getDataSet(), vulnset));
+                eventMap.put(eventCategory, event);
+                eventList.add(event);
             }
         }
     }
 
-    private NotificationCategoryEnum getEventCategory(final String severityString) {
-        final VulnerabilitySeverityEnum severity = VulnerabilitySeverityEnum.valueOf(severityString.toUpperCase());
-
-        switch (severity) {
-        case HIGH: {
-            return NotificationCategoryEnum.HIGH_VULNERABILITY;
-        }
-        case MEDIUM: {
-            return NotificationCategoryEnum.MEDIUM_VULNERABILITY;
-        }
-        case LOW: {
-            return NotificationCategoryEnum.LOW_VULNERABILITY;
-        }
-        default: {
-            return NotificationCategoryEnum.VULNERABILITY;
-        }
+    // a severity event only carries the item fields and the notification content of the original event, not its whole data set.
+    // the events stay hub-common NotificationEvents with map data sets; only the digest items built from them are typed
+    private Map<String, Object> createSeverityDataSet(final Map<String, Object> originalDataSet, final Set<String> vulnIdSet) {
+        final Map<String, Object> dataSet = new HashMap<>();
+        for (final ItemTypeEnum itemType : ItemTypeEnum.values()) {
+            final Object value = originalDataSet.get(itemType.name());
+            if (value != null) {
+                dataSet.put(itemType.name(), value);
+            }
         }
+        dataSet.put(NotificationEvent.DATA_SET_KEY_NOTIFICATION_CONTENT, originalDataSet.get(NotificationEvent.DATA_SET_KEY_NOTIFICATION_CONTENT));
+        dataSet.put(VULNERABILITY_ID_SET, vulnIdSet);
+        return dataSet;
     }
 
     @SuppressWarnings("unchecked")
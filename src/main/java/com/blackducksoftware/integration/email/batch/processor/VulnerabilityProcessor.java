@@ -92,28 +92,12 @@ public class VulnerabilityProcessor extends NotificationSubProcessor {
     @Override
     public String generateEventKey(final Map<String, Object> dataMap) {
         final NotificationContentItem content = (NotificationContentItem) dataMap.get(NotificationEvent.DATA_SET_KEY_NOTIFICATION_CONTENT);
-        final StringBuilder keyBuilder = new StringBuilder();
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_ISSUE_TYPE_NAME);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_SEPARATOR);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_ISSUE_TYPE_VALUE_VULNERABILITY);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_PAIR_SEPARATOR);
-
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_HUB_PROJECT_VERSION_REL_URL_HASHED_NAME);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_SEPARATOR);
-        keyBuilder.append(hashString(content.getProjectVersion().getUrl()));
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_PAIR_SEPARATOR);
-
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_HUB_COMPONENT_REL_URL_HASHED_NAME);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_SEPARATOR);
-        keyBuilder.append(""); // There is never a component URL
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_PAIR_SEPARATOR);
-
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_HUB_COMPONENT_VERSION_REL_URL_HASHED_NAME);
-        keyBuilder.append(NotificationEventConstants.EVENT_KEY_NAME_VALUE_SEPARATOR);
-        keyBuilder.append(hashString(content.getComponentVersionUrl()));
-
-        final String key = keyBuilder.toString();
-        return key;
+        final EventKey key = EventKey.builder(NotificationEventConstants.EVENT_KEY_ISSUE_TYPE_VALUE_VULNERABILITY)
+                .add(content.getProjectVersion().getUrl())
+                .add(null) // There is never a component URL
+                .add(content.getComponentVersionUrl())
+                .build();
+        return key.toString();
     }
 
     @Override
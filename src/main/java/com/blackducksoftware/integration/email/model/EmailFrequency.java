@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// the emailFrequency values a user can pick, matched against the category of each digest notifier
+public enum EmailFrequency {
+    REAL_TIME("Real Time"),
+    DAILY("Daily"),
+    WEEKLY("Weekly"),
+    MONTHLY("Monthly"),
+    CUSTOM_INTERVAL("Custom Interval");
+
+    private static final Map<String, EmailFrequency> FREQUENCIES_BY_NAME = new HashMap<>();
+
+    static {
+        for (final EmailFrequency frequency : values()) {
+            FREQUENCIES_BY_NAME.put(frequency.getDisplayName(), frequency);
+        }
+    }
+
+    private final String displayName;
+
+    private EmailFrequency(final String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    // null for a value that is not one of the frequencies
+    public static EmailFrequency fromDisplayName(final String displayName) {
+        return FREQUENCIES_BY_NAME.get(displayName);
+    }
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.activation.DataHandler;
+import javax.activation.FileTypeMap;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeUtility;
+import javax.mail.internet.PreencodedMimeBodyPart;
+import javax.mail.util.ByteArrayDataSource;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.blackducksoftware.integration.email.EmailExtensionConstants;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+// the same few logo images are embedded in every email so they are resolved, read and base64 encoded once and every message
+// gets a pre-encoded part over the shared bytes. an entry is reloaded when the file's size or modification time changes.
+public class EmbeddedImageCache {
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    public static final long DEFAULT_RECHECK_MILLIS = 5000;
+
+    private static final String TRANSFER_ENCODING = "base64";
+
+    private final Cache<String, EmbeddedImage> images;
+
+    private final long recheckMillis;
+
+    public EmbeddedImageCache() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_RECHECK_MILLIS);
+    }
+
+    public EmbeddedImageCache(final long maxBytes, final long recheckMillis) {
+        this.images = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+                .weigher((final String key, final EmbeddedImage image) -> image.getEncodedBytes().length).build();
+        this.recheckMillis = recheckMillis;
+    }
+
+    public MimeBodyPart createBodyPart(final String imageFilePath, final String contentId) throws MessagingException {
+        final EmbeddedImage image = getImage(imageFilePath);
+        final MimeBodyPart embeddedImageBodyPart = new PreencodedMimeBodyPart(TRANSFER_ENCODING);
+        embeddedImageBodyPart.setDataHandler(new DataHandler(new ByteArrayDataSource(image.getEncodedBytes(), image.getContentType())));
+        embeddedImageBodyPart.setHeader("Content-ID", contentId);
+        return embeddedImageBodyPart;
+    }
+
+    public int size() {
+        return (int) images.size();
+    }
+
+    public void invalidateAll() {
+        images.invalidateAll();
+    }
+
+    EmbeddedImage getImage(final String imageFilePath) throws MessagingException {
+        final long now = System.currentTimeMillis();
+        final EmbeddedImage cached = images.getIfPresent(imageFilePath);
+        if (cached != null) {
+            if (now - cached.getCheckedAt() < recheckMillis) {
+                return cached;
+            }
+            final File file = cached.getFile();
+            if (file.lastModified() == cached.getLastModified() && file.length() == cached.getLength()) {
+                cached.setCheckedAt(now);
+                return cached;
+            }
+        }
+
+        // concurrent loads of the same image are harmless, the last one wins
+        final EmbeddedImage loaded = loadImage(imageFilePath, now);
+        images.put(imageFilePath, loaded);
+        return loaded;
+    }
+
+    private EmbeddedImage loadImage(final String imageFilePath, final long now) throws MessagingException {
+        final File imageFile = resolveImageFile(imageFilePath);
+        try {
+            final long lastModified = imageFile.lastModified();
+            final long length = imageFile.length();
+            final byte[] bytes = FileUtils.readFileToByteArray(imageFile);
+            final ByteArrayOutputStream encoded = new ByteArrayOutputStream(bytes.length * 4 / 3 + 64);
+            try (OutputStream encoder = MimeUtility.encode(encoded, TRANSFER_ENCODING)) {
+                encoder.write(bytes);
+            }
+            final String contentType = FileTypeMap.getDefaultFileTypeMap().getContentType(imageFile);
+            return new EmbeddedImage(imageFile, lastModified, length, encoded.toByteArray(), contentType, now);
+        } catch (final IOException e) {
+            throw new MessagingException(String.format("Could not read the image %s: %s", imageFilePath, e.getMessage()), e);
+        }
+    }
+
+    private File resolveImageFile(final String imageFilePath) {
+        final File imageFile = new File(imageFilePath);
+        if (!imageFile.exists()) {
+            final File imagesDir = findImagesDirectory();
+            if (imagesDir != null) {
+                final File imagesDirFile = new File(imagesDir, imageFilePath);
+                if (imagesDirFile.exists()) {
+                    try {
+                        return imagesDirFile.getCanonicalFile();
+                    } catch (final IOException e) {
+                        return imagesDirFile;
+                    }
+                }
+            }
+        }
+        return imageFile;
+    }
+
+    private File findImagesDirectory() {
+        final String appHomeDir = System.getProperty(EmailExtensionConstants.SYSTEM_PROPERTY_KEY_APP_HOME);
+        if (StringUtils.isNotBlank(appHomeDir)) {
+            return new File(appHomeDir, "images");
+        }
+        return null;
+    }
+
+    static class EmbeddedImage {
+        private final File file;
+
+        private final long lastModified;
+
+        private final long length;
+
+        private final byte[] encodedBytes;
+
+        private final String contentType;
+
+        private volatile long checkedAt;
+
+        public EmbeddedImage(final File file, final long lastModified, final long length, final byte[] encodedBytes,
+                final String contentType, final long checkedAt) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.encodedBytes = encodedBytes;
+            this.contentType = contentType;
+            this.checkedAt = checkedAt;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public byte[] getEncodedBytes() {
+            return encodedBytes;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getCheckedAt() {
+            return checkedAt;
+        }
+
+        public void setCheckedAt(final long checkedAt) {
+            this.checkedAt = checkedAt;
+        }
+    }
+}
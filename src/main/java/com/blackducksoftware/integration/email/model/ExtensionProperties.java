@@ -30,6 +30,8 @@ import java.util.Properties;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 
+import com.blackducksoftware.integration.email.batch.processor.ComponentVulnerabilityCache;
+
 public class ExtensionProperties {
     // property keys
     public final static String EMAIL_FROM_ADDRESS_KEY = "email.from.address";
@@ -60,6 +62,34 @@ public class ExtensionProperties {
 
     public final static String EMAIL_TEMPLATE_DIRECTORY = "hub.email.template.directory";
 
+    public final static String NOTIFIER_THREADS_KEY = "hub.email.notifier.threads";
+
+    public final static String MAIL_SPOOL_ENABLED_KEY = "hub.email.spool.enabled";
+
+    public final static String MAIL_SPOOL_DIRECTORY_KEY = "hub.email.spool.directory";
+
+    public final static String MAIL_DELIVERY_THREADS_KEY = "hub.email.delivery.threads";
+
+    public final static String MAIL_DELIVERY_MAX_ATTEMPTS_KEY = "hub.email.delivery.max.attempts";
+
+    public final static String SMTP_POOL_MAX_MESSAGES_KEY = "hub.email.smtp.pool.max.messages";
+
+    public final static String SMTP_POOL_MAX_IDLE_KEY = "hub.email.smtp.pool.max.idle";
+
+    public final static String SMTP_POOL_IDLE_SECONDS_KEY = "hub.email.smtp.pool.idle.seconds";
+
+    public final static String VULNERABILITY_CACHE_EXPIRE_MINUTES_KEY = "hub.email.cache.vulnerability.expire.minutes";
+
+    public final static String VULNERABILITY_CACHE_MAX_SIZE_KEY = "hub.email.cache.vulnerability.max.size";
+
+    public final static String VULNERABILITY_LOOKUP_MAX_IN_FLIGHT_KEY = "hub.email.cache.vulnerability.max.in.flight";
+
+    public final static String NOTIFICATION_INGEST_ENABLED_KEY = "hub.email.ingest.enabled";
+
+    public final static String NOTIFICATION_MAILBOX_IDLE_DAYS_KEY = "hub.email.ingest.mailbox.idle.days";
+
+    public final static String POLICY_VIOLATION_RETENTION_DAYS_KEY = "hub.email.policy.violation.retention.days";
+
     // common javamail properties
     public static final String JAVAMAIL_HOST_KEY = "mail.smtp.host";
 
@@ -260,6 +290,63 @@ public class ExtensionProperties {
         return appProperties.getProperty(EMAIL_TEMPLATE_DIRECTORY);
     }
 
+    // at least one thread, so a zero or negative setting cannot stop the engine from creating its pool
+    public int getNotifierThreadCount() {
+        return Math.max(1, NumberUtils.toInt(appProperties.getProperty(NOTIFIER_THREADS_KEY), Runtime.getRuntime().availableProcessors()));
+    }
+
+    public boolean isMailSpoolEnabled() {
+        return Boolean.parseBoolean(appProperties.getProperty(MAIL_SPOOL_ENABLED_KEY));
+    }
+
+    public String getMailSpoolDirectory() {
+        return appProperties.getProperty(MAIL_SPOOL_DIRECTORY_KEY);
+    }
+
+    public int getMailDeliveryThreadCount() {
+        return NumberUtils.toInt(appProperties.getProperty(MAIL_DELIVERY_THREADS_KEY), 2);
+    }
+
+    public int getMailDeliveryMaxAttempts() {
+        return NumberUtils.toInt(appProperties.getProperty(MAIL_DELIVERY_MAX_ATTEMPTS_KEY), 10);
+    }
+
+    public int getSmtpPoolMaxMessages() {
+        return NumberUtils.toInt(appProperties.getProperty(SMTP_POOL_MAX_MESSAGES_KEY), 100);
+    }
+
+    public int getSmtpPoolMaxIdle() {
+        return NumberUtils.toInt(appProperties.getProperty(SMTP_POOL_MAX_IDLE_KEY), 4);
+    }
+
+    public long getSmtpPoolIdleSeconds() {
+        return NumberUtils.toLong(appProperties.getProperty(SMTP_POOL_IDLE_SECONDS_KEY), 60);
+    }
+
+    public long getVulnerabilityCacheExpireMinutes() {
+        return NumberUtils.toLong(appProperties.getProperty(VULNERABILITY_CACHE_EXPIRE_MINUTES_KEY), ComponentVulnerabilityCache.DEFAULT_EXPIRE_MINUTES);
+    }
+
+    public long getVulnerabilityCacheMaxSize() {
+        return NumberUtils.toLong(appProperties.getProperty(VULNERABILITY_CACHE_MAX_SIZE_KEY), ComponentVulnerabilityCache.DEFAULT_MAX_SIZE);
+    }
+
+    public int getVulnerabilityLookupMaxInFlight() {
+        return NumberUtils.toInt(appProperties.getProperty(VULNERABILITY_LOOKUP_MAX_IN_FLIGHT_KEY), ComponentVulnerabilityCache.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public boolean isNotificationIngestEnabled() {
+        return Boolean.parseBoolean(appProperties.getProperty(NOTIFICATION_INGEST_ENABLED_KEY));
+    }
+
+    public long getNotificationMailboxIdleDays() {
+        return NumberUtils.toLong(appProperties.getProperty(NOTIFICATION_MAILBOX_IDLE_DAYS_KEY), 32);
+    }
+
+    public long getPolicyViolationRetentionDays() {
+        return NumberUtils.toLong(appProperties.getProperty(POLICY_VIOLATION_RETENTION_DAYS_KEY), 90);
+    }
+
     public List<String> getNotifierClassNames() {
         return notifierClassNames;
     }
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// single pass html to text conversion for the text/plain alternative. it does not build a document: tags are dropped, block level
+// tags become line breaks, script and style bodies are skipped, entities are decoded and runs of whitespace are collapsed.
+public class HtmlTextConverter {
+    private static final String[] BLOCK_TAGS = { "br", "p", "div", "tr", "li", "h1", "h2", "h3", "h4", "h5", "h6", "table", "ul", "ol", "hr" };
+
+    private static final String[] SKIPPED_TAGS = { "script", "style", "head" };
+
+    private static final Map<String, Character> ENTITIES = new HashMap<>();
+
+    static {
+        ENTITIES.put("amp", '&');
+        ENTITIES.put("lt", '<');
+        ENTITIES.put("gt", '>');
+        ENTITIES.put("quot", '"');
+        ENTITIES.put("apos", '\'');
+        ENTITIES.put("nbsp", ' ');
+        ENTITIES.put("copy", '©');
+        ENTITIES.put("reg", '®');
+    }
+
+    public String convert(final String html) {
+        final StringBuilder text = new StringBuilder(html.length() / 4);
+        final int length = html.length();
+        boolean pendingSpace = false;
+        int index = 0;
+        while (index < length) {
+            final char current = html.charAt(index);
+            if (current == '<') {
+                final int tagEnd = html.indexOf('>', index);
+                if (tagEnd < 0) {
+                    break;
+                }
+                final String tagName = getTagName(html, index + 1, tagEnd);
+                if (isSkipped(tagName) && html.charAt(index + 1) != '/' && html.charAt(tagEnd - 1) != '/') {
+                    final int closeTag = indexOfIgnoreCase(html, "</" + tagName, tagEnd);
+                    index = closeTag < 0 ? length : closeTag;
+                    continue;
+                }
+                if (isBlock(tagName)) {
+                    appendLineBreak(text);
+                    pendingSpace = false;
+                }
+                index = tagEnd + 1;
+            } else if (Character.isWhitespace(current)) {
+                pendingSpace = text.length() > 0 && !endsWithLineBreak(text);
+                index++;
+            } else {
+                if (pendingSpace) {
+                    text.append(' ');
+                    pendingSpace = false;
+                }
+                if (current == '&') {
+                    index = appendEntity(html, index, text);
+                } else {
+                    text.append(current);
+                    index++;
+                }
+            }
+        }
+        return text.toString().trim();
+    }
+
+    private String getTagName(final String html, final int start, final int end) {
+        int nameStart = start;
+        if (nameStart < end && html.charAt(nameStart) == '/') {
+            nameStart++;
+        }
+        int nameEnd = nameStart;
+        while (nameEnd < end && Character.isLetterOrDigit(html.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        return html.substring(nameStart, nameEnd).toLowerCase(Locale.ENGLISH);
+    }
+
+    private boolean isBlock(final String tagName) {
+        for (final String blockTag : BLOCK_TAGS) {
+            if (blockTag.equals(tagName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSkipped(final String tagName) {
+        for (final String skippedTag : SKIPPED_TAGS) {
+            if (skippedTag.equals(tagName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int indexOfIgnoreCase(final String html, final String target, final int from) {
+        final int last = html.length() - target.length();
+        for (int index = from; index <= last; index++) {
+            if (html.regionMatches(true, index, target, 0, target.length())) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    // at most one blank line between blocks
+    private void appendLineBreak(final StringBuilder text) {
+        if (text.length() == 0) {
+            return;
+        }
+        final int length = text.length();
+        if (length >= 2 && text.charAt(length - 1) == '\n' && text.charAt(length - 2) == '\n') {
+            return;
+        }
+        text.append('\n');
+    }
+
+    private boolean endsWithLineBreak(final StringBuilder text) {
+        return text.charAt(text.length() - 1) == '\n';
+    }
+
+    private int appendEntity(final String html, final int start, final StringBuilder text) {
+        final int end = html.indexOf(';', start);
+        if (end < 0 || end - start > 10) {
+            text.append('&');
+            return start + 1;
+        }
+        final String entity = html.substring(start + 1, end);
+        if (entity.startsWith("#")) {
+            try {
+                final int codePoint = entity.startsWith("#x") || entity.startsWith("#X") ? Integer.parseInt(entity.substring(2), 16)
+                        : Integer.parseInt(entity.substring(1));
+                text.appendCodePoint(codePoint);
+                return end + 1;
+            } catch (final IllegalArgumentException e) {
+                text.append('&');
+                return start + 1;
+            }
+        }
+        final Character decoded = ENTITIES.get(entity);
+        if (decoded == null) {
+            text.append('&');
+            return start + 1;
+        }
+        text.append(decoded.charValue());
+        return end + 1;
+    }
+}
@@ -23,33 +23,46 @@ package com.blackducksoftware.integration.email.model;
 
 import javax.mail.Message;
 import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
-import javax.mail.Transport;
+
+import com.blackducksoftware.integration.email.model.SmtpConnectionPool.PooledTransport;
 
 public class JavaMailWrapper {
-    public void sendMessage(final ExtensionProperties customerProperties, final Session session, final Message message)
-            throws MessagingException {
-        if (customerProperties.isAuth()) {
-            sendAuthenticated(customerProperties, message, session);
-        } else {
-            Transport.send(message);
-        }
+    private final SmtpConnectionPool connectionPool;
+
+    public JavaMailWrapper() {
+        this(new SmtpConnectionPool());
     }
 
-    private void sendAuthenticated(final ExtensionProperties customerProperties, final Message message,
-            final Session session) throws MessagingException {
-        final String host = customerProperties.getHost();
-        final int port = customerProperties.getPort();
-        final String username = customerProperties.getUsername();
-        final String password = customerProperties.getPassword();
+    public JavaMailWrapper(final SmtpConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
 
-        final Transport transport = session.getTransport("smtp");
+    public void sendMessage(final ExtensionProperties customerProperties, final Session session, final Message message)
+            throws MessagingException {
+        message.saveChanges();
+        // the pool replaces a dropped connection before the message is handed over; once sending has started a failure is
+        // not retried here because the server may already have accepted the message
+        final PooledTransport pooledTransport = connectionPool.borrow(customerProperties, session);
         try {
-            transport.connect(host, port, username, password);
-            transport.sendMessage(message, message.getAllRecipients());
-        } finally {
-            transport.close();
+            send(pooledTransport, message);
+        } catch (final SendFailedException e) {
+            // the server refused the message itself; the connection is still fine
+            connectionPool.release(pooledTransport, false);
+            throw e;
+        } catch (final MessagingException e) {
+            connectionPool.discard(pooledTransport);
+            throw e;
         }
+        connectionPool.release(pooledTransport);
     }
 
+    public void shutDown() {
+        connectionPool.shutDown();
+    }
+
+    private void send(final PooledTransport pooledTransport, final Message message) throws MessagingException {
+        pooledTransport.getTransport().sendMessage(message, message.getAllRecipients());
+    }
 }
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// append-only local spool of rendered messages. a message is written as a mail record and retired by an ack record;
+// the spool is a series of segment files and a segment is deleted once every message in it and in every older segment
+// has been acknowledged, so an ack is never lost while the message it retires is still on disk.
+// appends are group committed: whichever caller syncs first makes every record written before it durable.
+public class MailSpool implements Closeable {
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024L * 1024L;
+
+    private static final String SEGMENT_PREFIX = "spool-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte RECORD_MAIL = 1;
+
+    private static final byte RECORD_ACK = 2;
+
+    // type, id, time, length, crc
+    private static final int HEADER_BYTES = 1 + 8 + 8 + 4 + 8;
+
+    private final Logger logger = LoggerFactory.getLogger(MailSpool.class);
+
+    private final File directory;
+
+    private final long maxSegmentBytes;
+
+    private final Object writeLock = new Object();
+
+    private final Object syncLock = new Object();
+
+    private final ConcurrentSkipListMap<Long, SpooledMail> pendingMail = new ConcurrentSkipListMap<>();
+
+    private final TreeMap<Long, Set<Long>> segmentMail = new TreeMap<>();
+
+    private FileChannel channel;
+
+    private long segment;
+
+    private long nextId;
+
+    private long appendedBytes;
+
+    private long syncedBytes;
+
+    public MailSpool(final File directory) throws IOException {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    public MailSpool(final File directory, final long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        directory.mkdirs();
+        replay();
+        openSegment(segment + 1);
+    }
+
+    // returns once the message is durable on disk
+    public SpooledMail append(final byte[] content) throws IOException {
+        final SpooledMail mail;
+        final long position;
+        final boolean rotate;
+        synchronized (writeLock) {
+            final long offset = channel.position() + HEADER_BYTES;
+            final long id = nextId++;
+            final long enqueuedTime = System.currentTimeMillis();
+            writeRecord(RECORD_MAIL, id, enqueuedTime, content);
+            mail = new SpooledMail(id, segment, offset, content.length, enqueuedTime);
+            pendingMail.put(id, mail);
+            segmentMail.get(segment).add(id);
+            position = appendedBytes;
+            rotate = channel.position() >= maxSegmentBytes;
+        }
+        sync(position);
+        if (rotate) {
+            rotate();
+        }
+        return mail;
+    }
+
+    public byte[] read(final SpooledMail mail) throws IOException {
+        final byte[] content = new byte[mail.getLength()];
+        try (RandomAccessFile file = new RandomAccessFile(getSegmentFile(mail.getSegment()), "r")) {
+            file.seek(mail.getOffset());
+            file.readFully(content);
+        }
+        return content;
+    }
+
+    // the ack is not synced on its own; if it is lost the message is delivered again after a restart
+    public void acknowledge(final SpooledMail mail) throws IOException {
+        synchronized (writeLock) {
+            if (pendingMail.remove(mail.getId()) == null) {
+                return;
+            }
+            writeRecord(RECORD_ACK, mail.getId(), System.currentTimeMillis(), new byte[0]);
+            segmentMail.get(mail.getSegment()).remove(mail.getId());
+            deleteRetiredSegments();
+        }
+    }
+
+    public List<SpooledMail> getPendingMail() {
+        return new ArrayList<>(pendingMail.values());
+    }
+
+    public int getDepth() {
+        return pendingMail.size();
+    }
+
+    // age of the oldest message not yet delivered; 0 when the spool is empty
+    public long getOldestAgeMillis() {
+        final Map.Entry<Long, SpooledMail> oldest = pendingMail.firstEntry();
+        if (oldest == null) {
+            return 0;
+        }
+        return System.currentTimeMillis() - oldest.getValue().getEnqueuedTime();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    private void writeRecord(final byte type, final long id, final long time, final byte[] content) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + content.length);
+        buffer.put(type).putLong(id).putLong(time).putInt(content.length).putLong(crc.getValue()).put(content);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        appendedBytes += HEADER_BYTES + content.length;
+    }
+
+    private void sync(final long position) throws IOException {
+        synchronized (syncLock) {
+            if (syncedBytes >= position) {
+                return;
+            }
+            final FileChannel syncChannel;
+            final long target;
+            synchronized (writeLock) {
+                syncChannel = channel;
+                target = appendedBytes;
+            }
+            syncChannel.force(false);
+            syncedBytes = target;
+        }
+    }
+
+    private void rotate() throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                if (channel.position() < maxSegmentBytes) {
+                    return;
+                }
+                channel.force(false);
+                syncedBytes = appendedBytes;
+                channel.close();
+                openSegment(segment + 1);
+                deleteRetiredSegments();
+            }
+        }
+    }
+
+    private void openSegment(final long newSegment) throws IOException {
+        segment = newSegment;
+        segmentMail.put(segment, new HashSet<>());
+        channel = FileChannel.open(getSegmentFile(segment).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void replay() throws IOException {
+        final TreeSet<Long> segments = new TreeSet<>();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final String name = file.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+        for (final Long replaySegment : segments) {
+            segmentMail.put(replaySegment, new HashSet<>());
+            replaySegment(replaySegment);
+            segment = replaySegment;
+        }
+        deleteRetiredSegments();
+        if (!pendingMail.isEmpty()) {
+            logger.info("Mail spool {} holds {} undelivered messages", directory, pendingMail.size());
+        }
+    }
+
+    private void replaySegment(final long replaySegment) throws IOException {
+        final File file = getSegmentFile(replaySegment);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long offset = 0;
+            while (true) {
+                final byte type;
+                try {
+                    type = input.readByte();
+                } catch (final EOFException ex) {
+                    break;
+                }
+                final long id;
+                final long time;
+                final byte[] content;
+                final long expectedCrc;
+                try {
+                    id = input.readLong();
+                    time = input.readLong();
+                    final int length = input.readInt();
+                    if (length < 0 || length > file.length() - offset - HEADER_BYTES) {
+                        logger.warn("Ignoring incomplete record at the end of spool segment {}", file);
+                        break;
+                    }
+                    content = new byte[length];
+                    expectedCrc = input.readLong();
+                    input.readFully(content);
+                } catch (final EOFException ex) {
+                    logger.warn("Ignoring incomplete record at the end of spool segment {}", file);
+                    break;
+                }
+                final CRC32 crc = new CRC32();
+                crc.update(content);
+                if (crc.getValue() != expectedCrc) {
+                    logger.warn("Ignoring corrupt record at the end of spool segment {}", file);
+                    break;
+                }
+                if (type == RECORD_MAIL) {
+                    pendingMail.put(id, new SpooledMail(id, replaySegment, offset + HEADER_BYTES, content.length, time));
+                    segmentMail.get(replaySegment).add(id);
+                } else if (type == RECORD_ACK) {
+                    final SpooledMail mail = pendingMail.remove(id);
+                    if (mail != null) {
+                        segmentMail.get(mail.getSegment()).remove(id);
+                    }
+                }
+                nextId = Math.max(nextId, id + 1);
+                offset += HEADER_BYTES + content.length;
+            }
+        }
+    }
+
+    // deletes segments oldest first, stopping at the first one still holding a pending message or at the current one. a
+    // segment may hold acks for messages of older segments, so it can only go once all of those are gone.
+    private void deleteRetiredSegments() {
+        while (!segmentMail.isEmpty()) {
+            final Map.Entry<Long, Set<Long>> oldest = segmentMail.firstEntry();
+            if (!oldest.getValue().isEmpty() || (channel != null && oldest.getKey() == segment)) {
+                return;
+            }
+            segmentMail.remove(oldest.getKey());
+            deleteSegment(oldest.getKey());
+        }
+    }
+
+    private void deleteSegment(final long deletedSegment) {
+        final File file = getSegmentFile(deletedSegment);
+        if (!file.delete()) {
+            logger.warn("Could not delete spool segment {}", file);
+        }
+    }
+
+    private File getSegmentFile(final long fileSegment) {
+        return new File(directory, String.format("%s%019d%s", SEGMENT_PREFIX, fileSegment, SEGMENT_SUFFIX));
+    }
+}
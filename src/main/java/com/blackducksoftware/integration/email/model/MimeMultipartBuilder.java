@@ -49,6 +49,17 @@ public class MimeMultipartBuilder {
 
     private final List<String> attachmentFilePaths = new ArrayList<>();
 
+    // null reads the images from disk for every message
+    private final EmbeddedImageCache embeddedImageCache;
+
+    public MimeMultipartBuilder() {
+        this(null);
+    }
+
+    public MimeMultipartBuilder(final EmbeddedImageCache embeddedImageCache) {
+        this.embeddedImageCache = embeddedImageCache;
+    }
+
     public MimeMultipart build() throws MessagingException {
         final MimeMultipart email = new MimeMultipart("mixed");
 
@@ -102,6 +113,10 @@ public class MimeMultipartBuilder {
         htmlContent.addBodyPart(htmlPart);
 
         for (final Map.Entry<String, String> entry : contentIdsToFilePaths.entrySet()) {
+            if (embeddedImageCache != null) {
+                htmlContent.addBodyPart(embeddedImageCache.createBodyPart(entry.getValue(), entry.getKey()));
+                continue;
+            }
             final MimeBodyPart embeddedImageBodyPart = new MimeBodyPart();
             String imageFilePath = entry.getValue();
             File imageFile = new File(imageFilePath);
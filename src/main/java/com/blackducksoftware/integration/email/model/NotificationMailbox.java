@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+
+// the notifications ingested for one user's projects that their notifier has not yet delivered.
+// a window can only be read from the mailbox when the mailbox was collecting for the user's current projects since its start.
+public class NotificationMailbox {
+    private final NavigableMap<Long, List<NotificationContentItem>> notifications = new TreeMap<>();
+
+    private Set<String> projectUrls;
+
+    private Date coveredFrom;
+
+    private int size;
+
+    private long lastReadMillis;
+
+    public NotificationMailbox(final Set<String> projectUrls, final Date coveredFrom) {
+        this.projectUrls = projectUrls;
+        this.coveredFrom = coveredFrom;
+        lastReadMillis = System.currentTimeMillis();
+    }
+
+    public synchronized Set<String> getProjectUrls() {
+        return projectUrls;
+    }
+
+    // a project the mailbox was not collecting for restarts its coverage, earlier notifications of that project are not in it
+    public synchronized void updateProjectUrls(final Set<String> projectUrls, final Date coveredFrom) {
+        if (!this.projectUrls.containsAll(projectUrls)) {
+            this.coveredFrom = coveredFrom;
+        }
+        this.projectUrls = projectUrls;
+    }
+
+    public synchronized void append(final Collection<NotificationContentItem> items) {
+        for (final NotificationContentItem item : items) {
+            final Long createdAt = item.getCreatedAt().getTime();
+            List<NotificationContentItem> timeItems = notifications.get(createdAt);
+            if (timeItems == null) {
+                timeItems = new ArrayList<>(1);
+                notifications.put(createdAt, timeItems);
+            }
+            timeItems.add(item);
+            size++;
+        }
+    }
+
+    // null when the mailbox does not hold the whole window
+    public synchronized SortedSet<NotificationContentItem> read(final DateRange dateRange) {
+        lastReadMillis = System.currentTimeMillis();
+        if (coveredFrom == null || dateRange.getStart().before(coveredFrom)) {
+            return null;
+        }
+        final SortedSet<NotificationContentItem> windowItems = new TreeSet<>();
+        for (final List<NotificationContentItem> timeItems : notifications
+                .subMap(dateRange.getStart().getTime(), true, dateRange.getEnd().getTime(), true).values()) {
+            windowItems.addAll(timeItems);
+        }
+        return windowItems;
+    }
+
+    // drops what has been delivered; a window starting before the watermark can no longer be read from the mailbox
+    public synchronized void discardThrough(final Date watermark) {
+        final Map<Long, List<NotificationContentItem>> delivered = notifications.headMap(watermark.getTime(), true);
+        for (final List<NotificationContentItem> timeItems : delivered.values()) {
+            size -= timeItems.size();
+        }
+        delivered.clear();
+        final Date next = new Date(watermark.getTime() + 1);
+        if (coveredFrom != null && coveredFrom.before(next)) {
+            coveredFrom = next;
+        }
+    }
+
+    public synchronized Date getCoveredFrom() {
+        return coveredFrom;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getLastReadMillis() {
+        return lastReadMillis;
+    }
+}
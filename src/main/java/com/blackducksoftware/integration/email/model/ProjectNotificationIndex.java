@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+
+// notifications for a digest window fetched once and indexed by project version so each user can be given their slice
+public class ProjectNotificationIndex {
+    public static final String VERSIONS_URL_SEGMENT = "/versions/";
+
+    private final Map<String, SortedSet<NotificationContentItem>> projectVersionMap = new HashMap<>();
+
+    private final Map<String, List<String>> projectToVersionMap = new HashMap<>();
+
+    private final int notificationCount;
+
+    public ProjectNotificationIndex(final Collection<NotificationContentItem> notifications) {
+        for (final NotificationContentItem notification : notifications) {
+            final String projectVersionUrl = notification.getProjectVersion().getUrl();
+            SortedSet<NotificationContentItem> versionNotifications = projectVersionMap.get(projectVersionUrl);
+            if (versionNotifications == null) {
+                versionNotifications = new TreeSet<>();
+                projectVersionMap.put(projectVersionUrl, versionNotifications);
+                final String projectUrl = getProjectUrl(projectVersionUrl);
+                if (!projectToVersionMap.containsKey(projectUrl)) {
+                    projectToVersionMap.put(projectUrl, new LinkedList<>());
+                }
+                projectToVersionMap.get(projectUrl).add(projectVersionUrl);
+            }
+            versionNotifications.add(notification);
+        }
+        notificationCount = notifications.size();
+    }
+
+    public static String getProjectUrl(final String projectVersionUrl) {
+        if (projectVersionUrl == null) {
+            return "";
+        }
+        final int index = projectVersionUrl.indexOf(VERSIONS_URL_SEGMENT);
+        if (index < 0) {
+            return projectVersionUrl;
+        } else {
+            return projectVersionUrl.substring(0, index);
+        }
+    }
+
+    public SortedSet<NotificationContentItem> getProjectVersionNotifications(final String projectVersionUrl) {
+        final SortedSet<NotificationContentItem> versionNotifications = projectVersionMap.get(projectVersionUrl);
+        if (versionNotifications == null) {
+            return new TreeSet<>();
+        } else {
+            return new TreeSet<>(versionNotifications);
+        }
+    }
+
+    public List<String> getProjectVersionUrls(final Collection<String> projectUrls) {
+        final List<String> projectVersionUrls = new ArrayList<>();
+        for (final String projectUrl : projectUrls) {
+            final List<String> versionUrls = projectToVersionMap.get(projectUrl);
+            if (versionUrls != null) {
+                projectVersionUrls.addAll(versionUrls);
+            }
+        }
+        return projectVersionUrls;
+    }
+
+    public SortedSet<NotificationContentItem> getNotifications(final Collection<String> projectUrls) {
+        final SortedSet<NotificationContentItem> notifications = new TreeSet<>();
+        for (final String projectUrl : projectUrls) {
+            final List<String> versionUrls = projectToVersionMap.get(projectUrl);
+            if (versionUrls != null) {
+                for (final String versionUrl : versionUrls) {
+                    notifications.addAll(projectVersionMap.get(versionUrl));
+                }
+            }
+        }
+        return notifications;
+    }
+
+    public int getProjectVersionCount() {
+        return projectVersionMap.size();
+    }
+
+    public int getNotificationCount() {
+        return notificationCount;
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// inverted index of the projects users are assigned to, so the subscribers of a project version are a single lookup.
+// a user's entry is replaced whenever their projects are resolved again, without rebuilding the index.
+public class ProjectSubscriptionIndex {
+    private final Map<String, Set<String>> projectToUsers = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> userToProjects = new ConcurrentHashMap<>();
+
+    public synchronized void updateUser(final String userKey, final Collection<String> projectUrls) {
+        final Set<String> newProjects = new HashSet<>(projectUrls);
+        final Set<String> oldProjects = userToProjects.put(userKey, Collections.unmodifiableSet(newProjects));
+        if (oldProjects != null) {
+            for (final String projectUrl : oldProjects) {
+                if (!newProjects.contains(projectUrl)) {
+                    removeSubscriber(projectUrl, userKey);
+                }
+            }
+        }
+        for (final String projectUrl : newProjects) {
+            Set<String> users = projectToUsers.get(projectUrl);
+            if (users == null) {
+                users = ConcurrentHashMap.newKeySet();
+                projectToUsers.put(projectUrl, users);
+            }
+            users.add(userKey);
+        }
+    }
+
+    public synchronized void removeUser(final String userKey) {
+        final Set<String> oldProjects = userToProjects.remove(userKey);
+        if (oldProjects != null) {
+            for (final String projectUrl : oldProjects) {
+                removeSubscriber(projectUrl, userKey);
+            }
+        }
+    }
+
+    // drops the users that are no longer configured
+    public synchronized void retainUsers(final Collection<String> userKeys) {
+        final Set<String> retainedUsers = new HashSet<>(userKeys);
+        final Iterator<String> iterator = userToProjects.keySet().iterator();
+        while (iterator.hasNext()) {
+            final String userKey = iterator.next();
+            if (!retainedUsers.contains(userKey)) {
+                for (final String projectUrl : userToProjects.get(userKey)) {
+                    removeSubscriber(projectUrl, userKey);
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    public boolean hasUser(final String userKey) {
+        return userToProjects.containsKey(userKey);
+    }
+
+    public boolean isSubscribed(final String userKey, final String projectVersionUrl) {
+        final Set<String> users = projectToUsers.get(ProjectNotificationIndex.getProjectUrl(projectVersionUrl));
+        return users != null && users.contains(userKey);
+    }
+
+    public Set<String> getSubscribers(final String projectVersionUrl) {
+        final Set<String> users = projectToUsers.get(ProjectNotificationIndex.getProjectUrl(projectVersionUrl));
+        if (users == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(users);
+    }
+
+    public int getProjectCount() {
+        return projectToUsers.size();
+    }
+
+    public int getUserCount() {
+        return userToProjects.size();
+    }
+
+    private void removeSubscriber(final String projectUrl, final String userKey) {
+        final Set<String> users = projectToUsers.get(projectUrl);
+        if (users != null) {
+            users.remove(userKey);
+            if (users.isEmpty()) {
+                projectToUsers.remove(projectUrl);
+            }
+        }
+    }
+}
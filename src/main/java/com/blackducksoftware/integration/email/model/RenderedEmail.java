@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+// the body of an email rendered once and shared by every recipient of the same content. the per recipient header is
+// left as a marker in the html and text and filled in when the message for a recipient is built.
+public class RenderedEmail {
+    private final String templateName;
+
+    private final Map<String, Object> model;
+
+    private final String html;
+
+    private final String text;
+
+    private final Map<String, String> contentIdsToFilePaths;
+
+    public RenderedEmail(final String templateName, final Map<String, Object> model, final String html, final String text,
+            final Map<String, String> contentIdsToFilePaths) {
+        this.templateName = templateName;
+        this.model = Collections.unmodifiableMap(model);
+        this.html = html;
+        this.text = text;
+        this.contentIdsToFilePaths = Collections.unmodifiableMap(contentIdsToFilePaths);
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public Map<String, Object> getModel() {
+        return model;
+    }
+
+    public String getHtml() {
+        return html;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Map<String, String> getContentIdsToFilePaths() {
+        return contentIdsToFilePaths;
+    }
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+// keeps connected smtp transports per mail session so a burst of messages reuses a few connections.
+// a session is created once per mail configuration, so a transport is only reused with the server, credentials and
+// connection settings it was opened with; a changed configuration gets a new session and new connections.
+public class SmtpConnectionPool {
+    public static final int DEFAULT_MAX_MESSAGES = 100;
+
+    public static final int DEFAULT_MAX_IDLE = 4;
+
+    public static final long DEFAULT_IDLE_MILLIS = 60000;
+
+    // a connection idle for longer than this is checked with a NOOP before it is reused
+    public static final long DEFAULT_HEALTH_CHECK_MILLIS = 5000;
+
+    private final Logger logger = LoggerFactory.getLogger(SmtpConnectionPool.class);
+
+    private final int maxMessages;
+
+    private final int maxIdle;
+
+    private final long idleMillis;
+
+    private final long healthCheckMillis;
+
+    private final Map<Session, Deque<PooledTransport>> idleTransports = new IdentityHashMap<>();
+
+    private final ScheduledExecutorService evictionExecutor;
+
+    public SmtpConnectionPool() {
+        this(DEFAULT_MAX_MESSAGES, DEFAULT_MAX_IDLE, DEFAULT_IDLE_MILLIS);
+    }
+
+    public SmtpConnectionPool(final int maxMessages, final int maxIdle, final long idleMillis) {
+        this(maxMessages, maxIdle, idleMillis, DEFAULT_HEALTH_CHECK_MILLIS);
+    }
+
+    public SmtpConnectionPool(final int maxMessages, final int maxIdle, final long idleMillis, final long healthCheckMillis) {
+        this.maxMessages = maxMessages;
+        this.maxIdle = maxIdle;
+        this.idleMillis = idleMillis;
+        this.healthCheckMillis = healthCheckMillis;
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("smtp-pool-eviction").setDaemon(true).build());
+        evictionExecutor.scheduleWithFixedDelay(() -> evictIdle(), idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // returns a connected transport, reusing an idle one of the same session when it is still healthy
+    public PooledTransport borrow(final ExtensionProperties properties, final Session session) throws MessagingException {
+        PooledTransport pooledTransport;
+        while ((pooledTransport = pollIdle(session)) != null) {
+            // a dropped connection is found here, before anything is sent, so replacing it cannot send a message twice
+            if (isHealthy(pooledTransport)) {
+                return pooledTransport;
+            }
+            close(pooledTransport);
+        }
+        final Transport transport = session.getTransport("smtp");
+        if (properties.isAuth()) {
+            transport.connect(properties.getHost(), properties.getPort(), properties.getUsername(), properties.getPassword());
+        } else {
+            transport.connect();
+        }
+        return new PooledTransport(session, transport);
+    }
+
+    public void release(final PooledTransport pooledTransport) {
+        release(pooledTransport, true);
+    }
+
+    // a transport that failed must not be returned; close it with discard instead. only a submitted message counts
+    // towards the messages sent on the connection.
+    public void release(final PooledTransport pooledTransport, final boolean submitted) {
+        pooledTransport.used(submitted);
+        if (pooledTransport.getMessagesSent() >= maxMessages) {
+            close(pooledTransport);
+            return;
+        }
+        synchronized (idleTransports) {
+            Deque<PooledTransport> transports = idleTransports.get(pooledTransport.getSession());
+            if (transports == null) {
+                transports = new ArrayDeque<>();
+                idleTransports.put(pooledTransport.getSession(), transports);
+            }
+            if (transports.size() < maxIdle) {
+                transports.push(pooledTransport);
+                return;
+            }
+        }
+        close(pooledTransport);
+    }
+
+    public void discard(final PooledTransport pooledTransport) {
+        close(pooledTransport);
+    }
+
+    public int getIdleCount() {
+        synchronized (idleTransports) {
+            int count = 0;
+            for (final Deque<PooledTransport> transports : idleTransports.values()) {
+                count += transports.size();
+            }
+            return count;
+        }
+    }
+
+    public void evictIdle() {
+        final List<PooledTransport> evicted = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        synchronized (idleTransports) {
+            final Iterator<Deque<PooledTransport>> sessionIterator = idleTransports.values().iterator();
+            while (sessionIterator.hasNext()) {
+                final Deque<PooledTransport> transports = sessionIterator.next();
+                final Iterator<PooledTransport> iterator = transports.iterator();
+                while (iterator.hasNext()) {
+                    final PooledTransport pooledTransport = iterator.next();
+                    if (now - pooledTransport.getLastUsed() >= idleMillis) {
+                        iterator.remove();
+                        evicted.add(pooledTransport);
+                    }
+                }
+                // drop the sessions of a replaced configuration
+                if (transports.isEmpty()) {
+                    sessionIterator.remove();
+                }
+            }
+        }
+        for (final PooledTransport pooledTransport : evicted) {
+            close(pooledTransport);
+        }
+    }
+
+    public void shutDown() {
+        evictionExecutor.shutdownNow();
+        final List<PooledTransport> closing = new ArrayList<>();
+        synchronized (idleTransports) {
+            for (final Deque<PooledTransport> transports : idleTransports.values()) {
+                closing.addAll(transports);
+            }
+            idleTransports.clear();
+        }
+        for (final PooledTransport pooledTransport : closing) {
+            close(pooledTransport);
+        }
+    }
+
+    private PooledTransport pollIdle(final Session session) {
+        synchronized (idleTransports) {
+            final Deque<PooledTransport> transports = idleTransports.get(session);
+            if (transports == null) {
+                return null;
+            }
+            return transports.poll();
+        }
+    }
+
+    // a connection used within the last few seconds is taken as alive without the NOOP round trip; should the server have
+    // dropped it anyway the send fails and is not retried on it
+    private boolean isHealthy(final PooledTransport pooledTransport) {
+        if (System.currentTimeMillis() - pooledTransport.getLastUsed() < healthCheckMillis) {
+            return true;
+        }
+        // Transport.isConnected sends a NOOP on an smtp transport
+        return pooledTransport.getTransport().isConnected();
+    }
+
+    private void close(final PooledTransport pooledTransport) {
+        try {
+            pooledTransport.getTransport().close();
+        } catch (final MessagingException e) {
+            logger.debug("Error closing smtp connection", e);
+        }
+    }
+
+    public static class PooledTransport {
+        private final Session session;
+
+        private final Transport transport;
+
+        private int messagesSent;
+
+        private long lastUsed;
+
+        public PooledTransport(final Session session, final Transport transport) {
+            this.session = session;
+            this.transport = transport;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public Transport getTransport() {
+            return transport;
+        }
+
+        public int getMessagesSent() {
+            return messagesSent;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        // a borrowed transport belongs to one thread until it is released
+        private void used(final boolean submitted) {
+            if (submitted) {
+                messagesSent++;
+            }
+            lastUsed = System.currentTimeMillis();
+        }
+
+        public boolean isReused() {
+            return messagesSent > 0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+public class SpooledMail {
+    private final long id;
+
+    private final long segment;
+
+    private final long offset;
+
+    private final int length;
+
+    private final long enqueuedTime;
+
+    public SpooledMail(final long id, final long segment, final long offset, final int length, final long enqueuedTime) {
+        this.id = id;
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+        this.enqueuedTime = enqueuedTime;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getSegment() {
+        return segment;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public long getEnqueuedTime() {
+        return enqueuedTime;
+    }
+}
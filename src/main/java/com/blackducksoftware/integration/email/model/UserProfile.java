@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+
+// a user's email preferences parsed once from their extension config instead of on every lookup
+public class UserProfile {
+    private final String userKey;
+
+    private final boolean optedIn;
+
+    private final EmailFrequency frequency;
+
+    private final Set<NotificationCategoryEnum> triggers;
+
+    private final String templateName;
+
+    // the raw config values the profile was compiled from, to tell when it is out of date
+    private final Map<String, List<String>> configValues;
+
+    // null until the user's projects have been resolved
+    private final Set<String> projectUrls;
+
+    private final long projectsResolvedAt;
+
+    public UserProfile(final String userKey, final boolean optedIn, final EmailFrequency frequency, final EnumSet<NotificationCategoryEnum> triggers,
+            final String templateName, final Map<String, List<String>> configValues) {
+        this(userKey, optedIn, frequency, Collections.unmodifiableSet(EnumSet.copyOf(triggers)), templateName,
+                Collections.unmodifiableMap(configValues), null, 0);
+    }
+
+    private UserProfile(final String userKey, final boolean optedIn, final EmailFrequency frequency, final Set<NotificationCategoryEnum> triggers,
+            final String templateName, final Map<String, List<String>> configValues, final Set<String> projectUrls, final long projectsResolvedAt) {
+        this.userKey = userKey;
+        this.optedIn = optedIn;
+        this.frequency = frequency;
+        this.triggers = triggers;
+        this.templateName = templateName;
+        this.configValues = configValues;
+        this.projectUrls = projectUrls == null ? null : Collections.unmodifiableSet(projectUrls);
+        this.projectsResolvedAt = projectsResolvedAt;
+    }
+
+    public UserProfile withProjectUrls(final Set<String> projectUrls, final long resolvedAt) {
+        return new UserProfile(userKey, optedIn, frequency, triggers, templateName, configValues, projectUrls, resolvedAt);
+    }
+
+    public String getUserKey() {
+        return userKey;
+    }
+
+    public boolean isOptedIn() {
+        return optedIn;
+    }
+
+    public EmailFrequency getFrequency() {
+        return frequency;
+    }
+
+    public Set<NotificationCategoryEnum> getTriggers() {
+        return triggers;
+    }
+
+    public boolean hasTrigger(final NotificationCategoryEnum category) {
+        return triggers.contains(category);
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public Map<String, List<String>> getConfigValues() {
+        return configValues;
+    }
+
+    public Set<String> getProjectUrls() {
+        return projectUrls;
+    }
+
+    public long getProjectsResolvedAt() {
+        return projectsResolvedAt;
+    }
+}
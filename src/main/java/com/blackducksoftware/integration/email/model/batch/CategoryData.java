@@ -30,10 +30,18 @@ public class CategoryData {
 
     private final int itemCount;
 
+    // the items left out of the list by a category item limit
+    private final int moreItemCount;
+
     public CategoryData(final String categoryKey, final List<ItemData> itemList, final int itemCount) {
+        this(categoryKey, itemList, itemCount, 0);
+    }
+
+    public CategoryData(final String categoryKey, final List<ItemData> itemList, final int itemCount, final int moreItemCount) {
         this.categoryKey = categoryKey;
         this.itemList = itemList;
         this.itemCount = itemCount;
+        this.moreItemCount = moreItemCount;
     }
 
     public String getCategoryKey() {
@@ -48,8 +56,12 @@ public class CategoryData {
         return itemCount;
     }
 
+    public int getMoreItemCount() {
+        return moreItemCount;
+    }
+
     @Override
     public String toString() {
-        return "CategoryData [categoryKey=" + categoryKey + ", itemList=" + itemList + ", itemCount=" + itemCount + "]";
+        return "CategoryData [categoryKey=" + categoryKey + ", itemList=" + itemList + ", itemCount=" + itemCount + ", moreItemCount=" + moreItemCount + "]";
     }
 }
@@ -21,8 +21,9 @@
  *******************************************************************************/
 package com.blackducksoftware.integration.email.model.batch;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.PriorityQueue;
 
 public class CategoryDataBuilder {
     private String categoryKey;
@@ -31,17 +32,48 @@ public class CategoryDataBuilder {
 
     private int itemCount;
 
+    private final CategoryItemLimit itemLimit;
+
+    // the kept items of a bounded category with the lowest ranked one at the head, null when every item is kept
+    private final PriorityQueue<ItemData> topItems;
+
+    private int moreItemCount;
+
     public CategoryDataBuilder() {
-        this.itemList = new LinkedList<>();
+        this(CategoryItemLimit.UNBOUNDED);
+    }
+
+    public CategoryDataBuilder(final CategoryItemLimit itemLimit) {
+        this.itemList = new ArrayList<>();
         this.itemCount = 0;
+        this.itemLimit = itemLimit;
+        if (itemLimit.isBounded()) {
+            topItems = new PriorityQueue<>(itemLimit.getMaxItems(), itemLimit.getOrder().getComparator().reversed());
+        } else {
+            topItems = null;
+        }
     }
 
     public void addItem(final ItemData item) {
-        itemList.add(item);
+        if (topItems == null) {
+            itemList.add(item);
+        } else if (topItems.size() < itemLimit.getMaxItems()) {
+            topItems.add(item);
+        } else {
+            moreItemCount++;
+            if (itemLimit.getOrder().getComparator().compare(item, topItems.peek()) < 0) {
+                topItems.poll();
+                topItems.add(item);
+            }
+        }
     }
 
     public void removeItem(final ItemData item) {
-        itemList.remove(item);
+        if (topItems == null) {
+            itemList.remove(item);
+        } else {
+            topItems.remove(item);
+        }
     }
 
     public void incrementItemCount(final int itemCount) {
@@ -68,11 +100,21 @@ public class CategoryDataBuilder {
         this.itemCount = itemCount;
     }
 
+    // the items of a bounded category in rank order
     public List<ItemData> getItemList() {
-        return itemList;
+        if (topItems == null) {
+            return itemList;
+        }
+        final List<ItemData> rankedItems = new ArrayList<>(topItems);
+        rankedItems.sort(itemLimit.getOrder().getComparator());
+        return rankedItems;
+    }
+
+    public int getMoreItemCount() {
+        return moreItemCount;
     }
 
     public CategoryData build() {
-        return new CategoryData(categoryKey, itemList, itemCount);
+        return new CategoryData(categoryKey, getItemList(), itemCount, moreItemCount);
     }
 }
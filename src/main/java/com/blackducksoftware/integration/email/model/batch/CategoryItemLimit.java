@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model.batch;
+
+import java.util.Comparator;
+
+// how many items of a category a digest keeps and which ones. the item count of the category stays exact, the items
+// beyond the limit are only counted.
+public class CategoryItemLimit {
+    public static final CategoryItemLimit UNBOUNDED = new CategoryItemLimit(0, Order.NEWEST);
+
+    public enum Order {
+        NEWEST(Comparator.comparingLong(ItemData::getCreatedAt).reversed()),
+        COUNT(Comparator.comparingInt(CategoryItemLimit::getCount).reversed().thenComparing(Comparator.comparingLong(ItemData::getCreatedAt).reversed()));
+
+        private final Comparator<ItemData> comparator;
+
+        private Order(final Comparator<ItemData> comparator) {
+            this.comparator = comparator;
+        }
+
+        public Comparator<ItemData> getComparator() {
+            return comparator;
+        }
+    }
+
+    private final int maxItems;
+
+    private final Order order;
+
+    public CategoryItemLimit(final int maxItems, final Order order) {
+        this.maxItems = maxItems;
+        this.order = order;
+    }
+
+    // an item without a count stands for one
+    private static int getCount(final ItemData item) {
+        final Integer count = item.getCount();
+        return count == null ? 1 : count;
+    }
+
+    public boolean isBounded() {
+        return maxItems > 0;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+}
@@ -21,24 +21,160 @@
  *******************************************************************************/
 package com.blackducksoftware.integration.email.model.batch;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.notification.processor.ItemTypeEnum;
+import com.blackducksoftware.integration.hub.notification.processor.event.NotificationEvent;
+
+// one line of a digest category. only the values the templates show are kept, so an item no longer holds on to the
+// notification content and vulnerability ids of the event it came from.
 public class ItemData {
-    private final Map<String, Object> dataSet;
+    // the order the templates have always listed the values in
+    private static final ItemTypeEnum[] DISPLAY_ORDER = { ItemTypeEnum.PERSON, ItemTypeEnum.VERSION, ItemTypeEnum.RULE, ItemTypeEnum.COMPONENT,
+            ItemTypeEnum.COUNT };
+
+    private final EnumMap<ItemTypeEnum, Object> items;
+
+    // when the notification of the item was created, 0 when it is not known
+    private final long createdAt;
+
+    public ItemData(final EnumMap<ItemTypeEnum, Object> items) {
+        this(items, 0);
+    }
+
+    public ItemData(final EnumMap<ItemTypeEnum, Object> items, final long createdAt) {
+        this.items = items;
+        this.createdAt = createdAt;
+    }
+
+    // keeps the entries of an event data set that are item types and drops the rest
+    public static ItemData fromDataSet(final Map<String, ?> dataSet) {
+        final EnumMap<ItemTypeEnum, Object> items = new EnumMap<>(ItemTypeEnum.class);
+        for (final ItemTypeEnum itemType : DISPLAY_ORDER) {
+            final Object value = dataSet.get(itemType.name());
+            if (value != null) {
+                items.put(itemType, value);
+            }
+        }
+        final Object content = dataSet.get(NotificationEvent.DATA_SET_KEY_NOTIFICATION_CONTENT);
+        if (content instanceof NotificationContentItem && ((NotificationContentItem) content).getCreatedAt() != null) {
+            return new ItemData(items, ((NotificationContentItem) content).getCreatedAt().getTime());
+        }
+        return new ItemData(items);
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Object get(final ItemTypeEnum itemType) {
+        return items.get(itemType);
+    }
+
+    public void put(final ItemTypeEnum itemType, final Object value) {
+        items.put(itemType, value);
+    }
+
+    public String getRule() {
+        return (String) items.get(ItemTypeEnum.RULE);
+    }
+
+    public String getComponent() {
+        return (String) items.get(ItemTypeEnum.COMPONENT);
+    }
+
+    public String getVersion() {
+        return (String) items.get(ItemTypeEnum.VERSION);
+    }
+
+    public String getPerson() {
+        return (String) items.get(ItemTypeEnum.PERSON);
+    }
 
-    public ItemData(final Map<String, Object> dataMap) {
-        this.dataSet = dataMap;
+    public Integer getCount() {
+        return (Integer) items.get(ItemTypeEnum.COUNT);
     }
 
+    // the values by item type name for the templates, which list item.dataSet
     public Map<String, Object> getDataSet() {
-        return dataSet;
+        return new DataSetView();
     }
 
     @Override
     public String toString() {
         return ReflectionToStringBuilder.toString(this, ToStringStyle.JSON_STYLE);
     }
+
+    // read only view of the items in display order, nothing is copied
+    private class DataSetView extends AbstractMap<String, Object> {
+        @Override
+        public int size() {
+            return items.size();
+        }
+
+        @Override
+        public Object get(final Object key) {
+            for (final ItemTypeEnum itemType : DISPLAY_ORDER) {
+                if (itemType.name().equals(key)) {
+                    return items.get(itemType);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public int size() {
+                    return items.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        private int index = advance(0);
+
+                        private int advance(final int from) {
+                            int next = from;
+                            while (next < DISPLAY_ORDER.length && !items.containsKey(DISPLAY_ORDER[next])) {
+                                next++;
+                            }
+                            return next;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < DISPLAY_ORDER.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            final ItemTypeEnum itemType = DISPLAY_ORDER[index];
+                            index = advance(index + 1);
+                            return new SimpleImmutableEntry<>(itemType.name(), items.get(itemType));
+                        }
+                    };
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model.batch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.blackducksoftware.integration.email.model.ProjectNotificationIndex;
+
+// the processed notifications of one or more consecutive days by project version. a day is rolled up once and a longer
+// digest merges the days in order, which gives the same outcome as processing all of their notifications together.
+public class NotificationRollup {
+    private String firstDay;
+
+    private String lastDay;
+
+    private Map<String, ProjectRollup> projects;
+
+    // end of the notifications rolled up so far while the last day is still in progress, null once the day is complete
+    private Long coveredUntil;
+
+    public NotificationRollup(final String firstDay, final String lastDay, final Map<String, ProjectRollup> projects) {
+        this(firstDay, lastDay, projects, null);
+    }
+
+    public NotificationRollup(final String firstDay, final String lastDay, final Map<String, ProjectRollup> projects, final Long coveredUntil) {
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+        this.projects = projects;
+        this.coveredUntil = coveredUntil;
+    }
+
+    public NotificationRollup merge(final NotificationRollup later) {
+        final Map<String, ProjectRollup> mergedProjects = new LinkedHashMap<>(projects);
+        for (final Map.Entry<String, ProjectRollup> entry : later.projects.entrySet()) {
+            final ProjectRollup project = mergedProjects.get(entry.getKey());
+            mergedProjects.put(entry.getKey(), project == null ? entry.getValue() : project.merge(entry.getValue()));
+        }
+        return new NotificationRollup(firstDay, later.lastDay, mergedProjects, later.coveredUntil);
+    }
+
+    public List<String> getProjectVersionUrls(final Collection<String> projectUrls) {
+        final List<String> projectVersionUrls = new ArrayList<>();
+        for (final String projectVersionUrl : projects.keySet()) {
+            if (projectUrls.contains(ProjectNotificationIndex.getProjectUrl(projectVersionUrl))) {
+                projectVersionUrls.add(projectVersionUrl);
+            }
+        }
+        return projectVersionUrls;
+    }
+
+    public String getFirstDay() {
+        return firstDay;
+    }
+
+    public String getLastDay() {
+        return lastDay;
+    }
+
+    public Map<String, ProjectRollup> getProjects() {
+        return projects;
+    }
+
+    public Long getCoveredUntil() {
+        return coveredUntil;
+    }
+
+    public NotificationRollup withCoveredUntil(final Long coveredUntil) {
+        return new NotificationRollup(firstDay, lastDay, projects, coveredUntil);
+    }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model.batch;
+
+import java.util.Map;
+
+// what the policy notifications of a period did to one violation. the notifications cancel each other out, so the outcome
+// depends on whether the violation was already pending when the period began: a pending violation only changes when the
+// period clears or overrides it, and otherwise the period's own outcome applies. a null category means nothing is left.
+public class PolicyRollup {
+    private String category;
+
+    private Map<String, String> dataSet;
+
+    private boolean replacesPending;
+
+    private String pendingCategory;
+
+    private Map<String, String> pendingDataSet;
+
+    public PolicyRollup(final String category, final Map<String, String> dataSet, final boolean replacesPending, final String pendingCategory,
+            final Map<String, String> pendingDataSet) {
+        this.category = category;
+        this.dataSet = dataSet;
+        this.replacesPending = replacesPending;
+        this.pendingCategory = pendingCategory;
+        this.pendingDataSet = pendingDataSet;
+    }
+
+    // the outcome of this period followed by the later one
+    public PolicyRollup merge(final PolicyRollup later) {
+        final boolean laterReplaces = later.replacesPending;
+        final String mergedCategory = category == null ? later.category : laterReplaces ? later.pendingCategory : category;
+        final Map<String, String> mergedDataSet = category == null ? later.dataSet : laterReplaces ? later.pendingDataSet : dataSet;
+        if (!replacesPending) {
+            return new PolicyRollup(mergedCategory, mergedDataSet, laterReplaces, later.pendingCategory, later.pendingDataSet);
+        }
+        final String mergedPendingCategory = pendingCategory == null ? later.category : laterReplaces ? later.pendingCategory : pendingCategory;
+        final Map<String, String> mergedPendingDataSet = pendingCategory == null ? later.dataSet
+                : laterReplaces ? later.pendingDataSet : pendingDataSet;
+        return new PolicyRollup(mergedCategory, mergedDataSet, true, mergedPendingCategory, mergedPendingDataSet);
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Map<String, String> getDataSet() {
+        return dataSet;
+    }
+
+    public boolean isReplacesPending() {
+        return replacesPending;
+    }
+
+    public String getPendingCategory() {
+        return pendingCategory;
+    }
+
+    public Map<String, String> getPendingDataSet() {
+        return pendingDataSet;
+    }
+}
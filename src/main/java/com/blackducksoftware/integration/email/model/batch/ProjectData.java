@@ -32,12 +32,21 @@ public class ProjectData {
 
     private final String projectVersion;
 
+    // null when the data was not built from notifications
+    private final String projectVersionUrl;
+
     private final Map<NotificationCategoryEnum, CategoryData> categoryMap;
 
     public ProjectData(final String projectName, final String projectVersion,
             final Map<NotificationCategoryEnum, CategoryData> categoryMap) {
+        this(projectName, projectVersion, null, categoryMap);
+    }
+
+    public ProjectData(final String projectName, final String projectVersion, final String projectVersionUrl,
+            final Map<NotificationCategoryEnum, CategoryData> categoryMap) {
         this.projectName = projectName;
         this.projectVersion = projectVersion;
+        this.projectVersionUrl = projectVersionUrl;
         this.categoryMap = categoryMap;
         this.projectKey = projectName + projectVersion;
     }
@@ -54,6 +63,10 @@ public class ProjectData {
         return projectVersion;
     }
 
+    public String getProjectVersionUrl() {
+        return projectVersionUrl;
+    }
+
     public Map<NotificationCategoryEnum, CategoryData> getCategoryMap() {
         return categoryMap;
     }
@@ -31,6 +31,8 @@ public class ProjectDataBuilder {
 
     private String projectVersion;
 
+    private String projectVersionUrl;
+
     private final Map<NotificationCategoryEnum, CategoryDataBuilder> categoryBuilderMap;
 
     public ProjectDataBuilder() {
@@ -65,11 +67,19 @@ public class ProjectDataBuilder {
         this.projectVersion = projectVersion;
     }
 
+    public String getProjectVersionUrl() {
+        return projectVersionUrl;
+    }
+
+    public void setProjectVersionUrl(final String projectVersionUrl) {
+        this.projectVersionUrl = projectVersionUrl;
+    }
+
     public ProjectData build() {
         final Map<NotificationCategoryEnum, CategoryData> categoryMap = new TreeMap<>();
         for (final Map.Entry<NotificationCategoryEnum, CategoryDataBuilder> entry : categoryBuilderMap.entrySet()) {
             categoryMap.put(entry.getKey(), entry.getValue().build());
         }
-        return new ProjectData(projectName, projectVersion, categoryMap);
+        return new ProjectData(projectName, projectVersion, projectVersionUrl, categoryMap);
     }
 }
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model.batch;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// the policy and vulnerability outcomes of a project version over a period, keyed by the processors' event keys
+public class ProjectRollup {
+    private String projectName;
+
+    private String projectVersion;
+
+    private String projectVersionUrl;
+
+    private Map<String, PolicyRollup> policies;
+
+    private Map<String, VulnerabilityRollup> vulnerabilities;
+
+    public ProjectRollup(final String projectName, final String projectVersion, final String projectVersionUrl) {
+        this(projectName, projectVersion, projectVersionUrl, new LinkedHashMap<>(), new LinkedHashMap<>());
+    }
+
+    public ProjectRollup(final String projectName, final String projectVersion, final String projectVersionUrl,
+            final Map<String, PolicyRollup> policies, final Map<String, VulnerabilityRollup> vulnerabilities) {
+        this.projectName = projectName;
+        this.projectVersion = projectVersion;
+        this.projectVersionUrl = projectVersionUrl;
+        this.policies = policies;
+        this.vulnerabilities = vulnerabilities;
+    }
+
+    public ProjectRollup merge(final ProjectRollup later) {
+        final Map<String, PolicyRollup> mergedPolicies = new LinkedHashMap<>(policies);
+        for (final Map.Entry<String, PolicyRollup> entry : later.policies.entrySet()) {
+            final PolicyRollup policy = mergedPolicies.get(entry.getKey());
+            mergedPolicies.put(entry.getKey(), policy == null ? entry.getValue() : policy.merge(entry.getValue()));
+        }
+        final Map<String, VulnerabilityRollup> mergedVulnerabilities = new LinkedHashMap<>(vulnerabilities);
+        for (final Map.Entry<String, VulnerabilityRollup> entry : later.vulnerabilities.entrySet()) {
+            final VulnerabilityRollup vulnerability = mergedVulnerabilities.get(entry.getKey());
+            mergedVulnerabilities.put(entry.getKey(), vulnerability == null ? entry.getValue() : vulnerability.merge(entry.getValue()));
+        }
+        // names can change over time, the latest ones are shown
+        return new ProjectRollup(later.projectName, later.projectVersion, projectVersionUrl, mergedPolicies, mergedVulnerabilities);
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getProjectVersion() {
+        return projectVersion;
+    }
+
+    public String getProjectVersionUrl() {
+        return projectVersionUrl;
+    }
+
+    public Map<String, PolicyRollup> getPolicies() {
+        return policies;
+    }
+
+    public Map<String, VulnerabilityRollup> getVulnerabilities() {
+        return vulnerabilities;
+    }
+}
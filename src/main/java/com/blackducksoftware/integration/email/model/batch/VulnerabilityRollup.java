@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model.batch;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// the vulnerabilities of a component version a period left added and the ones it removed; a later period's removals
+// take back earlier additions and its additions take back earlier removals
+public class VulnerabilityRollup {
+    private String componentVersionUrl;
+
+    private Map<String, String> dataSet;
+
+    private Set<String> addedIds;
+
+    private Set<String> removedIds;
+
+    public VulnerabilityRollup(final String componentVersionUrl, final Map<String, String> dataSet, final Set<String> addedIds,
+            final Set<String> removedIds) {
+        this.componentVersionUrl = componentVersionUrl;
+        this.dataSet = dataSet;
+        this.addedIds = addedIds;
+        this.removedIds = removedIds;
+    }
+
+    public VulnerabilityRollup merge(final VulnerabilityRollup later) {
+        final Set<String> mergedAddedIds = new HashSet<>(addedIds);
+        mergedAddedIds.removeAll(later.removedIds);
+        mergedAddedIds.addAll(later.addedIds);
+        final Set<String> mergedRemovedIds = new HashSet<>(removedIds);
+        mergedRemovedIds.removeAll(later.addedIds);
+        mergedRemovedIds.addAll(later.removedIds);
+        return new VulnerabilityRollup(componentVersionUrl, dataSet == null ? later.dataSet : dataSet, mergedAddedIds, mergedRemovedIds);
+    }
+
+    public String getComponentVersionUrl() {
+        return componentVersionUrl;
+    }
+
+    public Map<String, String> getDataSet() {
+        return dataSet;
+    }
+
+    public Set<String> getAddedIds() {
+        return addedIds;
+    }
+
+    public Set<String> getRemovedIds() {
+        return removedIds;
+    }
+}
@@ -21,35 +21,56 @@
  *******************************************************************************/
 package com.blackducksoftware.integration.email.notifier;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.blackducksoftware.integration.email.EmailExtensionConstants;
 import com.blackducksoftware.integration.email.ExtensionLogger;
+import com.blackducksoftware.integration.email.batch.processor.ComponentVulnerabilityCache;
 import com.blackducksoftware.integration.email.batch.processor.EmailProcessor;
+import com.blackducksoftware.integration.email.batch.processor.OpenPolicyViolationStore;
 import com.blackducksoftware.integration.email.extension.config.ExtensionInfo;
 import com.blackducksoftware.integration.email.model.DateRange;
 import com.blackducksoftware.integration.email.model.EmailTarget;
 import com.blackducksoftware.integration.email.model.ExtensionProperties;
+import com.blackducksoftware.integration.email.model.EmailFrequency;
+import com.blackducksoftware.integration.email.model.ProjectNotificationIndex;
+import com.blackducksoftware.integration.email.model.ProjectSubscriptionIndex;
+import com.blackducksoftware.integration.email.model.RenderedEmail;
+import com.blackducksoftware.integration.email.model.UserProfile;
 import com.blackducksoftware.integration.email.model.batch.CategoryData;
+import com.blackducksoftware.integration.email.model.batch.CategoryItemLimit;
+import com.blackducksoftware.integration.email.model.batch.NotificationRollup;
 import com.blackducksoftware.integration.email.model.batch.ProjectData;
 import com.blackducksoftware.integration.email.service.EmailMessagingService;
+import com.blackducksoftware.integration.email.service.NotificationIngestService;
+import com.blackducksoftware.integration.email.service.UserProfileService;
+import com.blackducksoftware.integration.email.service.UserProjectService;
 import com.blackducksoftware.integration.exception.IntegrationException;
 import com.blackducksoftware.integration.hub.api.item.MetaService;
 import com.blackducksoftware.integration.hub.api.nonpublic.HubVersionRequestService;
-import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
 import com.blackducksoftware.integration.hub.builder.HubServerConfigBuilder;
 import com.blackducksoftware.integration.hub.dataservice.extension.item.UserConfigItem;
 import com.blackducksoftware.integration.hub.dataservice.notification.NotificationDataService;
@@ -64,6 +85,8 @@ import com.blackducksoftware.integration.hub.phonehome.IntegrationInfo;
 import com.blackducksoftware.integration.hub.service.HubResponseService;
 import com.blackducksoftware.integration.hub.service.HubServicesFactory;
 
+import freemarker.template.TemplateException;
+
 public abstract class AbstractDigestNotifier extends IntervalNotifier {
     private static final String KEY_HUB_SERVER_URL = "hub_server_url";
 
@@ -87,94 +110,127 @@ public abstract class AbstractDigestNotifier extends IntervalNotifier {
 
     public static final String KEY_USER_LAST_NAME = "user_last_name";
 
+    public static final String KEY_TOPIC_FRAGMENTS = "topicFragments";
+
+    public static final String VARIABLE_SHARED_FETCH = "shared.fetch";
+
+    public static final String VARIABLE_PARALLEL = "parallel";
+
+    public static final String VARIABLE_SHARED_RENDER = "shared.render";
+
+    public static final String VARIABLE_ROLLUP = "rollup";
+
+    public static final String VARIABLE_PRE_AGGREGATE_CRON = "preaggregate.cron.expression";
+
+    public static final String VARIABLE_PRE_AGGREGATE_LAG_SECONDS = "preaggregate.lag.seconds";
+
+    public static final int DEFAULT_PRE_AGGREGATE_LAG_SECONDS = 300;
+
+    public static final String VARIABLE_CATEGORY_MAX_ITEMS = "category.max.items";
+
+    public static final String VARIABLE_CATEGORY_ITEM_ORDER = "category.item.order";
+
+    public static final String VARIABLE_CHECKPOINT_MAX_ATTEMPTS = "checkpoint.max.attempts";
+
+    public static final int DEFAULT_CHECKPOINT_MAX_ATTEMPTS = 3;
+
+    private enum UserResult {
+        SENT, EMPTY, FILTERED, SKIPPED, FAILED
+    }
+
     private final Logger logger = LoggerFactory.getLogger(AbstractDigestNotifier.class);
 
     private final HubResponseService hubResponseService;
 
     private final NotificationDataService notificationDataService;
 
-    private final VulnerabilityRequestService vulnerabilityRequestService;
-
     private final MetaService metaService;
 
     private final PhoneHomeDataService phoneHomeService;
 
     private final HubVersionRequestService versionService;
 
+    private final UserProfileService userProfileService;
+
+    private final DigestFingerprint digestFingerprint = new DigestFingerprint();
+
+    private final ComponentVulnerabilityCache componentVulnerabilityCache;
+
+    private NotificationIngestService notificationIngestService;
+
+    private final OpenPolicyViolationStore violationStore;
+
+    private final DailyRollupStore rollupStore;
+
+    private final DailyRollupBuilder rollupBuilder;
+
     public AbstractDigestNotifier(final ExtensionProperties extensionProperties,
-            final EmailMessagingService emailMessagingService, final HubServicesFactory hubServicesFactory, final ExtensionInfo extensionInfoData) {
+            final EmailMessagingService emailMessagingService, final HubServicesFactory hubServicesFactory, final ExtensionInfo extensionInfoData,
+            final DigestResources digestResources) {
         super(extensionProperties, emailMessagingService, hubServicesFactory, extensionInfoData);
         final Logger logger = LoggerFactory.getLogger(NotificationDataService.class);
         final ExtensionLogger extLogger = new ExtensionLogger(logger);
         hubResponseService = hubServicesFactory.createHubResponseService();
         notificationDataService = hubServicesFactory.createNotificationDataService(extLogger);
-        vulnerabilityRequestService = hubServicesFactory.createVulnerabilityRequestService();
         metaService = hubServicesFactory.createMetaService(extLogger);
         this.phoneHomeService = hubServicesFactory.createPhoneHomeDataService(extLogger);
         this.versionService = hubServicesFactory.createHubVersionRequestService();
+        this.userProfileService = new UserProfileService(new UserProjectService(hubResponseService, metaService));
+        // shared by the digest notifiers, a component resolved or a day rolled up for one is reused by the others
+        this.componentVulnerabilityCache = digestResources.getComponentVulnerabilityCache();
+        this.violationStore = digestResources.getViolationStore();
+        this.rollupStore = digestResources.getRollupStore();
+        this.rollupBuilder = digestResources.getRollupBuilder();
     }
 
     public abstract String getCategory();
 
+    public ComponentVulnerabilityCache getComponentVulnerabilityCache() {
+        return componentVulnerabilityCache;
+    }
+
+    public NotificationIngestService getNotificationIngestService() {
+        return notificationIngestService;
+    }
+
+    // null when each notifier queries the Hub for its own windows
+    public void setNotificationIngestService(final NotificationIngestService notificationIngestService) {
+        this.notificationIngestService = notificationIngestService;
+    }
+
+    public OpenPolicyViolationStore getViolationStore() {
+        return violationStore;
+    }
+
     @Override
     public void run() {
         try {
             logger.info("Starting iteration of {} digest email notifier", getName());
             final ExtensionProperties globalConfig = createPropertiesFromGlobalConfig();
+            getEmailMessagingService().updateDeliveryConfiguration(globalConfig);
             final ParallelResourceProcessorResults<UserConfigItem> userConfigResults = getExtensionConfigDataService()
                     .getUserConfigList(getHubExtensionUri());
             final List<UserConfigItem> usersInCategory = createUserListInCategory(userConfigResults.getResults());
 
             if (usersInCategory.isEmpty()) {
                 logger.info("No Users opted into this email notification");
+            }
+            // an interrupted run is finished first so its window is not lost for the users that did not get it
+            final NotifierCheckpointStore checkpointStore = getCheckpointStore();
+            final DateRange pendingRun = checkpointStore.getPendingRun();
+            if (pendingRun != null) {
+                logger.info("Resuming incomplete run between start: {} end: {}", pendingRun.getStart(), pendingRun.getEnd());
+                processDateRange(pendingRun, usersInCategory, globalConfig);
+            }
+            if (checkpointStore.getPendingRun() != null) {
+                logger.warn("The next window will be sent once the incomplete run has completed");
             } else {
-                final DateRange dateRange = createDateRange();
-                final Date startDate = dateRange.getStart();
-                final Date endDate = dateRange.getEnd();
-                logger.info("Getting notification data between start: {} end: {}", startDate, endDate);
-                logger.info("Number of users opted into this email template {}", usersInCategory.size());
-                int filteredUsers = 0;
-                for (final UserConfigItem userConfig : usersInCategory) {
-                    try {
-                        final UserView userItem = userConfig.getUser();
-                        logger.info("Processing hub user {}", metaService.getHref(userItem));
-                        final NotificationResults notificationResults = notificationDataService.getUserNotifications(startDate, endDate,
-                                userItem);
-                        final SortedSet<NotificationContentItem> notifications = notificationResults.getNotificationContentItems();
-                        final EmailProcessor processor = new EmailProcessor(hubResponseService, vulnerabilityRequestService, metaService);
-                        final Collection<ProjectData> projectList = processor.process(notifications);
-                        if (projectList.isEmpty()) {
-                            logger.info("Project Aggregated Data list is empty no email to generate");
-                        } else {
-                            // TODO need to filter out on the user's project
-                            // filter chain pattern make sense?
-                            Collection<ProjectData> projectsDigest = filterUserProjects(projectList, userConfig);
-                            projectsDigest = filterCategories(projectList, userConfig);
-                            if (projectsDigest.isEmpty()) {
-                                filteredUsers++;
-                            } else {
-                                bdPhoneHome(); // extension used.
-                                final Map<String, Object> model = new HashMap<>();
-                                model.put(KEY_TOPICS_LIST, projectsDigest);
-                                model.put(KEY_START_DATE, String.valueOf(startDate));
-                                model.put(KEY_END_DATE, String.valueOf(endDate));
-                                model.put(KEY_USER_FIRST_NAME, userConfig.getUser().firstName);
-                                model.put(KEY_USER_LAST_NAME, userConfig.getUser().lastName);
-                                model.put(KEY_NOTIFIER_CATEGORY, getCategory().toUpperCase());
-                                model.put(KEY_HUB_SERVER_URL,
-                                        hubResponseService.getHubBaseUrl());
-                                final String emailAddress = userConfig.getUser().email;
-                                final String templateName = getTemplateName(userConfig);
-                                final EmailTarget emailTarget = new EmailTarget(emailAddress, templateName, model);
-                                getEmailMessagingService().sendEmailMessage(emailTarget, globalConfig);
-                            }
-                        }
-
-                    } catch (final Exception e) {
-                        logger.error("Error sending email to user", e);
-                    }
+                final DateRange dateRange = createCheckpointDateRange();
+                if (checkpointStore.isCompleted(dateRange)) {
+                    logger.info("Notification data between start: {} end: {} has already been sent", dateRange.getStart(), dateRange.getEnd());
+                } else {
+                    processDateRange(dateRange, usersInCategory, globalConfig);
                 }
-                logger.info("Number of users filtered out of email template: {}", filteredUsers);
             }
         } catch (final Exception e) {
             logger.error("Error sending the email", e);
@@ -184,23 +240,451 @@ public abstract class AbstractDigestNotifier extends IntervalNotifier {
                 getName());
     }
 
+    // stretches the window back to the last completed run so nothing is skipped after an outage
+    private DateRange createCheckpointDateRange() {
+        final DateRange dateRange = createDateRange();
+        final Date watermark = getCheckpointStore().getWatermark();
+        if (watermark != null && watermark.getTime() + 1 < dateRange.getStart().getTime()) {
+            return new DateRange(new Date(watermark.getTime() + 1), dateRange.getEnd());
+        }
+        return dateRange;
+    }
+
+    private void processDateRange(final DateRange dateRange, final List<UserConfigItem> usersInCategory, final ExtensionProperties globalConfig)
+            throws IntegrationException, IOException, InterruptedException {
+        final NotifierCheckpointStore checkpointStore = getCheckpointStore();
+        checkpointStore.beginRun(dateRange);
+        final Set<String> userKeys = ConcurrentHashMap.newKeySet();
+        final Map<UserResult, Integer> resultCounts = new EnumMap<>(UserResult.class);
+        if (!usersInCategory.isEmpty()) {
+            logger.info("Getting notification data between start: {} end: {}", dateRange.getStart(), dateRange.getEnd());
+            logger.info("Number of users opted into this email template {}", usersInCategory.size());
+            final ProjectDigestCache projectDigests = createProjectDigestCache(dateRange, usersInCategory);
+            if (projectDigests != null) {
+                projectDigests.setViolationStore(violationStore);
+                projectDigests.setItemLimit(getCategoryItemLimit());
+            }
+            // rendered digests of this run by content fingerprint, null when each user's email is rendered on its own
+            final Map<String, RenderedEmail> renderedDigests = isSharedRender() ? new ConcurrentHashMap<>() : null;
+            if (isParallel()) {
+                processUsersInParallel(usersInCategory, dateRange, projectDigests, renderedDigests, globalConfig, userKeys, resultCounts);
+            } else {
+                for (final UserConfigItem userConfig : usersInCategory) {
+                    countResult(resultCounts, processUser(userConfig, dateRange, projectDigests, renderedDigests, globalConfig, userKeys));
+                }
+            }
+            if (projectDigests != null) {
+                logger.info("Processed {} project versions and rendered {} project fragments", projectDigests.getProjectVersionCount(),
+                        projectDigests.getFragmentCount());
+            }
+            if (renderedDigests != null) {
+                logger.info("Rendered {} distinct digests for {} users", renderedDigests.size(), getCount(resultCounts, UserResult.SENT));
+            }
+            logger.info("Number of users filtered out of email template: {}", getCount(resultCounts, UserResult.FILTERED));
+            logger.info("Number of users already sent this window: {}", getCount(resultCounts, UserResult.SKIPPED));
+            logger.info("Component vulnerability cache size: {} {}", componentVulnerabilityCache.size(), componentVulnerabilityCache.getStats());
+            violationStore.prune(new Date(System.currentTimeMillis()
+                    - TimeUnit.DAYS.toMillis(getExtensionProperties().getPolicyViolationRetentionDays())));
+            violationStore.save();
+            logger.info("Open policy violation store size: {}", violationStore.size());
+        }
+        // the window is done for everyone else; a user that failed keeps their watermark and is sent this window with the next
+        final int failedUsers = getCount(resultCounts, UserResult.FAILED);
+        if (failedUsers > 0) {
+            logger.warn("{} users could not be sent their email; they are sent this window together with the next one", failedUsers);
+        }
+        checkpointStore.completeRun(userKeys);
+    }
+
+    // a user behind the window after a failed attempt is sent everything since their own watermark
+    private DateRange createUserDateRange(final String userKey, final DateRange dateRange) {
+        final Date userWatermark = getCheckpointStore().getUserWatermark(userKey);
+        if (userWatermark != null && userWatermark.getTime() + 1 < dateRange.getStart().getTime()) {
+            return new DateRange(new Date(userWatermark.getTime() + 1), dateRange.getEnd());
+        }
+        return dateRange;
+    }
+
+    // after max attempts the windows the user missed are skipped so a user that cannot be sent to is not retried forever
+    private void recordFailure(final String userKey, final DateRange dateRange) {
+        final int maxAttempts = NumberUtils.toInt(getNotifierVariable(VARIABLE_CHECKPOINT_MAX_ATTEMPTS), DEFAULT_CHECKPOINT_MAX_ATTEMPTS);
+        final int failures = getCheckpointStore().recordFailure(userKey);
+        if (failures >= maxAttempts) {
+            logger.error("Giving up on user {} after {} attempts; notification data up to {} is not sent to them", userKey, failures,
+                    dateRange.getEnd());
+            try {
+                advanceUser(userKey, dateRange);
+            } catch (final IOException ex) {
+                logger.error("Could not skip the window for user {}", userKey, ex);
+            }
+        }
+    }
+
+    private UserResult processUser(final UserConfigItem userConfig, final DateRange dateRange, final ProjectDigestCache projectDigests,
+            final Map<String, RenderedEmail> renderedDigests, final ExtensionProperties globalConfig, final Set<String> userKeys) {
+        UserResult result = UserResult.EMPTY;
+        String userKey = null;
+        try {
+            final UserView userItem = userConfig.getUser();
+            userKey = metaService.getHref(userItem);
+            final UserProfile profile = userProfileService.getProfile(userKey, userConfig);
+            userKeys.add(userKey);
+            if (getCheckpointStore().isDelivered(userKey, dateRange)) {
+                return UserResult.SKIPPED;
+            }
+            logger.info("Processing hub user {}", userKey);
+            if (profile.getTriggers().isEmpty()) {
+                // nothing the user could be sent, the window is done for them
+                advanceUser(userKey, dateRange);
+                return UserResult.FILTERED;
+            }
+            // the shared digests only hold the run's window, so a user that is behind reads their own longer window
+            final DateRange userDateRange = createUserDateRange(userKey, dateRange);
+            final ProjectDigestCache userProjectDigests = userDateRange == dateRange ? projectDigests : null;
+            // the user's projects are only needed to read the shared or ingested notifications
+            Set<String> projectUrls = null;
+            if (userProjectDigests != null || notificationIngestService != null) {
+                projectUrls = resolveProjectUrls(profile, userItem);
+            }
+            final Collection<ProjectData> projectList = getUserProjectData(userDateRange, userItem, profile, projectUrls, userProjectDigests);
+            if (projectList.isEmpty()) {
+                logger.info("Project Aggregated Data list is empty no email to generate");
+            } else {
+                Collection<ProjectData> projectsDigest = filterUserProjects(projectList, profile, projectUrls);
+                projectsDigest = filterCategories(projectsDigest, profile);
+                if (projectsDigest.isEmpty()) {
+                    result = UserResult.FILTERED;
+                } else {
+                    bdPhoneHome(); // extension used.
+                    final String templateName = getTemplateName(profile);
+                    final Map<String, Object> model = new HashMap<>();
+                    model.put(KEY_TOPICS_LIST, projectsDigest);
+                    if (userProjectDigests != null) {
+                        final List<String> topicFragments = userProjectDigests.getFragments(templateName, projectsDigest);
+                        if (topicFragments != null) {
+                            model.put(KEY_TOPIC_FRAGMENTS, topicFragments);
+                        }
+                    }
+                    model.put(KEY_START_DATE, String.valueOf(userDateRange.getStart()));
+                    model.put(KEY_END_DATE, String.valueOf(userDateRange.getEnd()));
+                    model.put(KEY_NOTIFIER_CATEGORY, getCategory().toUpperCase());
+                    model.put(KEY_HUB_SERVER_URL,
+                            hubResponseService.getHubBaseUrl());
+                    final Map<String, Object> personalModel = new HashMap<>();
+                    personalModel.put(KEY_USER_FIRST_NAME, userConfig.getUser().firstName);
+                    personalModel.put(KEY_USER_LAST_NAME, userConfig.getUser().lastName);
+                    final String emailAddress = userConfig.getUser().email;
+                    if (renderedDigests == null) {
+                        model.putAll(personalModel);
+                        final EmailTarget emailTarget = new EmailTarget(emailAddress, templateName, model);
+                        getEmailMessagingService().sendEmailMessage(emailTarget, globalConfig);
+                    } else {
+                        final RenderedEmail renderedEmail = getRenderedDigest(renderedDigests, templateName, projectsDigest, model, globalConfig);
+                        getEmailMessagingService().sendRenderedEmail(emailAddress, renderedEmail, personalModel, globalConfig);
+                    }
+                    result = UserResult.SENT;
+                }
+            }
+            // the user's watermark only moves once there is nothing left to send them for the window
+            advanceUser(userKey, dateRange);
+        } catch (final Exception e) {
+            logger.error("Error sending email to user", e);
+            result = UserResult.FAILED;
+            if (userKey != null) {
+                recordFailure(userKey, dateRange);
+            }
+        }
+        return result;
+    }
+
+    private void advanceUser(final String userKey, final DateRange dateRange) throws IOException {
+        getCheckpointStore().advanceUser(userKey, dateRange.getEnd());
+        if (notificationIngestService != null) {
+            notificationIngestService.acknowledge(userKey, dateRange.getEnd());
+        }
+    }
+
+    // users with the same template and digest content share one rendered body; only their header is rendered per user.
+    // two threads may render the same new digest at once, in which case the first one stored is used by both.
+    private RenderedEmail getRenderedDigest(final Map<String, RenderedEmail> renderedDigests, final String templateName,
+            final Collection<ProjectData> projectsDigest, final Map<String, Object> model, final ExtensionProperties globalConfig)
+            throws IOException, TemplateException {
+        final String fingerprint = digestFingerprint.create(templateName, projectsDigest);
+        final RenderedEmail renderedEmail = renderedDigests.get(fingerprint);
+        if (renderedEmail != null) {
+            return renderedEmail;
+        }
+        final RenderedEmail newRenderedEmail = getEmailMessagingService().renderEmail(templateName, model, globalConfig);
+        final RenderedEmail existingRenderedEmail = renderedDigests.putIfAbsent(fingerprint, newRenderedEmail);
+        return existingRenderedEmail == null ? newRenderedEmail : existingRenderedEmail;
+    }
+
+    // each user is a separate task so one failing user cannot stop the others; the run ends only once every task is done
+    private void processUsersInParallel(final List<UserConfigItem> usersInCategory, final DateRange dateRange,
+            final ProjectDigestCache projectDigests, final Map<String, RenderedEmail> renderedDigests, final ExtensionProperties globalConfig,
+            final Set<String> userKeys, final Map<UserResult, Integer> resultCounts) throws InterruptedException {
+        final ExecutorService executorService = getExecutorService();
+        final List<Future<UserResult>> userResults = new ArrayList<>(usersInCategory.size());
+        for (final UserConfigItem userConfig : usersInCategory) {
+            userResults.add(executorService.submit(() -> processUser(userConfig, dateRange, projectDigests, renderedDigests, globalConfig, userKeys)));
+        }
+        try {
+            for (final Future<UserResult> userResult : userResults) {
+                try {
+                    countResult(resultCounts, userResult.get());
+                } catch (final ExecutionException e) {
+                    logger.error("Error sending email to user", e.getCause());
+                    countResult(resultCounts, UserResult.FAILED);
+                }
+            }
+        } catch (final InterruptedException e) {
+            for (final Future<UserResult> userResult : userResults) {
+                userResult.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    private void countResult(final Map<UserResult, Integer> resultCounts, final UserResult result) {
+        resultCounts.put(result, getCount(resultCounts, result) + 1);
+    }
+
+    private int getCount(final Map<UserResult, Integer> resultCounts, final UserResult result) {
+        final Integer count = resultCounts.get(result);
+        return count == null ? 0 : count;
+    }
+
+    public boolean isParallel() {
+        return getExecutorService() != null && Boolean.parseBoolean(getNotifierVariable(VARIABLE_PARALLEL));
+    }
+
+    public boolean isSharedRender() {
+        return Boolean.parseBoolean(getNotifierVariable(VARIABLE_SHARED_RENDER));
+    }
+
+    public boolean isSharedFetch() {
+        return Boolean.parseBoolean(getNotifierVariable(VARIABLE_SHARED_FETCH));
+    }
+
+    public boolean isRollup() {
+        final String rollup = getNotifierVariable(VARIABLE_ROLLUP);
+        return StringUtils.isBlank(rollup) ? isRollupByDefault() : Boolean.parseBoolean(rollup);
+    }
+
+    // the notifiers with windows of many days build them from daily rollups unless it is turned off
+    protected boolean isRollupByDefault() {
+        return false;
+    }
+
+    // unbounded unless a maximum number of items per category is set
+    public CategoryItemLimit getCategoryItemLimit() {
+        final int maxItems = NumberUtils.toInt(getNotifierVariable(VARIABLE_CATEGORY_MAX_ITEMS), 0);
+        if (maxItems <= 0) {
+            return CategoryItemLimit.UNBOUNDED;
+        }
+        final String orderName = getNotifierVariable(VARIABLE_CATEGORY_ITEM_ORDER);
+        CategoryItemLimit.Order order = CategoryItemLimit.Order.NEWEST;
+        if (StringUtils.isNotBlank(orderName)) {
+            try {
+                order = CategoryItemLimit.Order.valueOf(orderName.trim().toUpperCase(Locale.ENGLISH));
+            } catch (final IllegalArgumentException ex) {
+                logger.warn("Unknown category item order {}; keeping the newest items", orderName);
+            }
+        }
+        return new CategoryItemLimit(maxItems, order);
+    }
+
+    // blank unless the notifier builds its windows from rollups and the schedule to pre-aggregate today's notifications is set
+    public String getPreAggregationCronExpression() {
+        if (!isRollup()) {
+            return null;
+        }
+        return StringUtils.trimToNull(getNotifierVariable(VARIABLE_PRE_AGGREGATE_CRON));
+    }
+
+    // folds the notifications received so far today into today's partial rollup, so the run after midnight only has to
+    // complete the day before rendering and sending. the rollup stops short of now by the lag: the Hub can make a
+    // notification visible some time after its date, and a time the rollup covers is never fetched again.
+    public void preAggregate() {
+        final LocalDate today = LocalDate.now();
+        final int lagSeconds = Math.max(0, NumberUtils.toInt(getNotifierVariable(VARIABLE_PRE_AGGREGATE_LAG_SECONDS),
+                DEFAULT_PRE_AGGREGATE_LAG_SECONDS));
+        try {
+            final Date until = new Date(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(lagSeconds));
+            final NotificationRollup todayRollup = rollupBuilder.advance(today, until);
+            if (todayRollup != null) {
+                logger.info("Pre-aggregated the notifications of {} across {} project versions", today, todayRollup.getProjects().size());
+            }
+        } catch (final IntegrationException | IOException ex) {
+            logger.error("Could not pre-aggregate the notifications of {}", today, ex);
+        }
+    }
+
+    // with rollups the window is merged from the daily rollups covering it. in shared fetch mode the window is read once for
+    // all users instead of once per user. either way each project version is processed once for all of its subscribers.
+    private ProjectDigestCache createProjectDigestCache(final DateRange dateRange, final List<UserConfigItem> usersInCategory)
+            throws IntegrationException {
+        if (!isRollup() && !isSharedFetch()) {
+            ingest(dateRange);
+            return null;
+        }
+        final Set<NotificationCategoryEnum> triggers = EnumSet.noneOf(NotificationCategoryEnum.class);
+        for (final UserConfigItem userConfig : usersInCategory) {
+            triggers.addAll(userProfileService.getProfile(metaService.getHref(userConfig.getUser()), userConfig).getTriggers());
+        }
+        if (isRollup()) {
+            try {
+                final NotificationRollup windowRollup = createWindowRollup(dateRange);
+                if (windowRollup != null) {
+                    return new ProjectDigestCache(windowRollup, componentVulnerabilityCache, metaService, getEmailMessagingService(), triggers);
+                }
+            } catch (final IntegrationException | IOException ex) {
+                logger.warn("Could not build the window from daily rollups", ex);
+            }
+            if (!isSharedFetch()) {
+                ingest(dateRange);
+                return null;
+            }
+        }
+        final ProjectNotificationIndex notificationIndex = createNotificationIndex(dateRange, usersInCategory);
+        logger.info("Shared fetch retrieved {} notifications across {} project versions", notificationIndex.getNotificationCount(),
+                notificationIndex.getProjectVersionCount());
+        return new ProjectDigestCache(notificationIndex, componentVulnerabilityCache, metaService, getEmailMessagingService(), triggers);
+    }
+
+    // with ingestion the window is read from the mailboxes of its users when they all hold it, so the Hub is only polled once
+    // for it. otherwise it is queried from the Hub.
+    private ProjectNotificationIndex createNotificationIndex(final DateRange dateRange, final List<UserConfigItem> usersInCategory)
+            throws IntegrationException {
+        if (ingest(dateRange)) {
+            try {
+                final Map<String, Set<String>> userProjectUrls = new HashMap<>();
+                for (final UserConfigItem userConfig : usersInCategory) {
+                    final String userKey = metaService.getHref(userConfig.getUser());
+                    final UserProfile profile = userProfileService.getProfile(userKey, userConfig);
+                    userProjectUrls.put(userKey, userProfileService.getProjectUrls(profile, userConfig.getUser()));
+                }
+                final SortedSet<NotificationContentItem> mailboxItems = notificationIngestService.readMailboxes(userProjectUrls, dateRange);
+                if (mailboxItems != null) {
+                    return new ProjectNotificationIndex(mailboxItems);
+                }
+                logger.info("The mailboxes do not hold the whole window between start: {} end: {} yet", dateRange.getStart(), dateRange.getEnd());
+            } catch (final IntegrationException ex) {
+                logger.warn("Could not resolve the projects of every user; fetching the window from the Hub", ex);
+            }
+        }
+        final NotificationResults notificationResults = notificationDataService.getAllNotifications(dateRange.getStart(), dateRange.getEnd());
+        return new ProjectNotificationIndex(notificationResults.getNotificationContentItems());
+    }
+
+    // true when the notifications up to the end of the window have been ingested
+    private boolean ingest(final DateRange dateRange) {
+        if (notificationIngestService == null) {
+            return false;
+        }
+        try {
+            notificationIngestService.ensureIngested(dateRange.getEnd());
+        } catch (final IntegrationException ex) {
+            // the users' windows are then fetched from the Hub directly
+            logger.warn("Could not ingest notifications up to {}", dateRange.getEnd(), ex);
+        }
+        final Date cursor = notificationIngestService.getCursor();
+        return cursor != null && !dateRange.getEnd().after(cursor);
+    }
+
+    // merges the rollups of the window's days, completing the days that have not been yet.
+    // null when the window is not made of whole past days or a day cannot be fetched completely.
+    private NotificationRollup createWindowRollup(final DateRange dateRange) throws IntegrationException, IOException {
+        final List<LocalDate> days = rollupStore.getDays(dateRange);
+        if (days == null) {
+            logger.info("The window between start: {} end: {} is not made of whole past days", dateRange.getStart(), dateRange.getEnd());
+            return null;
+        }
+        NotificationRollup windowRollup = null;
+        int newDays = 0;
+        for (final LocalDate day : days) {
+            if (rollupStore.getRollup(day) == null) {
+                newDays++;
+            }
+            final NotificationRollup dayRollup = rollupBuilder.getRollup(day);
+            if (dayRollup == null) {
+                return null;
+            }
+            windowRollup = windowRollup == null ? dayRollup : windowRollup.merge(dayRollup);
+        }
+        rollupStore.deleteBefore(LocalDate.now().minusDays(DailyRollupStore.DEFAULT_RETENTION_DAYS));
+        logger.info("Merged {} daily rollups ({} completed in this run) across {} project versions", days.size(), newDays,
+                windowRollup.getProjects().size());
+        return windowRollup;
+    }
+
+    // null when the user's projects cannot be resolved
+    private Set<String> resolveProjectUrls(final UserProfile profile, final UserView user) {
+        try {
+            return userProfileService.getProjectUrls(profile, user);
+        } catch (final IntegrationException ex) {
+            logger.warn("Could not resolve the projects for user {}; fetching the user's notifications directly", user.userName, ex);
+            return null;
+        }
+    }
+
+    private Collection<ProjectData> getUserProjectData(final DateRange dateRange, final UserView user, final UserProfile profile,
+            final Set<String> projectUrls, final ProjectDigestCache projectDigests) throws IntegrationException {
+        final EmailProcessor processor = new EmailProcessor(componentVulnerabilityCache, metaService, profile.getTriggers(), violationStore);
+        processor.setItemLimit(getCategoryItemLimit());
+        if (projectUrls != null) {
+            // the shared digests already hold the window for every user, whether it came from the mailboxes or not
+            if (projectDigests != null) {
+                return projectDigests.getProjectData(projectUrls);
+            }
+            if (notificationIngestService != null) {
+                final SortedSet<NotificationContentItem> mailboxItems = notificationIngestService.readMailbox(profile.getUserKey(), projectUrls,
+                        dateRange);
+                if (mailboxItems != null) {
+                    return processor.process(processor.filterNotifications(mailboxItems));
+                }
+            }
+        }
+        final NotificationResults notificationResults = notificationDataService.getUserNotifications(dateRange.getStart(), dateRange.getEnd(), user);
+        return processor.process(processor.filterNotifications(notificationResults.getNotificationContentItems()));
+    }
+
+    // keeps the project versions the user is assigned to, by their resolved projects or else by the subscription index. the
+    // Hub is not asked again here; without either the data is left as it is, the user's own notifications only cover their projects.
     private Collection<ProjectData> filterUserProjects(final Collection<ProjectData> projectList,
-            final UserConfigItem userConfig) {
+            final UserProfile profile, final Set<String> projectUrls) {
+        final ProjectSubscriptionIndex subscriptionIndex = userProfileService.getSubscriptionIndex();
+        if (projectUrls == null && !subscriptionIndex.hasUser(profile.getUserKey())) {
+            return projectList;
+        }
         final List<ProjectData> filteredList = new ArrayList<>(projectList.size());
-
+        for (final ProjectData projectData : projectList) {
+            final String projectVersionUrl = projectData.getProjectVersionUrl();
+            if (projectVersionUrl == null || isSubscribed(profile, projectUrls, subscriptionIndex, projectVersionUrl)) {
+                filteredList.add(projectData);
+            }
+        }
         return filteredList;
     }
 
+    private boolean isSubscribed(final UserProfile profile, final Set<String> projectUrls, final ProjectSubscriptionIndex subscriptionIndex,
+            final String projectVersionUrl) {
+        if (projectUrls != null) {
+            return projectUrls.contains(ProjectNotificationIndex.getProjectUrl(projectVersionUrl));
+        }
+        return subscriptionIndex.isSubscribed(profile.getUserKey(), projectVersionUrl);
+    }
+
     private Collection<ProjectData> filterCategories(final Collection<ProjectData> projectList,
-            final UserConfigItem userConfig) {
+            final UserProfile profile) {
         final List<ProjectData> filteredList = new ArrayList<>(projectList.size());
-        final Set<NotificationCategoryEnum> triggerSet = getTriggerSet(userConfig);
+        final Set<NotificationCategoryEnum> triggerSet = profile.getTriggers();
 
         if (!triggerSet.isEmpty()) {
             for (final ProjectData projectData : projectList) {
                 final Map<NotificationCategoryEnum, CategoryData> categoryDataMap = new TreeMap<>();
                 final ProjectData newProject = new ProjectData(projectData.getProjectName(),
-                        projectData.getProjectVersion(), categoryDataMap);
+                        projectData.getProjectVersion(), projectData.getProjectVersionUrl(), categoryDataMap);
                 for (final Map.Entry<NotificationCategoryEnum, CategoryData> entry : projectData.getCategoryMap()
                         .entrySet()) {
                     if (triggerSet.contains(entry.getKey())) {
@@ -217,67 +701,44 @@ public abstract class AbstractDigestNotifier extends IntervalNotifier {
         return filteredList;
     }
 
-    private List<UserConfigItem> createUserListInCategory(final List<UserConfigItem> userConfigList) {
+    private List<UserConfigItem> createUserListInCategory(final List<UserConfigItem> userConfigList) throws IntegrationException {
         final List<UserConfigItem> itemList = new ArrayList<>(userConfigList.size());
-
+        final List<String> userKeys = new ArrayList<>(userConfigList.size());
+        final EmailFrequency frequency = getFrequency();
         for (final UserConfigItem userConfig : userConfigList) {
-            final boolean optedIn = isOptedIn(userConfig);
-            final boolean categoryMatch = doesCategoryMatch(userConfig);
-            if (optedIn && categoryMatch) {
+            final String userKey = metaService.getHref(userConfig.getUser());
+            final UserProfile profile = userProfileService.getProfile(userKey, userConfig);
+            if (profile.isOptedIn() && isFrequencyMatch(profile, frequency)) {
                 itemList.add(userConfig);
+                userKeys.add(userKey);
             }
         }
+        // users that opted out or moved to another frequency drop out of this notifier's profiles and subscriptions
+        userProfileService.retainUsers(userKeys);
 
         return itemList;
     }
 
-    private boolean isOptedIn(final UserConfigItem userConfig) {
-        final String value = getSingleConfigValue(userConfig, EmailExtensionConstants.CONFIG_KEY_OPT_IN);
-        return Boolean.parseBoolean(value);
-    }
-
-    private String getTemplateName(final UserConfigItem userConfig) {
-        final String templateName = getSingleConfigValue(userConfig, EmailExtensionConstants.CONFIG_KEY_TEMPLATE_NAME);
-        if (StringUtils.isNotBlank(templateName)) {
-            return templateName;
-        } else {
-            return getTemplateName();
-        }
-    }
-
-    private boolean doesCategoryMatch(final UserConfigItem userConfig) {
-        final String emailFrequency = getSingleConfigValue(userConfig, EmailExtensionConstants.CONFIG_KEY_FREQUENCY);
-        return getCategory().equals(emailFrequency);
+    // null when the category is not one of the frequencies a user can choose
+    public EmailFrequency getFrequency() {
+        return EmailFrequency.fromDisplayName(getCategory());
     }
 
-    private Set<NotificationCategoryEnum> getTriggerSet(final UserConfigItem userConfig) {
-        final List<String> triggerList = getConfigValueList(userConfig, EmailExtensionConstants.CONFIG_KEY_TRIGGERS);
-        final Set<NotificationCategoryEnum> triggerSet = new HashSet<>();
-        for (final String trigger : triggerList) {
-            try {
-                triggerSet.add(NotificationCategoryEnum.valueOf(trigger));
-            } catch (final Exception ex) {
-                logger.error("Could not parse trigger config {} {}", trigger, ex);
-            }
+    // a notifier with a category of its own is matched on the raw config value
+    private boolean isFrequencyMatch(final UserProfile profile, final EmailFrequency frequency) {
+        if (frequency != null) {
+            return frequency == profile.getFrequency();
         }
-        return triggerSet;
+        final List<String> values = profile.getConfigValues().get(EmailExtensionConstants.CONFIG_KEY_FREQUENCY);
+        return values != null && !values.isEmpty() && getCategory().equals(values.get(0));
     }
 
-    private String getSingleConfigValue(final UserConfigItem userConfig, final String key) {
-        if (userConfig.getConfigMap().containsKey(key)) {
-            final String value = userConfig.getConfigMap().get(key).value.get(0);
-            return value;
-        } else {
-            return "";
-        }
-    }
-
-    private List<String> getConfigValueList(final UserConfigItem userConfig, final String key) {
-        if (userConfig.getConfigMap().containsKey(key)) {
-            final List<String> value = userConfig.getConfigMap().get(key).value;
-            return value;
+    private String getTemplateName(final UserProfile profile) {
+        final String templateName = profile.getTemplateName();
+        if (StringUtils.isNotBlank(templateName)) {
+            return templateName;
         } else {
-            return new ArrayList<>();
+            return getTemplateName();
         }
     }
 
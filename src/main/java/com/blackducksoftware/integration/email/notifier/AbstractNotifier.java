@@ -24,6 +24,7 @@ package com.blackducksoftware.integration.email.notifier;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +53,8 @@ public abstract class AbstractNotifier extends TimerTask {
 
     private final ExtensionInfo extensionInfo;
 
+    private ExecutorService executorService;
+
     public AbstractNotifier(final ExtensionProperties extensionProperties,
             final EmailMessagingService emailMessagingService, final HubServicesFactory hubServicesFactory, final ExtensionInfo extensionInfo) {
         this.extensionProperties = extensionProperties;
@@ -78,10 +81,19 @@ public abstract class AbstractNotifier extends TimerTask {
 
     public abstract String getNotifierPropertyKey();
 
+    public String getNotifierVariable(final String variableName) {
+        return extensionProperties.getNotifierVariableProperties().get(getNotifierPropertyKey() + "." + variableName);
+    }
+
     public long getStartDelayMilliseconds() {
         return 0;
     }
 
+    // true when a previous run was interrupted and should be resumed as soon as the notifier starts
+    public boolean hasIncompleteRun() {
+        return false;
+    }
+
     public ExtensionProperties getExtensionProperties() {
         return extensionProperties;
     }
@@ -102,6 +114,14 @@ public abstract class AbstractNotifier extends TimerTask {
         this.hubExtensionUri = hubExtensionUri;
     }
 
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    public void setExecutorService(final ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
     public ExtensionConfigDataService getExtensionConfigDataService() {
         return extensionConfigDataService;
     }
@@ -20,8 +20,8 @@ public class CustomDigestNotifier extends AbstractDigestNotifier {
 
     public CustomDigestNotifier(final ExtensionProperties extensionProperties, final EmailMessagingService emailMessagingService,
             final HubServicesFactory hubServicesFactory,
-            final ExtensionInfo extensionInfoData) {
-        super(extensionProperties, emailMessagingService, hubServicesFactory, extensionInfoData);
+            final ExtensionInfo extensionInfoData, final DigestResources digestResources) {
+        super(extensionProperties, emailMessagingService, hubServicesFactory, extensionInfoData, digestResources);
     }
 
     @Override
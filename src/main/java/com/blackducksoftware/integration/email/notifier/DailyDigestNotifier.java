@@ -33,8 +33,9 @@ import com.blackducksoftware.integration.hub.service.HubServicesFactory;
 
 public class DailyDigestNotifier extends AbstractDigestNotifier {
     public DailyDigestNotifier(final ExtensionProperties customerProperties,
-            final EmailMessagingService emailMessagingService, final HubServicesFactory hubServicesFactory, final ExtensionInfo extensionInfo) {
-        super(customerProperties, emailMessagingService, hubServicesFactory, extensionInfo);
+            final EmailMessagingService emailMessagingService, final HubServicesFactory hubServicesFactory, final ExtensionInfo extensionInfo,
+            final DigestResources digestResources) {
+        super(customerProperties, emailMessagingService, hubServicesFactory, extensionInfo, digestResources);
     }
 
     @Override
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.email.batch.processor.RollupProcessor;
+import com.blackducksoftware.integration.email.model.DateRange;
+import com.blackducksoftware.integration.email.model.batch.NotificationRollup;
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.dataservice.notification.NotificationDataService;
+import com.blackducksoftware.integration.hub.dataservice.notification.NotificationResults;
+
+// rolls up a day in increments. while the day is in progress each increment folds the notifications since the previous one
+// into the day's partial rollup, so completing the day once it is over only has the notifications since the last increment
+// left to fetch and process. increments compose like days do: the cancellations of MapProcessorCache carry across them.
+public class DailyRollupBuilder {
+    private final Logger logger = LoggerFactory.getLogger(DailyRollupBuilder.class);
+
+    private final DailyRollupStore rollupStore;
+
+    private final NotificationDataService notificationDataService;
+
+    private final RollupProcessor rollupProcessor;
+
+    public DailyRollupBuilder(final DailyRollupStore rollupStore, final NotificationDataService notificationDataService,
+            final RollupProcessor rollupProcessor) {
+        this.rollupStore = rollupStore;
+        this.notificationDataService = notificationDataService;
+        this.rollupProcessor = rollupProcessor;
+    }
+
+    // the complete rollup of a past day, finishing it from its partial rollup when it has not been completed yet.
+    // null when the notifications of the day cannot be fetched completely.
+    public synchronized NotificationRollup getRollup(final LocalDate day) throws IntegrationException, IOException {
+        final NotificationRollup dayRollup = rollupStore.getRollup(day);
+        if (dayRollup != null) {
+            return dayRollup;
+        }
+        return advance(day, rollupStore.getDayRange(day).getEnd());
+    }
+
+    // folds the notifications of the day up to the given time into its partial rollup. the rollup is stored as complete once
+    // the day is covered to its end. returns the rollup so far, or null when the notifications cannot be fetched completely
+    // and the partial rollup is left as it was.
+    public synchronized NotificationRollup advance(final LocalDate day, final Date until) throws IntegrationException, IOException {
+        final NotificationRollup completeRollup = rollupStore.getRollup(day);
+        if (completeRollup != null) {
+            return completeRollup;
+        }
+        final DateRange dayRange = rollupStore.getDayRange(day);
+        final NotificationRollup partialRollup = rollupStore.getPartialRollup(day);
+        final Date start = partialRollup == null ? dayRange.getStart() : new Date(partialRollup.getCoveredUntil() + 1);
+        final Date end = until.before(dayRange.getEnd()) ? until : dayRange.getEnd();
+        if (end.before(start)) {
+            return partialRollup;
+        }
+        final NotificationResults notificationResults = notificationDataService.getAllNotifications(start, end);
+        if (!notificationResults.getExceptions().isEmpty()) {
+            logger.warn("Could not fetch all notifications of {} between start: {} end: {}", day, start, end,
+                    notificationResults.getExceptions().get(0));
+            return null;
+        }
+        final NotificationRollup increment = rollupProcessor.createRollup(day.toString(), notificationResults.getNotificationContentItems());
+        final NotificationRollup dayRollup = partialRollup == null ? increment : partialRollup.merge(increment);
+        if (end.equals(dayRange.getEnd())) {
+            final NotificationRollup finishedRollup = dayRollup.withCoveredUntil(null);
+            rollupStore.putRollup(day, finishedRollup);
+            logger.debug("Completed the rollup of {} with {} notifications", day, notificationResults.getNotificationContentItems().size());
+            return finishedRollup;
+        }
+        final NotificationRollup advancedRollup = dayRollup.withCoveredUntil(end.getTime());
+        rollupStore.putPartialRollup(day, advancedRollup);
+        logger.debug("Advanced the rollup of {} to {} with {} notifications", day, end, notificationResults.getNotificationContentItems().size());
+        return advancedRollup;
+    }
+}
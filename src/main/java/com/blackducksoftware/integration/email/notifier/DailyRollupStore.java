@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.email.model.DateRange;
+import com.blackducksoftware.integration.email.model.batch.NotificationRollup;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+// local store of the rollup of each day, one file per day. a complete rollup is only stored once its day is over, so it
+// never changes and is shared by every digest whose window contains the day. the day in progress is kept as a partial
+// rollup that grows until the day is complete.
+public class DailyRollupStore {
+    public static final int DEFAULT_RETENTION_DAYS = 62;
+
+    private static final String FILE_PREFIX = "rollup-";
+
+    private static final String FILE_SUFFIX = ".json";
+
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    // the notifiers' windows end on the last whole second of a day, the day boundary may be off by up to that second
+    private static final long BOUNDARY_TOLERANCE_MILLIS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(DailyRollupStore.class);
+
+    private final File directory;
+
+    private final ZoneId zone;
+
+    private final Gson gson = new Gson();
+
+    public DailyRollupStore(final File directory, final ZoneId zone) {
+        this.directory = directory;
+        this.zone = zone;
+    }
+
+    // the days making up the window, or null when the window does not consist of whole days that are already over
+    public List<LocalDate> getDays(final DateRange dateRange) {
+        final long start = dateRange.getStart().getTime();
+        final long end = dateRange.getEnd().getTime();
+        final LocalDate firstDay = toDay(start + BOUNDARY_TOLERANCE_MILLIS);
+        final LocalDate lastDay = toDay(end);
+        final long firstDayStart = getDayRange(firstDay).getStart().getTime();
+        final long lastDayEnd = getDayRange(lastDay).getEnd().getTime();
+        if (start > firstDayStart || end < lastDayEnd - BOUNDARY_TOLERANCE_MILLIS || lastDayEnd >= System.currentTimeMillis()
+                || firstDay.isAfter(lastDay)) {
+            return null;
+        }
+        final List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            days.add(day);
+        }
+        return days;
+    }
+
+    public DateRange getDayRange(final LocalDate day) {
+        final long start = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        final long nextStart = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new DateRange(new Date(start), new Date(nextStart - 1));
+    }
+
+    private LocalDate toDay(final long time) {
+        return new Date(time).toInstant().atZone(zone).toLocalDate();
+    }
+
+    // null when the day has not been rolled up or its file cannot be read
+    public synchronized NotificationRollup getRollup(final LocalDate day) {
+        return readRollup(getRollupFile(day, ""));
+    }
+
+    // null when nothing of the day has been rolled up yet
+    public synchronized NotificationRollup getPartialRollup(final LocalDate day) {
+        return readRollup(getRollupFile(day, PARTIAL_SUFFIX));
+    }
+
+    private NotificationRollup readRollup(final File rollupFile) {
+        if (!rollupFile.exists()) {
+            return null;
+        }
+        try {
+            return gson.fromJson(FileUtils.readFileToString(rollupFile, StandardCharsets.UTF_8), NotificationRollup.class);
+        } catch (final IOException | JsonParseException ex) {
+            logger.error("Cannot read rollup file {}; the day will be rolled up again", rollupFile, ex);
+            return null;
+        }
+    }
+
+    // storing the complete rollup of a day replaces its partial rollup
+    public synchronized void putRollup(final LocalDate day, final NotificationRollup rollup) throws IOException {
+        writeRollup(getRollupFile(day, ""), rollup);
+        final File partialFile = getRollupFile(day, PARTIAL_SUFFIX);
+        if (partialFile.exists() && !partialFile.delete()) {
+            logger.warn("Cannot delete rollup file {}", partialFile);
+        }
+    }
+
+    public synchronized void putPartialRollup(final LocalDate day, final NotificationRollup rollup) throws IOException {
+        writeRollup(getRollupFile(day, PARTIAL_SUFFIX), rollup);
+    }
+
+    // written to a temporary file and moved into place so a crash never leaves a half written rollup behind
+    private void writeRollup(final File rollupFile, final NotificationRollup rollup) throws IOException {
+        FileUtils.forceMkdir(directory);
+        final File tempFile = new File(rollupFile.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(tempFile); Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+            gson.toJson(rollup, writer);
+            writer.flush();
+            output.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), rollupFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized void deleteBefore(final LocalDate day) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            final String name = file.getName();
+            if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+                try {
+                    final String fileDayName = name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length());
+                    final LocalDate fileDay = LocalDate.parse(StringUtils.removeEnd(fileDayName, PARTIAL_SUFFIX));
+                    if (fileDay.isBefore(day) && !file.delete()) {
+                        logger.warn("Cannot delete rollup file {}", file);
+                    }
+                } catch (final DateTimeParseException ex) {
+                    logger.debug("Skipping file {}", file);
+                }
+            }
+        }
+    }
+
+    private File getRollupFile(final LocalDate day, final String suffix) {
+        return new File(directory, FILE_PREFIX + day + suffix + FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.blackducksoftware.integration.email.model.batch.CategoryData;
+import com.blackducksoftware.integration.email.model.batch.ItemData;
+import com.blackducksoftware.integration.email.model.batch.ProjectData;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+// identifies the rendered content of a digest: two users with the same template and the same project data get the same
+// body, whatever their name or email address
+public class DigestFingerprint {
+    // separates the fields so adjacent values cannot run into each other
+    private static final char SEPARATOR = '\u0000';
+
+    public String create(final String templateName, final Collection<ProjectData> projectsDigest) {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        putString(hasher, templateName);
+        for (final ProjectData projectData : projectsDigest) {
+            putString(hasher, projectData.getProjectName());
+            putString(hasher, projectData.getProjectVersion());
+            for (final Map.Entry<NotificationCategoryEnum, CategoryData> entry : projectData.getCategoryMap().entrySet()) {
+                final CategoryData categoryData = entry.getValue();
+                putString(hasher, entry.getKey().name());
+                putString(hasher, categoryData.getCategoryKey());
+                hasher.putInt(categoryData.getItemCount());
+                hasher.putInt(categoryData.getItemList().size());
+                hasher.putInt(categoryData.getMoreItemCount());
+                for (final ItemData itemData : categoryData.getItemList()) {
+                    hasher.putInt(itemData.getDataSet().size());
+                    for (final Map.Entry<String, Object> dataEntry : itemData.getDataSet().entrySet()) {
+                        putString(hasher, dataEntry.getKey());
+                        putString(hasher, String.valueOf(dataEntry.getValue()));
+                    }
+                }
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private void putString(final Hasher hasher, final String value) {
+        hasher.putUnencodedChars(String.valueOf(value));
+        hasher.putChar(SEPARATOR);
+    }
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import com.blackducksoftware.integration.email.batch.processor.ComponentVulnerabilityCache;
+import com.blackducksoftware.integration.email.batch.processor.OpenPolicyViolationStore;
+
+// the state every digest notifier shares. the engine creates it once, so each cache and store is loaded and written from a
+// single copy whichever notifier uses it.
+public class DigestResources {
+    private final ComponentVulnerabilityCache componentVulnerabilityCache;
+
+    private final OpenPolicyViolationStore violationStore;
+
+    private final DailyRollupStore rollupStore;
+
+    private final DailyRollupBuilder rollupBuilder;
+
+    public DigestResources(final ComponentVulnerabilityCache componentVulnerabilityCache, final OpenPolicyViolationStore violationStore,
+            final DailyRollupStore rollupStore, final DailyRollupBuilder rollupBuilder) {
+        this.componentVulnerabilityCache = componentVulnerabilityCache;
+        this.violationStore = violationStore;
+        this.rollupStore = rollupStore;
+        this.rollupBuilder = rollupBuilder;
+    }
+
+    public ComponentVulnerabilityCache getComponentVulnerabilityCache() {
+        return componentVulnerabilityCache;
+    }
+
+    public OpenPolicyViolationStore getViolationStore() {
+        return violationStore;
+    }
+
+    public DailyRollupStore getRollupStore() {
+        return rollupStore;
+    }
+
+    public DailyRollupBuilder getRollupBuilder() {
+        return rollupBuilder;
+    }
+
+    public void shutDown() {
+        componentVulnerabilityCache.shutDown();
+    }
+}
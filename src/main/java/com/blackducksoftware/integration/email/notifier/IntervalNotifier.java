@@ -33,43 +33,56 @@ public abstract class IntervalNotifier extends AbstractNotifier {
 
     private final String cronExpression;
 
-    private final String lastRunPath;
+    private final NotifierCheckpointStore checkpointStore;
 
     public IntervalNotifier(final ExtensionProperties extensionProperties, final EmailMessagingService emailMessagingService,
             final HubServicesFactory dataServicesFactory,
             final ExtensionInfo extensionInfoData) {
         super(extensionProperties, emailMessagingService, dataServicesFactory, extensionInfoData);
         cronExpression = StringUtils.trimToNull(createCronExpression());
-        lastRunPath = findLastRunFilePath();
+        checkpointStore = new NotifierCheckpointStore(findConfigFile(getNotifierPropertyKey() + "-checkpoint.properties"));
+        migrateLastRunFile();
     }
 
-    private String findLastRunFilePath() {
-        String path = "";
+    protected File findConfigFile(final String fileName) {
+        final String configLocation = System.getProperty(ExtensionConfigManager.PROPERTY_KEY_CONFIG_LOCATION_PATH);
+        final File file = new File(configLocation, fileName);
         try {
-            final String configLocation = System.getProperty(ExtensionConfigManager.PROPERTY_KEY_CONFIG_LOCATION_PATH);
-            final File file = new File(configLocation, getNotifierPropertyKey() + "-lastrun.txt");
-            path = file.getCanonicalPath();
+            return file.getCanonicalFile();
         } catch (final IOException ex) {
-            logger.error("Cannot find last run file path", ex);
+            logger.error("Cannot find config file path {}", fileName, ex);
+            return file;
         }
-        return path;
     }
 
-    public DateRange createDateRange() {
-        final Date endDate = new Date();
-        Date startDate = endDate;
-        try {
-            final File lastRunFile = new File(lastRunPath);
-            if (lastRunFile.exists()) {
+    // the last run file held the watermark before the checkpoint store replaced it
+    private void migrateLastRunFile() {
+        final File lastRunFile = findConfigFile(getNotifierPropertyKey() + "-lastrun.txt");
+        if (checkpointStore.getWatermark() == null && lastRunFile.exists()) {
+            try {
                 final String lastRunValue = FileUtils.readFileToString(lastRunFile, "UTF-8");
-                startDate = RestConnection.parseDateString(lastRunValue);
-                startDate = new Date(startDate.getTime());
-            } else {
-                startDate = endDate;
+                checkpointStore.initializeWatermark(RestConnection.parseDateString(lastRunValue));
+            } catch (final Exception e) {
+                logger.error("Error migrating last run file {}", lastRunFile, e);
             }
-            FileUtils.write(lastRunFile, RestConnection.formatDate(endDate), "UTF-8");
-        } catch (final Exception e) {
-            logger.error("Error creating date range", e);
+        }
+    }
+
+    public NotifierCheckpointStore getCheckpointStore() {
+        return checkpointStore;
+    }
+
+    @Override
+    public boolean hasIncompleteRun() {
+        return checkpointStore.getPendingRun() != null;
+    }
+
+    // the window starts where the last completed run ended; the checkpoint only advances once the run is complete
+    public DateRange createDateRange() {
+        final Date endDate = new Date();
+        Date startDate = checkpointStore.getWatermark();
+        if (startDate == null) {
+            startDate = endDate;
         }
         return new DateRange(startDate, endDate);
     }
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.email.model.DateRange;
+import com.blackducksoftware.integration.hub.rest.RestConnection;
+
+// local checkpoint of a notifier: the end of the last completed run, the run in progress, the window delivered to each user and
+// the failed attempts of the users still waiting for an earlier window.
+// every change is written to a temporary file, synced and moved over the previous checkpoint so a crash leaves either the old or the new state.
+// the per user marks are the exception: they are appended to a journal next to the checkpoint, synced in batches and folded into
+// the checkpoint the next time it is written. a mark lost in a crash only means the user is sent the pending run again.
+public class NotifierCheckpointStore {
+    public static final String KEY_WATERMARK = "notifier.watermark";
+
+    public static final String KEY_RUN_START = "run.start";
+
+    public static final String KEY_RUN_END = "run.end";
+
+    public static final String KEY_RUN_ATTEMPTS = "run.attempts";
+
+    public static final String USER_PREFIX = "user.";
+
+    public static final String FAILURE_PREFIX = "failures.";
+
+    public static final int DEFAULT_JOURNAL_SYNC_COUNT = 64;
+
+    private final Logger logger = LoggerFactory.getLogger(NotifierCheckpointStore.class);
+
+    private final File checkpointFile;
+
+    private final File journalFile;
+
+    private final int journalSyncCount;
+
+    private final Properties checkpoint = new Properties();
+
+    // open while the journal holds marks not yet in the checkpoint file
+    private FileOutputStream journal;
+
+    private int unsyncedMarks;
+
+    public NotifierCheckpointStore(final File checkpointFile) {
+        this(checkpointFile, DEFAULT_JOURNAL_SYNC_COUNT);
+    }
+
+    public NotifierCheckpointStore(final File checkpointFile, final int journalSyncCount) {
+        this.checkpointFile = checkpointFile;
+        this.journalFile = new File(checkpointFile.getPath() + ".journal");
+        this.journalSyncCount = journalSyncCount;
+        if (checkpointFile.exists()) {
+            try (InputStream input = new FileInputStream(checkpointFile)) {
+                checkpoint.load(input);
+            } catch (final IOException ex) {
+                logger.error("Cannot read checkpoint file {}", checkpointFile, ex);
+            }
+        }
+        replayJournal();
+    }
+
+    public synchronized Date getWatermark() {
+        return getDate(KEY_WATERMARK);
+    }
+
+    // only used to carry over a watermark from before the checkpoint existed
+    public synchronized void initializeWatermark(final Date watermark) throws IOException {
+        if (getWatermark() == null) {
+            checkpoint.setProperty(KEY_WATERMARK, RestConnection.formatDate(watermark));
+            save();
+        }
+    }
+
+    // null when the last run completed
+    public synchronized DateRange getPendingRun() {
+        final Date start = getDate(KEY_RUN_START);
+        final Date end = getDate(KEY_RUN_END);
+        if (start == null || end == null) {
+            return null;
+        }
+        return new DateRange(start, end);
+    }
+
+    public synchronized int getRunAttempts() {
+        return NumberUtils.toInt(checkpoint.getProperty(KEY_RUN_ATTEMPTS), 0);
+    }
+
+    // a window is complete once the watermark has reached its end
+    public synchronized boolean isCompleted(final DateRange dateRange) {
+        final Date watermark = getWatermark();
+        return watermark != null && !watermark.before(dateRange.getEnd());
+    }
+
+    public synchronized void beginRun(final DateRange dateRange) throws IOException {
+        final String start = RestConnection.formatDate(dateRange.getStart());
+        final String end = RestConnection.formatDate(dateRange.getEnd());
+        if (start.equals(checkpoint.getProperty(KEY_RUN_START)) && end.equals(checkpoint.getProperty(KEY_RUN_END))) {
+            checkpoint.setProperty(KEY_RUN_ATTEMPTS, String.valueOf(getRunAttempts() + 1));
+        } else {
+            checkpoint.setProperty(KEY_RUN_START, start);
+            checkpoint.setProperty(KEY_RUN_END, end);
+            checkpoint.setProperty(KEY_RUN_ATTEMPTS, "1");
+        }
+        save();
+    }
+
+    // clears the run in progress, moves the watermark to its end and drops the users that were not part of it
+    public synchronized void completeRun(final Collection<String> userKeys) throws IOException {
+        final String end = checkpoint.getProperty(KEY_RUN_END);
+        if (end != null) {
+            checkpoint.setProperty(KEY_WATERMARK, end);
+        }
+        checkpoint.remove(KEY_RUN_START);
+        checkpoint.remove(KEY_RUN_END);
+        checkpoint.remove(KEY_RUN_ATTEMPTS);
+        for (final String key : checkpoint.stringPropertyNames()) {
+            if (key.startsWith(USER_PREFIX) && !userKeys.contains(key.substring(USER_PREFIX.length()))) {
+                checkpoint.remove(key);
+            } else if (key.startsWith(FAILURE_PREFIX) && !userKeys.contains(key.substring(FAILURE_PREFIX.length()))) {
+                checkpoint.remove(key);
+            }
+        }
+        save();
+    }
+
+    public synchronized Date getUserWatermark(final String userKey) {
+        return getDate(USER_PREFIX + userKey);
+    }
+
+    // true when the user has already been sent the whole window
+    public synchronized boolean isDelivered(final String userKey, final DateRange dateRange) {
+        final Date userWatermark = getUserWatermark(userKey);
+        return userWatermark != null && !userWatermark.before(dateRange.getEnd());
+    }
+
+    // appends the mark to the journal instead of writing the whole checkpoint, so a run costs one line per user
+    public synchronized void advanceUser(final String userKey, final Date watermark) throws IOException {
+        final String date = RestConnection.formatDate(watermark);
+        checkpoint.setProperty(USER_PREFIX + userKey, date);
+        checkpoint.remove(FAILURE_PREFIX + userKey);
+        if (journal == null) {
+            journal = new FileOutputStream(journalFile, true);
+        }
+        journal.write((date + " " + userKey + "\n").getBytes(StandardCharsets.UTF_8));
+        unsyncedMarks++;
+        if (unsyncedMarks >= journalSyncCount) {
+            syncJournal();
+        }
+    }
+
+    // counts a failed attempt to send the user their email and returns the attempts failed since they were last sent one.
+    // the count is written with the checkpoint when the run completes.
+    public synchronized int recordFailure(final String userKey) {
+        final int failures = NumberUtils.toInt(checkpoint.getProperty(FAILURE_PREFIX + userKey), 0) + 1;
+        checkpoint.setProperty(FAILURE_PREFIX + userKey, String.valueOf(failures));
+        return failures;
+    }
+
+    public synchronized int getFailures(final String userKey) {
+        return NumberUtils.toInt(checkpoint.getProperty(FAILURE_PREFIX + userKey), 0);
+    }
+
+    // makes the marks appended so far durable without waiting for the batch to fill
+    public synchronized void syncJournal() throws IOException {
+        if (journal != null && unsyncedMarks > 0) {
+            journal.getFD().sync();
+            unsyncedMarks = 0;
+        }
+    }
+
+    // the marks of a run that did not complete; the lines are the date and the user key
+    private void replayJournal() {
+        if (!journalFile.exists()) {
+            return;
+        }
+        try {
+            final List<String> lines = Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+            for (final String line : lines) {
+                final int separator = line.indexOf(' ');
+                // a line cut short by a crash has no user key
+                if (separator > 0 && separator < line.length() - 1) {
+                    final String userKey = line.substring(separator + 1);
+                    checkpoint.setProperty(USER_PREFIX + userKey, line.substring(0, separator));
+                    checkpoint.remove(FAILURE_PREFIX + userKey);
+                }
+            }
+        } catch (final IOException ex) {
+            logger.error("Cannot read checkpoint journal {}", journalFile, ex);
+        }
+    }
+
+    private Date getDate(final String key) {
+        final String value = checkpoint.getProperty(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return RestConnection.parseDateString(value);
+        } catch (final ParseException ex) {
+            logger.error("Invalid date {} for checkpoint key {}", value, key, ex);
+            return null;
+        }
+    }
+
+    private void save() throws IOException {
+        final File tempFile = new File(checkpointFile.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(tempFile)) {
+            checkpoint.store(output, "notifier checkpoint");
+            output.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the checkpoint now holds every mark of the journal
+        if (journal != null) {
+            journal.close();
+            journal = null;
+            unsyncedMarks = 0;
+        }
+        Files.deleteIfExists(journalFile.toPath());
+    }
+}
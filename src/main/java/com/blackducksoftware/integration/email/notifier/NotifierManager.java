@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.TimeZone;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.lang3.StringUtils;
 import org.quartz.CronScheduleBuilder;
@@ -62,6 +63,12 @@ public class NotifierManager {
         }
     }
 
+    public void updateExecutorService(final ExecutorService executorService) {
+        for (final Map.Entry<String, AbstractNotifier> entry : notifierMap.entrySet()) {
+            entry.getValue().setExecutorService(executorService);
+        }
+    }
+
     public void attach(final AbstractNotifier notifier) {
         final List<AbstractNotifier> notifierList = new Vector<>();
         notifierList.add(notifier);
@@ -125,6 +132,10 @@ public class NotifierManager {
                 final Trigger trigger = TriggerBuilder.newTrigger().withIdentity("Trigger-" + notifier.getName())
                         .withSchedule(cronSchedule).forJob(jobDetail).build();
                 scheduler.scheduleJob(jobDetail, trigger);
+                if (notifier.hasIncompleteRun()) {
+                    logger.info("Resuming incomplete run of notifier {}", notifier.getName());
+                    scheduler.triggerJob(jobDetail.getKey());
+                }
             } catch (final SchedulerException e) {
                 logger.error("Error scheduling notifier to start {}", notifier.getName(), e);
             }
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+// runs the pre-aggregation of a digest notifier on its own schedule during the day, see
+// AbstractDigestNotifier.preAggregate
+public class PreAggregationNotifier extends AbstractNotifier {
+    private final AbstractDigestNotifier digestNotifier;
+
+    public PreAggregationNotifier(final AbstractDigestNotifier digestNotifier) {
+        super(digestNotifier.getExtensionProperties(), digestNotifier.getEmailMessagingService(), digestNotifier.getHubServicesFactory(),
+                digestNotifier.getExtensionInfoData());
+        this.digestNotifier = digestNotifier;
+    }
+
+    @Override
+    public void run() {
+        digestNotifier.preAggregate();
+    }
+
+    @Override
+    public String getName() {
+        return digestNotifier.getName() + " pre-aggregation";
+    }
+
+    @Override
+    public String getTemplateName() {
+        return digestNotifier.getTemplateName();
+    }
+
+    @Override
+    public String getCronExpression() {
+        return digestNotifier.getPreAggregationCronExpression();
+    }
+
+    // attached to the notifier manager next to the digest notifier, so its key has to differ
+    @Override
+    public String getNotifierPropertyKey() {
+        return digestNotifier.getNotifierPropertyKey() + "PreAggregation";
+    }
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.email.batch.processor.ComponentVulnerabilityCache;
+import com.blackducksoftware.integration.email.batch.processor.EmailProcessor;
+import com.blackducksoftware.integration.email.batch.processor.OpenPolicyViolationStore;
+import com.blackducksoftware.integration.email.batch.processor.RollupProcessor;
+import com.blackducksoftware.integration.email.model.ProjectNotificationIndex;
+import com.blackducksoftware.integration.email.model.batch.CategoryItemLimit;
+import com.blackducksoftware.integration.email.model.batch.NotificationRollup;
+import com.blackducksoftware.integration.email.model.batch.ProjectData;
+import com.blackducksoftware.integration.email.service.EmailMessagingService;
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateNotFoundException;
+
+// the data of a project version in a window is the same for every user who gets it, so within a run each project version
+// is processed once and its html block rendered once; user digests are composed from these instead of being processed whole.
+// the project data comes either from the notifications of the window or from the merged daily rollups covering it.
+public class ProjectDigestCache {
+    public static final String PROJECT_TEMPLATE_SUFFIX = ".project.ftl";
+
+    public static final String KEY_TOPIC = "topic";
+
+    private final Logger logger = LoggerFactory.getLogger(ProjectDigestCache.class);
+
+    // null when the project data comes from a rollup
+    private final ProjectNotificationIndex notificationIndex;
+
+    // null when the project data comes from notifications
+    private final NotificationRollup rollup;
+
+    private final ComponentVulnerabilityCache componentVulnerabilityCache;
+
+    private final MetaService metaService;
+
+    private final EmailMessagingService emailMessagingService;
+
+    // the triggers of every user in the run; a category none of them wants is never produced
+    private final Set<NotificationCategoryEnum> triggers;
+
+    private OpenPolicyViolationStore violationStore;
+
+    private CategoryItemLimit itemLimit = CategoryItemLimit.UNBOUNDED;
+
+    private final ConcurrentMap<String, List<ProjectData>> projectDataMap = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, String> fragmentMap = new ConcurrentHashMap<>();
+
+    private final Set<String> missingTemplates = ConcurrentHashMap.newKeySet();
+
+    public ProjectDigestCache(final ProjectNotificationIndex notificationIndex, final ComponentVulnerabilityCache componentVulnerabilityCache,
+            final MetaService metaService, final EmailMessagingService emailMessagingService, final Set<NotificationCategoryEnum> triggers) {
+        this(notificationIndex, null, componentVulnerabilityCache, metaService, emailMessagingService, triggers);
+    }
+
+    public ProjectDigestCache(final NotificationRollup rollup, final ComponentVulnerabilityCache componentVulnerabilityCache,
+            final MetaService metaService, final EmailMessagingService emailMessagingService, final Set<NotificationCategoryEnum> triggers) {
+        this(null, rollup, componentVulnerabilityCache, metaService, emailMessagingService, triggers);
+    }
+
+    private ProjectDigestCache(final ProjectNotificationIndex notificationIndex, final NotificationRollup rollup,
+            final ComponentVulnerabilityCache componentVulnerabilityCache, final MetaService metaService,
+            final EmailMessagingService emailMessagingService, final Set<NotificationCategoryEnum> triggers) {
+        this.notificationIndex = notificationIndex;
+        this.rollup = rollup;
+        this.componentVulnerabilityCache = componentVulnerabilityCache;
+        this.metaService = metaService;
+        this.emailMessagingService = emailMessagingService;
+        this.triggers = triggers;
+    }
+
+    public OpenPolicyViolationStore getViolationStore() {
+        return violationStore;
+    }
+
+    // set before the cache is used; without it a policy notification only cancels the violations of the same window
+    public void setViolationStore(final OpenPolicyViolationStore violationStore) {
+        this.violationStore = violationStore;
+    }
+
+    public CategoryItemLimit getItemLimit() {
+        return itemLimit;
+    }
+
+    // set before the cache is used, like the violation store
+    public void setItemLimit(final CategoryItemLimit itemLimit) {
+        this.itemLimit = itemLimit;
+    }
+
+    public ProjectNotificationIndex getNotificationIndex() {
+        return notificationIndex;
+    }
+
+    public NotificationRollup getRollup() {
+        return rollup;
+    }
+
+    public Collection<ProjectData> getProjectData(final Collection<String> projectUrls) throws IntegrationException {
+        final List<ProjectData> projectList = new ArrayList<>();
+        final List<String> projectVersionUrls = rollup == null ? notificationIndex.getProjectVersionUrls(projectUrls)
+                : rollup.getProjectVersionUrls(projectUrls);
+        for (final String projectVersionUrl : projectVersionUrls) {
+            projectList.addAll(getProjectVersionData(projectVersionUrl));
+        }
+        return projectList;
+    }
+
+    // the rendered block of each project in the user's digest, or null when the template has no project template
+    public List<String> getFragments(final String templateName, final Collection<ProjectData> projectsDigest)
+            throws IOException, TemplateException {
+        final String projectTemplateName = FilenameUtils.removeExtension(templateName) + PROJECT_TEMPLATE_SUFFIX;
+        if (missingTemplates.contains(projectTemplateName)) {
+            return null;
+        }
+        final List<String> fragments = new ArrayList<>(projectsDigest.size());
+        for (final ProjectData projectData : projectsDigest) {
+            if (projectData.getProjectVersionUrl() == null) {
+                return null;
+            }
+            // the same project version filtered to different triggers renders differently
+            final String fragmentKey = projectTemplateName + '|' + projectData.getProjectVersionUrl() + '|' + projectData.getCategoryMap().keySet();
+            String fragment = fragmentMap.get(fragmentKey);
+            if (fragment == null) {
+                final Map<String, Object> model = new HashMap<>();
+                model.put(KEY_TOPIC, projectData);
+                try {
+                    fragment = emailMessagingService.renderTemplate(projectTemplateName, model);
+                } catch (final TemplateNotFoundException e) {
+                    logger.debug("No project template {}; digests of {} are rendered whole", projectTemplateName, templateName);
+                    missingTemplates.add(projectTemplateName);
+                    return null;
+                }
+                final String existingFragment = fragmentMap.putIfAbsent(fragmentKey, fragment);
+                if (existingFragment != null) {
+                    fragment = existingFragment;
+                }
+            }
+            fragments.add(fragment);
+        }
+        return fragments;
+    }
+
+    public int getProjectVersionCount() {
+        return projectDataMap.size();
+    }
+
+    public int getFragmentCount() {
+        return fragmentMap.size();
+    }
+
+    // two users may process the same new project version at once; the first result stored is kept
+    private List<ProjectData> getProjectVersionData(final String projectVersionUrl) throws IntegrationException {
+        final List<ProjectData> projectData = projectDataMap.get(projectVersionUrl);
+        if (projectData != null) {
+            return projectData;
+        }
+        final List<ProjectData> processedData;
+        if (rollup == null) {
+            final EmailProcessor processor = new EmailProcessor(componentVulnerabilityCache, metaService, triggers, violationStore);
+            processor.setItemLimit(itemLimit);
+            final SortedSet<NotificationContentItem> notifications = processor
+                    .filterNotifications(notificationIndex.getProjectVersionNotifications(projectVersionUrl));
+            processedData = Collections.unmodifiableList(new ArrayList<>(processor.process(notifications)));
+        } else {
+            final RollupProcessor rollupProcessor = new RollupProcessor(componentVulnerabilityCache, metaService);
+            rollupProcessor.setItemLimit(itemLimit);
+            final ProjectData rollupData = rollupProcessor.createProjectData(rollup.getProjects().get(projectVersionUrl), triggers);
+            processedData = rollupData == null ? Collections.emptyList() : Collections.singletonList(rollupData);
+        }
+        final List<ProjectData> existingData = projectDataMap.putIfAbsent(projectVersionUrl, processedData);
+        return existingData == null ? processedData : existingData;
+    }
+}
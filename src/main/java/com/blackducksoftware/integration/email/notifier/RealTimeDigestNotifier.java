@@ -19,8 +19,9 @@ import com.blackducksoftware.integration.hub.service.HubServicesFactory;
 public class RealTimeDigestNotifier extends AbstractDigestNotifier {
 
     public RealTimeDigestNotifier(final ExtensionProperties extensionProperties, final EmailMessagingService emailMessagingService,
-            final HubServicesFactory hubServicesFactory, final ExtensionInfo extensionInfoData) {
-        super(extensionProperties, emailMessagingService, hubServicesFactory, extensionInfoData);
+            final HubServicesFactory hubServicesFactory, final ExtensionInfo extensionInfoData,
+            final DigestResources digestResources) {
+        super(extensionProperties, emailMessagingService, hubServicesFactory, extensionInfoData, digestResources);
     }
 
     @Override
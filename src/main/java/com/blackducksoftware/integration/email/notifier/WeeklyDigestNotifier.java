@@ -35,8 +35,8 @@ import com.blackducksoftware.integration.hub.service.HubServicesFactory;
 public class WeeklyDigestNotifier extends AbstractDigestNotifier {
     public WeeklyDigestNotifier(final ExtensionProperties extensionProperties,
             final EmailMessagingService emailMessagingService, final HubResponseService hubResponseService, final HubServicesFactory hubServicesFactory,
-            final ExtensionInfo extensionInfo) {
-        super(extensionProperties, emailMessagingService, hubServicesFactory, extensionInfo);
+            final ExtensionInfo extensionInfo, final DigestResources digestResources) {
+        super(extensionProperties, emailMessagingService, hubServicesFactory, extensionInfo, digestResources);
     }
 
     @Override
@@ -53,6 +53,11 @@ public class WeeklyDigestNotifier extends AbstractDigestNotifier {
         return new DateRange(Date.from(startZonedTime.toInstant()), Date.from(endZonedTime.toInstant()));
     }
 
+    @Override
+    protected boolean isRollupByDefault() {
+        return true;
+    }
+
     @Override
     public String getNotifierPropertyKey() {
         return "weeklyDigest";
@@ -28,6 +28,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 import javax.mail.Address;
 import javax.mail.Message;
@@ -38,15 +43,23 @@ import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jsoup.Jsoup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.blackducksoftware.integration.email.model.EmailTarget;
+import com.blackducksoftware.integration.email.model.EmbeddedImageCache;
 import com.blackducksoftware.integration.email.model.ExtensionProperties;
+import com.blackducksoftware.integration.email.model.HtmlTextConverter;
 import com.blackducksoftware.integration.email.model.JavaMailWrapper;
 import com.blackducksoftware.integration.email.model.MimeMultipartBuilder;
+import com.blackducksoftware.integration.email.model.RenderedEmail;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import freemarker.core.ParseException;
 import freemarker.template.Configuration;
@@ -56,6 +69,32 @@ import freemarker.template.TemplateException;
 import freemarker.template.TemplateNotFoundException;
 
 public class EmailMessagingService {
+    private static final int SUBJECT_LINE_CACHE_SIZE = 64;
+
+    // set per template with hub.email.template.variable.<template>.text.mode
+    public static final String TEXT_MODE_KEY = "text_mode";
+
+    // render the companion <template>.txt.ftl, falling back to strip when there is none
+    public static final String TEXT_MODE_TEMPLATE = "template";
+
+    // single pass tag stripping of the rendered html
+    public static final String TEXT_MODE_STRIP = "strip";
+
+    // full jsoup parse of the rendered html, the default
+    public static final String TEXT_MODE_PARSE = "parse";
+
+    public static final String TEXT_TEMPLATE_SUFFIX = ".txt.ftl";
+
+    // the companion <template>.header.ftl is rendered for each recipient and replaces ${personal_header} in the body
+    public static final String HEADER_TEMPLATE_SUFFIX = ".header.ftl";
+
+    public static final String KEY_PERSONAL_HEADER = "personal_header";
+
+    private static final String PERSONAL_HEADER_MARKER = "#bd-personal-header#";
+
+    // an empty header takes the whitespace the text conversion left after it along, so the text reads as without a header
+    private static final Pattern EMPTY_TEXT_HEADER_PATTERN = Pattern.compile(Pattern.quote(PERSONAL_HEADER_MARKER) + "[ \\t]*");
+
     private final Logger log = LoggerFactory.getLogger(EmailMessagingService.class);
 
     private final ExtensionProperties localProperties;
@@ -64,11 +103,29 @@ public class EmailMessagingService {
 
     private final Configuration configuration;
 
+    // null when messages are sent straight from the calling thread
+    private final MailDeliveryService mailDeliveryService;
+
+    private final HtmlTextConverter htmlTextConverter = new HtmlTextConverter();
+
+    private final EmbeddedImageCache embeddedImageCache = new EmbeddedImageCache();
+
+    private final Cache<String, Template> subjectLineTemplates = CacheBuilder.newBuilder().maximumSize(SUBJECT_LINE_CACHE_SIZE).build();
+
+    // the global config rarely changes between users so the merged properties and session are only rebuilt when it does
+    private volatile MailConfiguration mailConfiguration;
+
     public EmailMessagingService(final ExtensionProperties customerProperties, final Configuration configuration,
             final JavaMailWrapper javaMailWrapper) {
+        this(customerProperties, configuration, javaMailWrapper, null);
+    }
+
+    public EmailMessagingService(final ExtensionProperties customerProperties, final Configuration configuration,
+            final JavaMailWrapper javaMailWrapper, final MailDeliveryService mailDeliveryService) {
         this.localProperties = customerProperties;
         this.configuration = configuration;
         this.javaMailWrapper = javaMailWrapper;
+        this.mailDeliveryService = mailDeliveryService;
     }
 
     public void sendEmailMessage(final EmailTarget emailTarget) throws MessagingException, TemplateNotFoundException,
@@ -87,28 +144,74 @@ public class EmailMessagingService {
             return;
         }
 
-        ExtensionProperties properties = localProperties;
-        // use the hub global configuration as default and let the local
-        // properties file value override the values from
-        // the Hub
-        if (hubConfiguredProperties != null) {
-            properties = new ExtensionProperties(localProperties.getAppProperties(), hubConfiguredProperties.getAppProperties());
-        }
+        final RenderedEmail renderedEmail = renderEmail(templateName, model, hubConfiguredProperties);
+        sendRenderedEmail(emailAddress, renderedEmail, model, hubConfiguredProperties);
+    }
 
-        final Session session = createMailSession(properties);
+    // renders the parts of an email that do not depend on the recipient so they can be sent to many with sendRenderedEmail
+    public RenderedEmail renderEmail(final String templateName, final Map<String, Object> model,
+            final ExtensionProperties hubConfiguredProperties) throws IOException, TemplateException {
         final Map<String, String> contentIdsToFilePaths = new HashMap<>();
-        populateModelWithAdditionalProperties(properties, model, templateName, contentIdsToFilePaths);
+        populateModelWithAdditionalProperties(getMailConfiguration(hubConfiguredProperties), model, templateName, contentIdsToFilePaths);
+        model.put(KEY_PERSONAL_HEADER, PERSONAL_HEADER_MARKER);
         final String html = getResolvedTemplate(model, templateName);
+        final String text = getTextContent(model, templateName, html);
+        return new RenderedEmail(templateName, model, html, text, contentIdsToFilePaths);
+    }
 
-        final MimeMultipartBuilder mimeMultipartBuilder = new MimeMultipartBuilder();
-        mimeMultipartBuilder.addHtmlContent(html);
-        mimeMultipartBuilder.addTextContent(Jsoup.parse(html).text());
-        mimeMultipartBuilder.addEmbeddedImages(contentIdsToFilePaths);
+    public void sendRenderedEmail(final String emailAddress, final RenderedEmail renderedEmail, final Map<String, Object> personalModel,
+            final ExtensionProperties hubConfiguredProperties) throws MessagingException, IOException, TemplateException {
+        final MailConfiguration currentConfiguration = getMailConfiguration(hubConfiguredProperties);
+        final ExtensionProperties properties = currentConfiguration.getProperties();
+        final Session session = currentConfiguration.getSession();
+        final Map<String, Object> model = new HashMap<>(renderedEmail.getModel());
+        model.putAll(personalModel);
+
+        final String header = getPersonalHeader(model, renderedEmail.getTemplateName());
+        final MimeMultipartBuilder mimeMultipartBuilder = new MimeMultipartBuilder(embeddedImageCache);
+        mimeMultipartBuilder.addHtmlContent(renderedEmail.getHtml().replace(PERSONAL_HEADER_MARKER, header));
+        mimeMultipartBuilder.addTextContent(replaceTextHeader(renderedEmail.getText(), htmlTextConverter.convert(header)));
+        mimeMultipartBuilder.addEmbeddedImages(renderedEmail.getContentIdsToFilePaths());
         final MimeMultipart mimeMultipart = mimeMultipartBuilder.build();
 
         final String resolvedSubjectLine = getResolvedSubjectLine(model);
-        final Message message = createMessage(emailAddress, resolvedSubjectLine, session, mimeMultipart, properties);
-        javaMailWrapper.sendMessage(properties, session, message);
+        final Message message = createMessage(StringUtils.trimToEmpty(emailAddress), resolvedSubjectLine, session, mimeMultipart, properties);
+        if (mailDeliveryService == null) {
+            javaMailWrapper.sendMessage(properties, session, message);
+        } else {
+            mailDeliveryService.enqueue(message, properties, session);
+        }
+    }
+
+    // hands the configuration merged with the Hub's global settings to the mail spool, which waits for it before delivering
+    // the mail of a previous run
+    public void updateDeliveryConfiguration(final ExtensionProperties hubConfiguredProperties) {
+        if (mailDeliveryService != null) {
+            final MailConfiguration currentConfiguration = getMailConfiguration(hubConfiguredProperties);
+            mailDeliveryService.configure(currentConfiguration.getProperties(), currentConfiguration.getSession());
+        }
+    }
+
+    private MailConfiguration getMailConfiguration(final ExtensionProperties hubConfiguredProperties) {
+        final Properties hubProperties = hubConfiguredProperties == null ? null : hubConfiguredProperties.getAppProperties();
+        MailConfiguration currentConfiguration = mailConfiguration;
+        if (currentConfiguration == null || !currentConfiguration.matches(hubProperties)) {
+            ExtensionProperties properties = localProperties;
+            // use the hub global configuration as default and let the local
+            // properties file value override the values from
+            // the Hub
+            if (hubProperties != null) {
+                properties = new ExtensionProperties(localProperties.getAppProperties(), hubProperties);
+            }
+            currentConfiguration = new MailConfiguration(hubProperties, properties, createMailSession(properties));
+            mailConfiguration = currentConfiguration;
+        }
+        return currentConfiguration;
+    }
+
+    // renders a template on its own, without the template variables, e.g. a part that is composed into several emails
+    public String renderTemplate(final String templateName, final Map<String, Object> model) throws IOException, TemplateException {
+        return getResolvedTemplate(model, templateName);
     }
 
     private String getResolvedTemplate(final Map<String, Object> model, final String templateName)
@@ -120,53 +223,122 @@ public class EmailMessagingService {
         return stringWriter.toString();
     }
 
+    private String getTextContent(final Map<String, Object> model, final String templateName, final String html)
+            throws IOException, TemplateException {
+        final String textMode = StringUtils.trimToEmpty((String) model.get(TEXT_MODE_KEY));
+        if (TEXT_MODE_TEMPLATE.equalsIgnoreCase(textMode)) {
+            final String textTemplateName = FilenameUtils.removeExtension(templateName) + TEXT_TEMPLATE_SUFFIX;
+            try {
+                return getResolvedTemplate(model, textTemplateName);
+            } catch (final TemplateNotFoundException e) {
+                log.debug(String.format("No text template %s found, stripping the html instead", textTemplateName));
+                return htmlTextConverter.convert(html);
+            }
+        } else if (TEXT_MODE_STRIP.equalsIgnoreCase(textMode)) {
+            return htmlTextConverter.convert(html);
+        }
+        return Jsoup.parse(html).text();
+    }
+
+    // the text templates put the header right before the first paragraph, so a header that is not empty ends in its own one
+    private String replaceTextHeader(final String text, final String headerText) {
+        if (headerText.isEmpty()) {
+            return EMPTY_TEXT_HEADER_PATTERN.matcher(text).replaceAll("");
+        }
+        return text.replace(PERSONAL_HEADER_MARKER, headerText + "\n\n");
+    }
+
+    private String getPersonalHeader(final Map<String, Object> model, final String templateName) throws IOException, TemplateException {
+        final String headerTemplateName = FilenameUtils.removeExtension(templateName) + HEADER_TEMPLATE_SUFFIX;
+        try {
+            return getResolvedTemplate(model, headerTemplateName);
+        } catch (final TemplateNotFoundException e) {
+            return "";
+        }
+    }
+
     private String getResolvedSubjectLine(final Map<String, Object> model) throws IOException, TemplateException {
         String subjectLine = (String) model.get("subject_line");
         if (StringUtils.isBlank(subjectLine)) {
             subjectLine = "Default Subject Line - please define one in extension.properties";
         }
-        final Template subjectLineTemplate = new Template("subjectLineTemplate", subjectLine, configuration);
+        final Template subjectLineTemplate = getSubjectLineTemplate(subjectLine);
         final StringWriter stringWriter = new StringWriter();
         subjectLineTemplate.process(model, stringWriter);
         return stringWriter.toString();
     }
 
-    private void populateModelWithAdditionalProperties(final ExtensionProperties customerProperties,
-            final Map<String, Object> model, final String templateName,
-            final Map<String, String> contentIdsToFilePaths) {
+    // parsed templates are immutable and safe to process from several threads at once
+    private Template getSubjectLineTemplate(final String subjectLine) throws IOException {
+        try {
+            return subjectLineTemplates.get(subjectLine, () -> new Template("subjectLineTemplate", subjectLine, configuration));
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void populateModelWithAdditionalProperties(final MailConfiguration mailConfiguration, final Map<String, Object> model,
+            final String templateName, final Map<String, String> contentIdsToFilePaths) {
+        final TemplateVariables templateVariables = mailConfiguration.getTemplateVariables(templateName,
+                name -> createTemplateVariables(mailConfiguration.getProperties(), name));
+        // an 'all.templates' value never replaces a value the caller already put in the model
+        for (final Map.Entry<String, Object> entry : templateVariables.getAllTemplatesValues().entrySet()) {
+            if (!model.containsKey(entry.getKey())) {
+                model.put(entry.getKey(), entry.getValue());
+                final String imageFilePath = templateVariables.getAllTemplatesImages().get(entry.getKey());
+                if (imageFilePath != null) {
+                    contentIdsToFilePaths.put("<" + entry.getValue() + ">", imageFilePath);
+                }
+            }
+        }
+        model.putAll(templateVariables.getTemplateValues());
+        contentIdsToFilePaths.putAll(templateVariables.getTemplateImages());
+    }
+
+    // the variables for a template only depend on the configuration so they are worked out once per template and configuration
+    private TemplateVariables createTemplateVariables(final ExtensionProperties customerProperties, final String templateName) {
+        final Map<String, Object> allTemplatesValues = new HashMap<>();
+        final Map<String, String> allTemplatesImages = new HashMap<>();
+        final Map<String, Object> templateValues = new HashMap<>();
+        final Map<String, String> templateImages = new HashMap<>();
         for (final Map.Entry<String, String> entry : customerProperties.getSuppliedTemplateVariableProperties()
                 .entrySet()) {
-            final String key = entry.getKey();
+            String key = entry.getKey();
             final String value = entry.getValue();
-            manageKey(model, templateName, contentIdsToFilePaths, key, value);
+            if (key.contains("all.templates.")) {
+                key = key.replace("all.templates.", "");
+                // the first 'all.templates' value for a key wins
+                if (!allTemplatesValues.containsKey(cleanForFreemarker(key))) {
+                    putVariable(allTemplatesValues, allTemplatesImages, key, value, false);
+                }
+            } else if (key.contains(templateName + ".")) {
+                key = key.replace(templateName + ".", "");
+                putVariable(templateValues, templateImages, key, value, true);
+            }
         }
-    }
 
-    private void manageKey(final Map<String, Object> model, final String templateName,
-            final Map<String, String> contentIdsToFilePaths, String key, final String value) {
-        boolean shouldAddToModel = false;
-        if (key.contains("all.templates.")) {
-            shouldAddToModel = true;
-            key = key.replace("all.templates.", "");
+        // if we've got a value for this key using the template name, assume it
+        // overrides the 'all.templates' value
+        allTemplatesValues.keySet().removeAll(templateValues.keySet());
+        allTemplatesImages.keySet().retainAll(allTemplatesValues.keySet());
+        return new TemplateVariables(allTemplatesValues, allTemplatesImages, templateValues, templateImages);
+    }
 
-            // if we've already added a value for this key using the template
-            // name, assume it overrides the 'all.templates' value
-            if (model.containsKey(cleanForFreemarker(key))) {
-                shouldAddToModel = false;
-            }
-        } else if (key.contains(templateName + ".")) {
-            shouldAddToModel = true;
-            key = key.replace(templateName + ".", "");
-        }
-
-        if (shouldAddToModel) {
-            if (key.endsWith(".image")) {
-                final String cid = generateContentId(key);
-                model.put(cleanForFreemarker(key), cid);
-                contentIdsToFilePaths.put("<" + cid + ">", value);
-            } else {
-                model.put(cleanForFreemarker(key), value);
-            }
+    // images are keyed by content id header for the template values and by model key for the 'all.templates' values,
+    // which are only added to the email when the model does not have the key already
+    private void putVariable(final Map<String, Object> values, final Map<String, String> images, final String key, final String value,
+            final boolean keyByContentId) {
+        final String modelKey = cleanForFreemarker(key);
+        if (key.endsWith(".image")) {
+            final String cid = generateContentId(key);
+            values.put(modelKey, cid);
+            images.put(keyByContentId ? "<" + cid + ">" : modelKey, value);
+        } else {
+            values.put(modelKey, value);
         }
     }
 
@@ -210,4 +382,76 @@ public class EmailMessagingService {
         return s.replace(".", "_");
     }
 
+    private static class MailConfiguration {
+        private final Properties hubProperties;
+
+        private final int hubPropertiesHash;
+
+        private final ExtensionProperties properties;
+
+        private final Session session;
+
+        private final ConcurrentMap<String, TemplateVariables> templateVariables = new ConcurrentHashMap<>();
+
+        public MailConfiguration(final Properties hubProperties, final ExtensionProperties properties, final Session session) {
+            // copied so a caller changing its properties later cannot alter the key
+            this.hubProperties = hubProperties == null ? null : (Properties) hubProperties.clone();
+            this.hubPropertiesHash = hubProperties == null ? 0 : hubProperties.hashCode();
+            this.properties = properties;
+            this.session = session;
+        }
+
+        public boolean matches(final Properties otherProperties) {
+            if (hubProperties == null || otherProperties == null) {
+                return hubProperties == otherProperties;
+            }
+            return hubPropertiesHash == otherProperties.hashCode() && hubProperties.equals(otherProperties);
+        }
+
+        public ExtensionProperties getProperties() {
+            return properties;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public TemplateVariables getTemplateVariables(final String templateName, final Function<String, TemplateVariables> factory) {
+            return templateVariables.computeIfAbsent(templateName, factory);
+        }
+    }
+
+    private static class TemplateVariables {
+        private final Map<String, Object> allTemplatesValues;
+
+        private final Map<String, String> allTemplatesImages;
+
+        private final Map<String, Object> templateValues;
+
+        private final Map<String, String> templateImages;
+
+        public TemplateVariables(final Map<String, Object> allTemplatesValues, final Map<String, String> allTemplatesImages,
+                final Map<String, Object> templateValues, final Map<String, String> templateImages) {
+            this.allTemplatesValues = ImmutableMap.copyOf(allTemplatesValues);
+            this.allTemplatesImages = ImmutableMap.copyOf(allTemplatesImages);
+            this.templateValues = ImmutableMap.copyOf(templateValues);
+            this.templateImages = ImmutableMap.copyOf(templateImages);
+        }
+
+        public Map<String, Object> getAllTemplatesValues() {
+            return allTemplatesValues;
+        }
+
+        public Map<String, String> getAllTemplatesImages() {
+            return allTemplatesImages;
+        }
+
+        public Map<String, Object> getTemplateValues() {
+            return templateValues;
+        }
+
+        public Map<String, String> getTemplateImages() {
+            return templateImages;
+        }
+    }
 }
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.email.model.ExtensionProperties;
+import com.blackducksoftware.integration.email.model.JavaMailWrapper;
+import com.blackducksoftware.integration.email.model.MailSpool;
+import com.blackducksoftware.integration.email.model.SpooledMail;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+// drains the mail spool on its own worker pool so a slow or unavailable smtp relay does not hold up the notifiers.
+public class MailDeliveryService {
+    private static final long INITIAL_RETRY_SECONDS = 5;
+
+    private static final long MAX_RETRY_SECONDS = 300;
+
+    private static final long STATUS_LOG_MINUTES = 1;
+
+    private final Logger logger = LoggerFactory.getLogger(MailDeliveryService.class);
+
+    private final JavaMailWrapper javaMailWrapper;
+
+    private final MailSpool mailSpool;
+
+    private final int threadCount;
+
+    private final int maxAttempts;
+
+    // messages are delivered with the configuration they were last queued with. null until the first configuration is known,
+    // so mail left in the spool by a previous run is not sent through a relay from the local properties alone.
+    private volatile DeliveryConfiguration deliveryConfiguration;
+
+    private ScheduledExecutorService deliveryExecutor;
+
+    public MailDeliveryService(final JavaMailWrapper javaMailWrapper, final MailSpool mailSpool, final int threadCount, final int maxAttempts) {
+        this.javaMailWrapper = javaMailWrapper;
+        this.mailSpool = mailSpool;
+        this.threadCount = threadCount;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void start() {
+        deliveryExecutor = Executors.newScheduledThreadPool(threadCount,
+                new ThreadFactoryBuilder().setNameFormat("mail-delivery-%d").setDaemon(true).build());
+        deliveryExecutor.scheduleWithFixedDelay(() -> logStatus(), STATUS_LOG_MINUTES, STATUS_LOG_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public void shutDown() {
+        if (deliveryExecutor != null) {
+            deliveryExecutor.shutdownNow();
+        }
+        try {
+            mailSpool.close();
+        } catch (final IOException e) {
+            logger.error("Error closing the mail spool", e);
+        }
+    }
+
+    // sets the configuration the spooled messages are delivered with. the first one also starts the delivery of the mail
+    // a previous run left in the spool.
+    public synchronized void configure(final ExtensionProperties properties, final Session session) {
+        final DeliveryConfiguration currentConfiguration = deliveryConfiguration;
+        if (currentConfiguration != null && properties == currentConfiguration.getProperties()) {
+            return;
+        }
+        deliveryConfiguration = new DeliveryConfiguration(properties, session);
+        if (currentConfiguration == null) {
+            for (final SpooledMail mail : mailSpool.getPendingMail()) {
+                scheduleDelivery(mail, 0, 0);
+            }
+        }
+    }
+
+    // returns once the message is durable in the spool; delivery happens later on the worker pool
+    public void enqueue(final Message message, final ExtensionProperties properties, final Session session)
+            throws IOException, MessagingException {
+        configure(properties, session);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        message.writeTo(output);
+        final SpooledMail mail = mailSpool.append(output.toByteArray());
+        scheduleDelivery(mail, 0, 0);
+    }
+
+    public int getQueueDepth() {
+        return mailSpool.getDepth();
+    }
+
+    public long getOldestMessageAgeMillis() {
+        return mailSpool.getOldestAgeMillis();
+    }
+
+    private void scheduleDelivery(final SpooledMail mail, final int attempt, final long delaySeconds) {
+        deliveryExecutor.schedule(() -> deliver(mail, attempt), delaySeconds, TimeUnit.SECONDS);
+    }
+
+    private void deliver(final SpooledMail mail, final int attempt) {
+        try {
+            final DeliveryConfiguration configuration = deliveryConfiguration;
+            final Message message = new MimeMessage(configuration.getSession(), new ByteArrayInputStream(mailSpool.read(mail)));
+            javaMailWrapper.sendMessage(configuration.getProperties(), configuration.getSession(), message);
+        } catch (final Exception e) {
+            final int attempts = attempt + 1;
+            if (attempts >= maxAttempts) {
+                logger.error("Giving up on spooled message {} after {} attempts", mail.getId(), attempts, e);
+                acknowledge(mail);
+            } else {
+                final long delaySeconds = Math.min(MAX_RETRY_SECONDS, INITIAL_RETRY_SECONDS << Math.min(attempt, 16));
+                logger.warn("Error delivering spooled message {}; retrying in {} seconds", mail.getId(), delaySeconds, e);
+                scheduleDelivery(mail, attempts, delaySeconds);
+            }
+            return;
+        }
+        // the message has been sent; a failed ack is only logged so the message is never sent twice from this run
+        acknowledge(mail);
+    }
+
+    private void acknowledge(final SpooledMail mail) {
+        try {
+            mailSpool.acknowledge(mail);
+        } catch (final IOException e) {
+            logger.error("Error removing spooled message {}", mail.getId(), e);
+        }
+    }
+
+    private void logStatus() {
+        final int depth = getQueueDepth();
+        if (depth > 0) {
+            logger.info("Mail spool depth: {} oldest message age (ms): {}", depth, getOldestMessageAgeMillis());
+        }
+    }
+
+    private static class DeliveryConfiguration {
+        private final ExtensionProperties properties;
+
+        private final Session session;
+
+        public DeliveryConfiguration(final ExtensionProperties properties, final Session session) {
+            this.properties = properties;
+            this.session = session;
+        }
+
+        public ExtensionProperties getProperties() {
+            return properties;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+    }
+}
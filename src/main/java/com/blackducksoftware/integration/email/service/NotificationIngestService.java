@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.service;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.email.model.DateRange;
+import com.blackducksoftware.integration.email.model.NotificationMailbox;
+import com.blackducksoftware.integration.email.model.ProjectNotificationIndex;
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.dataservice.notification.NotificationDataService;
+import com.blackducksoftware.integration.hub.dataservice.notification.NotificationResults;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+
+// the single reader of the Hub's notifications for the digest notifiers. new notifications are fetched once from the cursor on
+// and appended to the mailbox of every user subscribed to their project, so a notifier reads its window locally instead of
+// querying the Hub for it. a window the mailboxes do not hold yet, such as the first one after a start, is left to the caller.
+public class NotificationIngestService {
+    private final Logger logger = LoggerFactory.getLogger(NotificationIngestService.class);
+
+    private final NotificationDataService notificationDataService;
+
+    private final long mailboxIdleMillis;
+
+    private final Map<String, NotificationMailbox> mailboxes = new ConcurrentHashMap<>();
+
+    // only one poll of the Hub at a time; the notifiers asking for the same span wait for it instead of querying again
+    private final Object pollLock = new Object();
+
+    // end of the span ingested so far
+    private volatile Date cursor;
+
+    public NotificationIngestService(final NotificationDataService notificationDataService, final long mailboxIdleDays) {
+        this.notificationDataService = notificationDataService;
+        this.mailboxIdleMillis = TimeUnit.DAYS.toMillis(mailboxIdleDays);
+    }
+
+    // polls the Hub from the cursor to the end unless that span has already been ingested. the first call only sets the cursor,
+    // there are no mailboxes to append to yet.
+    public void ensureIngested(final Date end) throws IntegrationException {
+        synchronized (pollLock) {
+            final Date start = cursor;
+            if (start == null) {
+                advance(end, null);
+                return;
+            }
+            if (!end.after(start)) {
+                return;
+            }
+            final NotificationResults notificationResults = notificationDataService.getAllNotifications(new Date(start.getTime() + 1), end);
+            if (!notificationResults.getExceptions().isEmpty()) {
+                // a partial span would leave gaps in the mailboxes; the cursor stays so the span is read again on the next poll
+                logger.warn("Could not ingest all notifications between start: {} end: {}", start, end, notificationResults.getExceptions().get(0));
+                return;
+            }
+            final ProjectNotificationIndex notificationIndex = new ProjectNotificationIndex(notificationResults.getNotificationContentItems());
+            advance(end, notificationIndex);
+            logger.info("Ingested {} notifications across {} project versions into {} mailboxes", notificationIndex.getNotificationCount(),
+                    notificationIndex.getProjectVersionCount(), mailboxes.size());
+        }
+    }
+
+    // appending and moving the cursor happen together so a mailbox opened meanwhile is never marked as holding a span it missed
+    private synchronized void advance(final Date end, final ProjectNotificationIndex notificationIndex) {
+        final long idleBefore = System.currentTimeMillis() - mailboxIdleMillis;
+        final Iterator<NotificationMailbox> iterator = mailboxes.values().iterator();
+        while (iterator.hasNext()) {
+            final NotificationMailbox mailbox = iterator.next();
+            if (mailbox.getLastReadMillis() < idleBefore) {
+                iterator.remove();
+            } else if (notificationIndex != null) {
+                mailbox.append(notificationIndex.getNotifications(mailbox.getProjectUrls()));
+            }
+        }
+        cursor = end;
+    }
+
+    // the user's notifications within the window, or null when their mailbox does not hold all of it. the mailbox is opened
+    // for the user's projects here and collects from the cursor on.
+    public SortedSet<NotificationContentItem> readMailbox(final String userKey, final Set<String> projectUrls, final DateRange dateRange) {
+        final NotificationMailbox mailbox = openMailbox(userKey, projectUrls);
+        final Date ingestedUntil = cursor;
+        if (ingestedUntil == null || dateRange.getEnd().after(ingestedUntil)) {
+            return null;
+        }
+        return mailbox.read(dateRange);
+    }
+
+    // the notifications of all the users' projects within the window, or null unless every one of their mailboxes holds all of
+    // it. every mailbox is opened either way so the next window can be read from them.
+    public SortedSet<NotificationContentItem> readMailboxes(final Map<String, Set<String>> userProjectUrls, final DateRange dateRange) {
+        final SortedSet<NotificationContentItem> windowItems = new TreeSet<>();
+        boolean covered = true;
+        for (final Map.Entry<String, Set<String>> entry : userProjectUrls.entrySet()) {
+            final SortedSet<NotificationContentItem> mailboxItems = readMailbox(entry.getKey(), entry.getValue(), dateRange);
+            if (mailboxItems == null) {
+                covered = false;
+            } else if (covered) {
+                windowItems.addAll(mailboxItems);
+            }
+        }
+        return covered ? windowItems : null;
+    }
+
+    private synchronized NotificationMailbox openMailbox(final String userKey, final Set<String> projectUrls) {
+        final Date coveredFrom = cursor == null ? null : new Date(cursor.getTime() + 1);
+        NotificationMailbox mailbox = mailboxes.get(userKey);
+        if (mailbox == null) {
+            mailbox = new NotificationMailbox(projectUrls, coveredFrom);
+            mailboxes.put(userKey, mailbox);
+        } else {
+            mailbox.updateProjectUrls(projectUrls, coveredFrom);
+        }
+        return mailbox;
+    }
+
+    // called once the user has been sent everything up to the watermark
+    public void acknowledge(final String userKey, final Date watermark) {
+        final NotificationMailbox mailbox = mailboxes.get(userKey);
+        if (mailbox != null) {
+            mailbox.discardThrough(watermark);
+        }
+    }
+
+    public Date getCursor() {
+        return cursor;
+    }
+
+    public int getMailboxCount() {
+        return mailboxes.size();
+    }
+
+    public int getMailboxSize(final String userKey) {
+        final NotificationMailbox mailbox = mailboxes.get(userKey);
+        return mailbox == null ? 0 : mailbox.size();
+    }
+}
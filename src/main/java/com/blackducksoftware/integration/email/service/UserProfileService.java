@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.email.EmailExtensionConstants;
+import com.blackducksoftware.integration.email.model.EmailFrequency;
+import com.blackducksoftware.integration.email.model.ProjectSubscriptionIndex;
+import com.blackducksoftware.integration.email.model.UserProfile;
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.dataservice.extension.item.UserConfigItem;
+import com.blackducksoftware.integration.hub.model.view.ExternalExtensionConfigValueView;
+import com.blackducksoftware.integration.hub.model.view.UserView;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+// keeps a compiled profile per user. a profile is compiled again when the user's config values in the Hub differ from the
+// ones it was compiled from; the user's projects are resolved again once they are older than the project expiry.
+public class UserProfileService {
+    public static final long DEFAULT_PROJECTS_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static final String[] PROFILE_CONFIG_KEYS = { EmailExtensionConstants.CONFIG_KEY_OPT_IN, EmailExtensionConstants.CONFIG_KEY_FREQUENCY,
+            EmailExtensionConstants.CONFIG_KEY_TRIGGERS, EmailExtensionConstants.CONFIG_KEY_TEMPLATE_NAME };
+
+    private static final int MAX_PROFILES = 100000;
+
+    private final Logger logger = LoggerFactory.getLogger(UserProfileService.class);
+
+    private final UserProjectService userProjectService;
+
+    private final long projectsExpireMillis;
+
+    // kept in step with the project urls of the profiles
+    private final ProjectSubscriptionIndex subscriptionIndex = new ProjectSubscriptionIndex();
+
+    // users removed from the Hub stop being looked up and age out
+    private final Cache<String, UserProfile> profiles = CacheBuilder.newBuilder().maximumSize(MAX_PROFILES).expireAfterAccess(1, TimeUnit.DAYS)
+            .build();
+
+    public UserProfileService(final UserProjectService userProjectService) {
+        this(userProjectService, DEFAULT_PROJECTS_EXPIRE_MILLIS);
+    }
+
+    public UserProfileService(final UserProjectService userProjectService, final long projectsExpireMillis) {
+        this.userProjectService = userProjectService;
+        this.projectsExpireMillis = projectsExpireMillis;
+    }
+
+    public UserProfile getProfile(final String userKey, final UserConfigItem userConfig) {
+        final Map<String, List<String>> configValues = getConfigValues(userConfig);
+        final UserProfile profile = profiles.getIfPresent(userKey);
+        if (profile != null && profile.getConfigValues().equals(configValues)) {
+            return profile;
+        }
+        final UserProfile compiledProfile = compileProfile(userKey, configValues);
+        profiles.put(userKey, compiledProfile);
+        return compiledProfile;
+    }
+
+    public Set<String> getProjectUrls(final UserProfile profile, final UserView user) throws IntegrationException {
+        final long now = System.currentTimeMillis();
+        if (profile.getProjectUrls() != null && now - profile.getProjectsResolvedAt() < projectsExpireMillis) {
+            return profile.getProjectUrls();
+        }
+        final Set<String> projectUrls = userProjectService.getProjectUrls(user);
+        final UserProfile resolvedProfile = profile.withProjectUrls(projectUrls, now);
+        // a profile compiled from newer config in the meantime is kept as it is
+        profiles.asMap().replace(profile.getUserKey(), profile, resolvedProfile);
+        subscriptionIndex.updateUser(profile.getUserKey(), projectUrls);
+        return resolvedProfile.getProjectUrls();
+    }
+
+    public ProjectSubscriptionIndex getSubscriptionIndex() {
+        return subscriptionIndex;
+    }
+
+    // forgets the users that are no longer in the Hub config
+    public void retainUsers(final Collection<String> userKeys) {
+        profiles.asMap().keySet().retainAll(userKeys);
+        subscriptionIndex.retainUsers(userKeys);
+    }
+
+    public void invalidate(final String userKey) {
+        profiles.invalidate(userKey);
+        subscriptionIndex.removeUser(userKey);
+    }
+
+    public void invalidateAll() {
+        profiles.invalidateAll();
+        subscriptionIndex.retainUsers(Collections.<String> emptyList());
+    }
+
+    public long size() {
+        return profiles.size();
+    }
+
+    private Map<String, List<String>> getConfigValues(final UserConfigItem userConfig) {
+        final Map<String, List<String>> configValues = new HashMap<>();
+        for (final String key : PROFILE_CONFIG_KEYS) {
+            final ExternalExtensionConfigValueView configValue = userConfig.getConfigMap().get(key);
+            if (configValue != null && configValue.value != null) {
+                configValues.put(key, new ArrayList<>(configValue.value));
+            }
+        }
+        return configValues;
+    }
+
+    private UserProfile compileProfile(final String userKey, final Map<String, List<String>> configValues) {
+        final boolean optedIn = Boolean.parseBoolean(getSingleValue(configValues, EmailExtensionConstants.CONFIG_KEY_OPT_IN));
+        final EmailFrequency frequency = EmailFrequency.fromDisplayName(getSingleValue(configValues, EmailExtensionConstants.CONFIG_KEY_FREQUENCY));
+        final EnumSet<NotificationCategoryEnum> triggers = EnumSet.noneOf(NotificationCategoryEnum.class);
+        for (final String trigger : getValueList(configValues, EmailExtensionConstants.CONFIG_KEY_TRIGGERS)) {
+            try {
+                triggers.add(NotificationCategoryEnum.valueOf(trigger));
+            } catch (final Exception ex) {
+                logger.error("Could not parse trigger config {} {}", trigger, ex);
+            }
+        }
+        final String templateName = StringUtils.trimToEmpty(getSingleValue(configValues, EmailExtensionConstants.CONFIG_KEY_TEMPLATE_NAME));
+        return new UserProfile(userKey, optedIn, frequency, triggers, templateName, configValues);
+    }
+
+    private String getSingleValue(final Map<String, List<String>> configValues, final String key) {
+        final List<String> values = configValues.get(key);
+        if (values == null || values.isEmpty()) {
+            return "";
+        }
+        return values.get(0);
+    }
+
+    private List<String> getValueList(final Map<String, List<String>> configValues, final String key) {
+        final List<String> values = configValues.get(key);
+        return values == null ? Collections.<String> emptyList() : values;
+    }
+}
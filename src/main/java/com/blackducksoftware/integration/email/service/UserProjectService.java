@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.model.view.AssignedProjectView;
+import com.blackducksoftware.integration.hub.model.view.UserView;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+
+public class UserProjectService {
+    public static final String USER_PROJECTS_LINK = "projects";
+
+    private final HubResponseService hubResponseService;
+
+    private final MetaService metaService;
+
+    public UserProjectService(final HubResponseService hubResponseService, final MetaService metaService) {
+        this.hubResponseService = hubResponseService;
+        this.metaService = metaService;
+    }
+
+    public Set<String> getProjectUrls(final UserView user) throws IntegrationException {
+        final String projectsUrl = metaService.getFirstLink(user, USER_PROJECTS_LINK);
+        final List<AssignedProjectView> assignedProjects = hubResponseService.getAllItems(projectsUrl, AssignedProjectView.class);
+        final Set<String> projectUrls = new HashSet<>(assignedProjects.size());
+        for (final AssignedProjectView assignedProject : assignedProjects) {
+            if (StringUtils.isNotBlank(assignedProject.project)) {
+                projectUrls.add(assignedProject.project);
+            }
+        }
+        return projectUrls;
+    }
+}
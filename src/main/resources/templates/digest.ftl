@@ -16,12 +16,16 @@
         </div> 
         <div style="border: 1px solid #979797;"></div>
         <br/>
-        <div style="font-family: Arial, FreeSans, Helvetica, sans-serif;font-weight: lighter;font-size: 14px;color: #445B68;">Black Duck captured the following new policy violations and vulnerabilities.</div>
+        ${personal_header!}<div style="font-family: Arial, FreeSans, Helvetica, sans-serif;font-weight: lighter;font-size: 14px;color: #445B68;">Black Duck captured the following new policy violations and vulnerabilities.</div>
         <a href="${hub_server_url}" style="font-family: Arial, FreeSans, Helvetica, sans-serif;font-weight: lighter;font-size: 14px;color: #225786;">See more details in the Hub</a>
         <br/>
         <br/>
           <#if topicsList?? && topicsList?size gt 0> 
               <#list topicsList as topic>
+                  <#if topicFragments?? && topicFragments[topic?index]??>
+                  ${topicFragments[topic?index]}
+                  <#else>
+                  <#-- the same block as digest.project.ftl, for a template directory without the project template -->
                   <div style="background: #DDDDDD;margin:0px;padding-left: 15px;padding-top: 20px;padding-bottom: 20px;">
                     <div style="font-family: Arial, FreeSans, Helvetica, sans-serif;font-weight: bold;font-size: 18px;color: #445B68;margin-bottom: 10px;">${topic.projectName} > ${topic.projectVersion}</div>
                     <#if topic.categoryMap?? && topic.categoryMap?size gt 0> 
@@ -68,11 +72,15 @@
                                 </#if>
                                 <@moreItems item.dataSet?size/>
                             </#list>
+                            <#if categoryItem.moreItemCount?? && categoryItem.moreItemCount gt 0>
+                                <div style="font-family: monospace;font-size: 14px;color: #445B68;">${categoryItem.moreItemCount} more</div>
+                            </#if>
                         </#if>
                       </#list>
                     </#if>
                   </div>
                   <div style="height: 20px;"></div>
+                  </#if>
               </#list>
           </#if>
         <div style="display:inline-block;width:100%;">
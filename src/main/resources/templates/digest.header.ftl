@@ -0,0 +1 @@
+<#-- rendered for each recipient in place of personal_header; empty by default, e.g. Hello ${user_first_name!} ${user_last_name!}, -->
\ No newline at end of file
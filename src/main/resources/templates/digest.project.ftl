@@ -0,0 +1,59 @@
+<#macro moreItems size>
+  <#if size gt 10>
+        <p>${size - 10} more</p>
+  </#if>
+</#macro>
+<div style="background: #DDDDDD;margin:0px;padding-left: 15px;padding-top: 20px;padding-bottom: 20px;">
+  <div style="font-family: Arial, FreeSans, Helvetica, sans-serif;font-weight: bold;font-size: 18px;color: #445B68;margin-bottom: 10px;">${topic.projectName} > ${topic.projectVersion}</div>
+  <#if topic.categoryMap?? && topic.categoryMap?size gt 0> 
+    <#list topic.categoryMap?values as categoryItem>
+      <#if categoryItem.itemList?? && categoryItem.itemList?size gt 0>
+          <#assign categoryType="${categoryItem.categoryKey}">
+          <#if categoryType == "POLICY_VIOLATION">
+            <#assign categoryName="Policy Violations">
+          <#elseif categoryType == "POLICY_VIOLATION_CLEARED">
+            <#assign categoryName="Policy Violations Cleared">
+          <#elseif categoryType == "POLICY_VIOLATION_OVERRIDE">
+            <#assign categoryName="Policy Violation Overrides">
+          <#elseif categoryType == "HIGH_VULNERABILITY">
+            <#assign categoryName="High Vulnerabilities">
+          <#elseif categoryType == "MEDIUM_VULNERABILITY">
+            <#assign categoryName="Medium Vulnerabilities">
+          <#elseif categoryType == "LOW_VULNERABILITY">
+            <#assign categoryName="Low Vulnerabilities">
+          <#else>
+            <#assign categoryName="${categoryItem.categoryKey}">
+          </#if>
+          <div style="font-family: Arial, FreeSans, Helvetica, sans-serif;font-weight: bold;font-size: 14px;color: #445B68; margin-top: 10px; margin-bottom: 10px;">${categoryItem.itemCount} ${categoryName}</div>
+          <#list categoryItem.itemList as item>
+              <#if item.dataSet?? && item.dataSet?size gt 0>
+                 <div>
+                 <#list item.dataSet as item_key, item_value>
+                     <#assign itemType="${item_key}">
+                     <div style="font-family: monospace;font-size: 14px;color: #445B68;padding-right: 15px;display: inline-block;">
+                     <#if itemType == "RULE">
+                       Rule: ${item_value}
+                     <#elseif itemType == "COMPONENT">
+                       Component: ${item_value} 
+                     <#elseif itemType == "COUNT">
+                       (${item_value})
+                     <#elseif itemType == "PERSON">
+                       By: ${item_value}
+                     <#elseif itemType == "VERSION">
+                       ${item_value}
+                     <#else>
+                     </#if>
+                     </div>
+                 </#list>
+                 </div>
+              </#if>
+              <@moreItems item.dataSet?size/>
+          </#list>
+          <#if categoryItem.moreItemCount?? && categoryItem.moreItemCount gt 0>
+              <div style="font-family: monospace;font-size: 14px;color: #445B68;">${categoryItem.moreItemCount} more</div>
+          </#if>
+      </#if>
+    </#list>
+  </#if>
+</div>
+<div style="height: 20px;"></div>
@@ -0,0 +1,46 @@
+<#macro moreItems size><#if size gt 10>    ${size - 10} more
+</#if></#macro>
+${emailCategory} DIGEST
+
+${personal_header!}Black Duck captured the following new policy violations and vulnerabilities.
+See more details in the Hub: ${hub_server_url}
+
+<#if topicsList?? && topicsList?size gt 0>
+<#list topicsList as topic>
+${topic.projectName} > ${topic.projectVersion}
+<#if topic.categoryMap?? && topic.categoryMap?size gt 0>
+<#list topic.categoryMap?values as categoryItem>
+<#if categoryItem.itemList?? && categoryItem.itemList?size gt 0>
+<#assign categoryType="${categoryItem.categoryKey}">
+<#if categoryType == "POLICY_VIOLATION">
+<#assign categoryName="Policy Violations">
+<#elseif categoryType == "POLICY_VIOLATION_CLEARED">
+<#assign categoryName="Policy Violations Cleared">
+<#elseif categoryType == "POLICY_VIOLATION_OVERRIDE">
+<#assign categoryName="Policy Violation Overrides">
+<#elseif categoryType == "HIGH_VULNERABILITY">
+<#assign categoryName="High Vulnerabilities">
+<#elseif categoryType == "MEDIUM_VULNERABILITY">
+<#assign categoryName="Medium Vulnerabilities">
+<#elseif categoryType == "LOW_VULNERABILITY">
+<#assign categoryName="Low Vulnerabilities">
+<#else>
+<#assign categoryName="${categoryItem.categoryKey}">
+</#if>
+  ${categoryItem.itemCount} ${categoryName}
+<#list categoryItem.itemList as item>
+<#if item.dataSet?? && item.dataSet?size gt 0>
+   <#list item.dataSet as item_key, item_value><#assign itemType="${item_key}"><#if itemType == "RULE"> Rule: ${item_value}<#elseif itemType == "COMPONENT"> Component: ${item_value}<#elseif itemType == "COUNT"> (${item_value})<#elseif itemType == "PERSON"> By: ${item_value}<#elseif itemType == "VERSION"> ${item_value}</#if></#list>
+
+</#if>
+<@moreItems item.dataSet?size/>
+</#list>
+<#if categoryItem.moreItemCount?? && categoryItem.moreItemCount gt 0>    ${categoryItem.moreItemCount} more
+</#if>
+</#if>
+</#list>
+</#if>
+
+</#list>
+</#if>
+Powered by BLACK DUCK
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.model.view.VulnerabilityView;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+
+public class ComponentVulnerabilityCacheTest {
+    private static final String COMPONENT_VERSION_URL = "http://hub/api/components/1/versions/2";
+
+    private static final String VULNERABILITY_URL = COMPONENT_VERSION_URL + "/vulnerabilities";
+
+    private HubResponseService hubResponseService;
+
+    private VulnerabilityRequestService vulnerabilityRequestService;
+
+    private MetaService metaService;
+
+    private List<VulnerabilityView> vulnerabilityList;
+
+    @Before
+    public void init() throws Exception {
+        final ComponentVersionView compVersion = Mockito.mock(ComponentVersionView.class);
+        final VulnerabilityView vulnerability = new VulnerabilityView();
+        vulnerability.vulnerabilityName = "CVE-1";
+        vulnerability.severity = "HIGH";
+        vulnerabilityList = Collections.singletonList(vulnerability);
+        hubResponseService = Mockito.mock(HubResponseService.class);
+        vulnerabilityRequestService = Mockito.mock(VulnerabilityRequestService.class);
+        metaService = Mockito.mock(MetaService.class);
+        Mockito.when(hubResponseService.getItem(Mockito.anyString(), Mockito.eq(ComponentVersionView.class))).thenReturn(compVersion);
+        Mockito.when(metaService.getLinks(compVersion, MetaService.VULNERABILITIES_LINK)).thenReturn(Collections.singletonList(VULNERABILITY_URL));
+        Mockito.when(vulnerabilityRequestService.getComponentVersionVulnerabilities(VULNERABILITY_URL)).thenReturn(vulnerabilityList);
+    }
+
+    @Test
+    public void testConcurrentLookupOrderAndCoalescing() throws Exception {
+        final ComponentVulnerabilityCache cache = new ComponentVulnerabilityCache(hubResponseService, vulnerabilityRequestService, metaService,
+                ComponentVulnerabilityCache.DEFAULT_EXPIRE_MINUTES, ComponentVulnerabilityCache.DEFAULT_MAX_SIZE, 4);
+        final List<String> urlList = new ArrayList<>();
+        for (int index = 20; index > 0; index--) {
+            urlList.add(COMPONENT_VERSION_URL + index);
+            urlList.add(COMPONENT_VERSION_URL + index);
+        }
+        final Map<String, ComponentVulnerabilities> vulnerabilityMap = cache.getVulnerabilities(urlList);
+        assertEquals(20, vulnerabilityMap.size());
+        final List<String> expectedOrder = new ArrayList<>();
+        for (int index = 20; index > 0; index--) {
+            expectedOrder.add(COMPONENT_VERSION_URL + index);
+        }
+        assertEquals(expectedOrder, new ArrayList<>(vulnerabilityMap.keySet()));
+        assertEquals(20, cache.getStats().missCount());
+        Mockito.verify(vulnerabilityRequestService, Mockito.times(20)).getComponentVersionVulnerabilities(VULNERABILITY_URL);
+
+        cache.getVulnerabilities(Arrays.asList(COMPONENT_VERSION_URL + 1, COMPONENT_VERSION_URL + 2));
+        assertEquals(2, cache.getStats().hitCount());
+    }
+
+    @Test
+    public void testComponentResolvedOnce() throws Exception {
+        final ComponentVulnerabilityCache cache = new ComponentVulnerabilityCache(hubResponseService, vulnerabilityRequestService, metaService);
+        final ComponentVulnerabilities first = cache.getVulnerabilities(COMPONENT_VERSION_URL);
+        final ComponentVulnerabilities second = cache.getVulnerabilities(COMPONENT_VERSION_URL);
+        assertEquals(vulnerabilityList, first.getVulnerabilityList());
+        assertEquals(NotificationCategoryEnum.HIGH_VULNERABILITY, first.getCategory("CVE-1"));
+        assertNull(first.getCategory("CVE-2"));
+        assertSame(first, second);
+        assertEquals(1, cache.getStats().missCount());
+        assertEquals(1, cache.getStats().hitCount());
+        Mockito.verify(hubResponseService, Mockito.times(1)).getItem(COMPONENT_VERSION_URL, ComponentVersionView.class);
+        Mockito.verify(vulnerabilityRequestService, Mockito.times(1)).getComponentVersionVulnerabilities(VULNERABILITY_URL);
+    }
+
+    @Test
+    public void testInvalidateAll() throws Exception {
+        final ComponentVulnerabilityCache cache = new ComponentVulnerabilityCache(hubResponseService, vulnerabilityRequestService, metaService);
+        cache.getVulnerabilities(COMPONENT_VERSION_URL);
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        cache.getVulnerabilities(COMPONENT_VERSION_URL);
+        Mockito.verify(vulnerabilityRequestService, Mockito.times(2)).getComponentVersionVulnerabilities(VULNERABILITY_URL);
+    }
+}
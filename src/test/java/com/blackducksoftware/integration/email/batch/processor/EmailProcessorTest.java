@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.mock.MockLogger;
+import com.blackducksoftware.integration.email.mock.MockRestConnection;
+import com.blackducksoftware.integration.email.model.batch.ProjectData;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.VulnerabilityContentItem;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.model.view.components.VulnerabilitySourceQualifiedId;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.blackducksoftware.integration.hub.rest.RestConnection;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
+import com.blackducksoftware.integration.log.IntBufferedLogger;
+
+public class EmailProcessorTest {
+    private final ProcessorTestUtil testUtil = new ProcessorTestUtil();
+
+    private MetaService metaService;
+
+    private HubResponseService hubResponseService;
+
+    private VulnerabilityRequestService vulnerabilityRequestService;
+
+    private ComponentVulnerabilityCache componentVulnerabilityCache;
+
+    @Before
+    public void init() throws Exception {
+        final RestConnection restConnection = new MockRestConnection(new MockLogger(), null);
+        final HubServicesFactory factory = new HubServicesFactory(restConnection);
+        metaService = factory.createMetaService(new IntBufferedLogger());
+        hubResponseService = Mockito.mock(HubResponseService.class);
+        vulnerabilityRequestService = Mockito.mock(VulnerabilityRequestService.class);
+        componentVulnerabilityCache = new ComponentVulnerabilityCache(hubResponseService, vulnerabilityRequestService, metaService);
+    }
+
+    private SortedSet<NotificationContentItem> createNotifications() throws Exception {
+        final SortedSet<NotificationContentItem> notifications = new TreeSet<>();
+        final ComponentVersionView componentVersion = Mockito.mock(ComponentVersionView.class);
+        componentVersion.versionName = ProcessorTestUtil.VERSION;
+        notifications.add(testUtil.createPolicyViolation(new Date(), ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME,
+                ProcessorTestUtil.COMPONENT, componentVersion));
+        final List<VulnerabilitySourceQualifiedId> vulnerabilities = new ArrayList<>();
+        vulnerabilities.add(testUtil.createVulnerabilitySourceId(ProcessorTestUtil.VULN_SOURCE, ProcessorTestUtil.HIGH_VULN_ID));
+        final List<VulnerabilitySourceQualifiedId> emptyVulnSourceList = Collections.emptyList();
+        notifications.add(testUtil.createVulnerability(new Date(System.currentTimeMillis() + 1000), ProcessorTestUtil.PROJECT_NAME,
+                ProcessorTestUtil.PROJECT_VERSION_NAME, ProcessorTestUtil.COMPONENT, componentVersion, vulnerabilities, emptyVulnSourceList,
+                emptyVulnSourceList));
+        return notifications;
+    }
+
+    @Test
+    public void testPolicyTriggersSkipVulnerabilities() throws Exception {
+        final EmailProcessor processor = new EmailProcessor(componentVulnerabilityCache, metaService,
+                EnumSet.of(NotificationCategoryEnum.POLICY_VIOLATION));
+        final SortedSet<NotificationContentItem> notifications = processor.filterNotifications(createNotifications());
+        assertEquals(1, notifications.size());
+
+        final Collection<ProjectData> projectList = processor.process(notifications);
+        assertEquals(1, projectList.size());
+        assertEquals(EnumSet.of(NotificationCategoryEnum.POLICY_VIOLATION), projectList.iterator().next().getCategoryMap().keySet());
+        assertEquals(ProcessorTestUtil.PROJECT_VERSION_URL_PREFIX + ProcessorTestUtil.PROJECT_NAME + ProcessorTestUtil.PROJECT_VERSION_URL_SEGMENT
+                + ProcessorTestUtil.PROJECT_VERSION_NAME, projectList.iterator().next().getProjectVersionUrl());
+        Mockito.verifyZeroInteractions(hubResponseService, vulnerabilityRequestService);
+    }
+
+    @Test
+    public void testVulnerabilityTriggersSkipPolicies() throws Exception {
+        final EmailProcessor processor = new EmailProcessor(componentVulnerabilityCache, metaService,
+                EnumSet.of(NotificationCategoryEnum.HIGH_VULNERABILITY));
+        final SortedSet<NotificationContentItem> notifications = processor.filterNotifications(createNotifications());
+        assertEquals(1, notifications.size());
+        assertEquals(ProcessorTestUtil.COMPONENT, ((VulnerabilityContentItem) notifications.first()).getComponentName());
+    }
+
+    @Test
+    public void testAllTriggersKeepNotifications() throws Exception {
+        final EmailProcessor processor = new EmailProcessor(componentVulnerabilityCache, metaService);
+        final SortedSet<NotificationContentItem> notifications = createNotifications();
+        assertSame(notifications, processor.filterNotifications(notifications));
+    }
+}
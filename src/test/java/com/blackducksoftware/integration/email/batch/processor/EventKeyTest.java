@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class EventKeyTest {
+    @Test
+    public void testSameValuesSameKey() {
+        final EventKey key = EventKey.builder("policy").add(ProcessorTestUtil.COMPONENT_VERSION_URL).add(null).build();
+        final EventKey sameKey = EventKey.builder("policy").add(ProcessorTestUtil.COMPONENT_VERSION_URL).add(null).build();
+        assertEquals(key, sameKey);
+        assertEquals(key.hashCode(), sameKey.hashCode());
+        assertEquals(key.toString(), sameKey.toString());
+        assertEquals(32, key.toString().length());
+    }
+
+    @Test
+    public void testValuesDoNotShift() {
+        assertNotEquals(EventKey.builder("policy").add("ab").add("c").build(), EventKey.builder("policy").add("a").add("bc").build());
+        assertNotEquals(EventKey.builder("policy").add(null).add("a").build(), EventKey.builder("policy").add("a").add(null).build());
+        assertNotEquals(EventKey.builder("policy").add("a").build(), EventKey.builder("vulnerability").add("a").build());
+    }
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.blackducksoftware.integration.email.mock.MockLogger;
+import com.blackducksoftware.integration.email.mock.MockRestConnection;
+import com.blackducksoftware.integration.email.model.batch.ItemData;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.PolicyViolationContentItem;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.notification.processor.ItemTypeEnum;
+import com.blackducksoftware.integration.hub.notification.processor.MapProcessorCache;
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
+import com.blackducksoftware.integration.log.IntBufferedLogger;
+
+public class ItemMemoryTest {
+    private static final int EVENT_COUNT = 10;
+
+    private static final int BENCHMARK_EVENT_COUNT = 5000;
+
+    private final ProcessorTestUtil testUtil = new ProcessorTestUtil();
+
+    private PolicyViolationProcessor processor;
+
+    @Before
+    public void init() throws Exception {
+        final MetaService metaService = new HubServicesFactory(new MockRestConnection(new MockLogger(), null)).createMetaService(new IntBufferedLogger());
+        processor = new PolicyViolationProcessor(new MapProcessorCache(), metaService);
+    }
+
+    private List<Map<String, Object>> createEventDataSets(final int eventCount) throws Exception {
+        final List<Map<String, Object>> dataSets = new ArrayList<>(eventCount);
+        final Date createdAt = new Date();
+        for (int index = 0; index < eventCount; index++) {
+            final ComponentVersionView componentVersion = new ComponentVersionView();
+            componentVersion.versionName = ProcessorTestUtil.VERSION + index;
+            final PolicyViolationContentItem content = testUtil.createPolicyViolation(createdAt, ProcessorTestUtil.PROJECT_NAME + index,
+                    ProcessorTestUtil.PROJECT_VERSION_NAME + index, ProcessorTestUtil.COMPONENT + index, componentVersion);
+            final Map<String, Object> inputData = new HashMap<>();
+            inputData.put(PolicyViolationProcessor.POLICY_CONTENT_ITEM, content);
+            inputData.put(PolicyViolationProcessor.POLICY_RULE, content.getPolicyRuleList().get(0));
+            dataSets.add(processor.generateDataSet(inputData));
+        }
+        return dataSets;
+    }
+
+    private List<ItemData> createItems(final List<Map<String, Object>> dataSets) {
+        final List<ItemData> items = new ArrayList<>(dataSets.size());
+        for (final Map<String, Object> dataSet : dataSets) {
+            items.add(ItemData.fromDataSet(dataSet));
+        }
+        return items;
+    }
+
+    private long getUsedMemory() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int index = 0; index < 3; index++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void testItemValuesAndOrder() {
+        final Map<String, Object> dataSet = new HashMap<>();
+        dataSet.put(ItemTypeEnum.RULE.name(), "rule");
+        dataSet.put(ItemTypeEnum.COMPONENT.name(), "component");
+        dataSet.put(ItemTypeEnum.VERSION.name(), "1.0");
+        dataSet.put(ItemTypeEnum.PERSON.name(), "person");
+        dataSet.put(VulnerabilityCache.VULNERABILITY_ID_SET, new Object());
+        final ItemData item = ItemData.fromDataSet(dataSet);
+        assertEquals("rule", item.getRule());
+        assertEquals("person", item.getPerson());
+        assertEquals(4, item.getDataSet().size());
+        assertEquals("1.0", item.getDataSet().get(ItemTypeEnum.VERSION.name()));
+        final List<String> keys = new ArrayList<>(item.getDataSet().keySet());
+        assertEquals(ItemTypeEnum.PERSON.name(), keys.get(0));
+        assertEquals(ItemTypeEnum.COMPONENT.name(), keys.get(3));
+    }
+
+    @Test
+    public void testEventContentDropped() throws Exception {
+        final Set<String> itemKeys = new HashSet<>();
+        for (final ItemTypeEnum itemType : ItemTypeEnum.values()) {
+            itemKeys.add(itemType.name());
+        }
+        for (final Map<String, Object> dataSet : createEventDataSets(EVENT_COUNT)) {
+            final ItemData item = ItemData.fromDataSet(dataSet);
+            // an item keeps the item fields of the event and none of the notification content it was built from
+            assertTrue(item.getDataSet().size() < dataSet.size());
+            assertTrue(itemKeys.containsAll(item.getDataSet().keySet()));
+            for (final String key : item.getDataSet().keySet()) {
+                assertEquals(dataSet.get(key), item.getDataSet().get(key));
+            }
+        }
+    }
+
+    // the heap retained per event by its data set and by the typed item; only run with -Dbenchmark=true
+    @Test
+    public void testMemoryPerEvent() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        final long baseline = getUsedMemory();
+        List<Map<String, Object>> dataSets = createEventDataSets(BENCHMARK_EVENT_COUNT);
+        // what an item used to hold on to: the whole event data set including the notification content
+        final long dataSetBytes = getUsedMemory() - baseline;
+
+        final List<ItemData> items = createItems(dataSets);
+        dataSets = null;
+        final long itemBytes = getUsedMemory() - baseline;
+
+        System.out.println("Bytes per event with the event data set = " + dataSetBytes / BENCHMARK_EVENT_COUNT);
+        System.out.println("Bytes per event with a typed item       = " + itemBytes / BENCHMARK_EVENT_COUNT);
+        assertEquals(BENCHMARK_EVENT_COUNT, items.size());
+    }
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.mock.MockLogger;
+import com.blackducksoftware.integration.email.mock.MockRestConnection;
+import com.blackducksoftware.integration.email.model.batch.ProjectData;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
+import com.blackducksoftware.integration.log.IntBufferedLogger;
+
+public class OpenPolicyViolationStoreTest {
+    private static final String EVENT_KEY = "policy";
+
+    private final ProcessorTestUtil testUtil = new ProcessorTestUtil();
+
+    private File directory;
+
+    private File stateFile;
+
+    private MetaService metaService;
+
+    private ComponentVulnerabilityCache componentVulnerabilityCache;
+
+    @Before
+    public void init() throws Exception {
+        directory = Files.createTempDirectory("violations").toFile();
+        stateFile = new File(directory, "policy-violations.properties");
+        metaService = new HubServicesFactory(new MockRestConnection(new MockLogger(), null)).createMetaService(new IntBufferedLogger());
+        componentVulnerabilityCache = new ComponentVulnerabilityCache(Mockito.mock(HubResponseService.class),
+                Mockito.mock(VulnerabilityRequestService.class), metaService);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private Collection<ProjectData> processWindow(final OpenPolicyViolationStore violationStore, final NotificationContentItem notification)
+            throws Exception {
+        final SortedSet<NotificationContentItem> notifications = new TreeSet<>();
+        notifications.add(notification);
+        final EmailProcessor processor = new EmailProcessor(componentVulnerabilityCache, metaService, EmailProcessor.POLICY_CATEGORIES,
+                violationStore);
+        return processor.process(notifications);
+    }
+
+    private ComponentVersionView createComponentVersion() {
+        final ComponentVersionView componentVersion = Mockito.mock(ComponentVersionView.class);
+        componentVersion.versionName = ProcessorTestUtil.VERSION;
+        return componentVersion;
+    }
+
+    @Test
+    public void testClearingCancelsViolationOfEarlierWindow() throws Exception {
+        final OpenPolicyViolationStore violationStore = new OpenPolicyViolationStore(stateFile);
+        final NotificationContentItem violation = testUtil.createPolicyViolation(new Date(1000), ProcessorTestUtil.PROJECT_NAME,
+                ProcessorTestUtil.PROJECT_VERSION_NAME, ProcessorTestUtil.COMPONENT, createComponentVersion());
+        final NotificationContentItem cleared = testUtil.createPolicyCleared(new Date(2000), ProcessorTestUtil.PROJECT_NAME,
+                ProcessorTestUtil.PROJECT_VERSION_NAME, ProcessorTestUtil.COMPONENT, createComponentVersion());
+
+        final Collection<ProjectData> firstWindow = processWindow(violationStore, violation);
+        assertEquals(1, firstWindow.size());
+        assertTrue(firstWindow.iterator().next().getCategoryMap().containsKey(NotificationCategoryEnum.POLICY_VIOLATION));
+        violationStore.save();
+
+        // a later run reads the store back and every user processing the clearing gets it cancelled
+        final OpenPolicyViolationStore loadedStore = new OpenPolicyViolationStore(stateFile);
+        assertTrue(processWindow(loadedStore, cleared).isEmpty());
+        assertTrue(processWindow(loadedStore, cleared).isEmpty());
+
+        // without the store the clearing is reported on its own
+        final Collection<ProjectData> withoutStore = processWindow(null, cleared);
+        assertEquals(1, withoutStore.size());
+        assertTrue(withoutStore.iterator().next().getCategoryMap().containsKey(NotificationCategoryEnum.POLICY_VIOLATION_CLEARED));
+    }
+
+    @Test
+    public void testViolationState() {
+        final OpenPolicyViolationStore violationStore = new OpenPolicyViolationStore(stateFile);
+        assertFalse(violationStore.closeViolation(EVENT_KEY, new Date(500)));
+        violationStore.openViolation(EVENT_KEY, new Date(1000));
+        // a clearing from before the violation does not close it
+        assertFalse(violationStore.closeViolation(EVENT_KEY, new Date(900)));
+        assertTrue(violationStore.closeViolation(EVENT_KEY, new Date(2000)));
+        assertTrue(violationStore.closeViolation(EVENT_KEY, new Date(2000)));
+        assertFalse(violationStore.closeViolation(EVENT_KEY, new Date(3000)));
+        // raised again after the clearing
+        violationStore.openViolation(EVENT_KEY, new Date(4000));
+        assertTrue(violationStore.closeViolation(EVENT_KEY, new Date(5000)));
+
+        violationStore.prune(new Date(5000));
+        assertEquals(1, violationStore.size());
+        violationStore.prune(new Date(5001));
+        assertEquals(0, violationStore.size());
+    }
+
+    @Test
+    public void testSaveOnlyWhenChanged() throws Exception {
+        final OpenPolicyViolationStore violationStore = new OpenPolicyViolationStore(stateFile);
+        violationStore.save();
+        assertFalse(stateFile.exists());
+
+        violationStore.openViolation(EVENT_KEY, new Date(1000));
+        violationStore.save();
+        assertTrue(stateFile.delete());
+        // opening the same violation again and a prune that drops nothing change no state
+        violationStore.openViolation(EVENT_KEY, new Date(1000));
+        violationStore.prune(new Date(500));
+        violationStore.save();
+        assertFalse(stateFile.exists());
+
+        violationStore.closeViolation(EVENT_KEY, new Date(2000));
+        violationStore.save();
+        assertTrue(stateFile.exists());
+    }
+}
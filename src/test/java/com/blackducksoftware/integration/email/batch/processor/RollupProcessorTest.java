@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.mock.MockLogger;
+import com.blackducksoftware.integration.email.mock.MockRestConnection;
+import com.blackducksoftware.integration.email.model.DateRange;
+import com.blackducksoftware.integration.email.model.batch.CategoryData;
+import com.blackducksoftware.integration.email.model.batch.NotificationRollup;
+import com.blackducksoftware.integration.email.model.batch.ProjectData;
+import com.blackducksoftware.integration.email.model.batch.ProjectRollup;
+import com.blackducksoftware.integration.email.model.batch.VulnerabilityRollup;
+import com.blackducksoftware.integration.email.notifier.DailyRollupStore;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.blackducksoftware.integration.hub.rest.RestConnection;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
+import com.blackducksoftware.integration.log.IntBufferedLogger;
+
+public class RollupProcessorTest {
+    private enum Policy {
+        VIOLATION, CLEARED, OVERRIDE
+    }
+
+    private final ProcessorTestUtil testUtil = new ProcessorTestUtil();
+
+    private MetaService metaService;
+
+    private ComponentVulnerabilityCache componentVulnerabilityCache;
+
+    private RollupProcessor rollupProcessor;
+
+    private long time = 1000;
+
+    @Before
+    public void init() throws Exception {
+        final RestConnection restConnection = new MockRestConnection(new MockLogger(), null);
+        metaService = new HubServicesFactory(restConnection).createMetaService(new IntBufferedLogger());
+        componentVulnerabilityCache = new ComponentVulnerabilityCache(Mockito.mock(HubResponseService.class),
+                Mockito.mock(VulnerabilityRequestService.class), metaService);
+        rollupProcessor = new RollupProcessor(componentVulnerabilityCache, metaService);
+    }
+
+    private SortedSet<NotificationContentItem> createDay(final Policy... policies) throws Exception {
+        final ComponentVersionView componentVersion = Mockito.mock(ComponentVersionView.class);
+        componentVersion.versionName = ProcessorTestUtil.VERSION;
+        final SortedSet<NotificationContentItem> notifications = new TreeSet<>();
+        for (final Policy policy : policies) {
+            final Date createdAt = new Date(time++);
+            if (policy == Policy.VIOLATION) {
+                notifications.add(testUtil.createPolicyViolation(createdAt, ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME,
+                        ProcessorTestUtil.COMPONENT, componentVersion));
+            } else if (policy == Policy.CLEARED) {
+                notifications.add(testUtil.createPolicyCleared(createdAt, ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME,
+                        ProcessorTestUtil.COMPONENT, componentVersion));
+            } else {
+                notifications.add(testUtil.createPolicyOverride(createdAt, ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME,
+                        ProcessorTestUtil.COMPONENT, componentVersion));
+            }
+        }
+        return notifications;
+    }
+
+    private Map<NotificationCategoryEnum, Integer> countCategories(final Collection<ProjectData> projectList) {
+        final Map<NotificationCategoryEnum, Integer> counts = new EnumMap<>(NotificationCategoryEnum.class);
+        for (final ProjectData projectData : projectList) {
+            for (final Map.Entry<NotificationCategoryEnum, CategoryData> entry : projectData.getCategoryMap().entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().getItemCount());
+            }
+        }
+        return counts;
+    }
+
+    // the merged rollups of the days must match processing all of their notifications together
+    private void assertMergeMatchesProcessing(final List<SortedSet<NotificationContentItem>> days) throws Exception {
+        final SortedSet<NotificationContentItem> allNotifications = new TreeSet<>();
+        NotificationRollup windowRollup = null;
+        for (int index = 0; index < days.size(); index++) {
+            allNotifications.addAll(days.get(index));
+            final NotificationRollup dayRollup = rollupProcessor.createRollup("day" + index, days.get(index));
+            windowRollup = windowRollup == null ? dayRollup : windowRollup.merge(dayRollup);
+        }
+        final EmailProcessor processor = new EmailProcessor(componentVulnerabilityCache, metaService, EmailProcessor.POLICY_CATEGORIES);
+        final Map<NotificationCategoryEnum, Integer> expected = countCategories(processor.process(allNotifications));
+        final List<ProjectData> rollupData = new ArrayList<>();
+        for (final ProjectRollup project : windowRollup.getProjects().values()) {
+            final ProjectData projectData = rollupProcessor.createProjectData(project, EmailProcessor.POLICY_CATEGORIES);
+            if (projectData != null) {
+                rollupData.add(projectData);
+            }
+        }
+        assertEquals(expected, countCategories(rollupData));
+    }
+
+    @Test
+    public void testPolicyCancellationAcrossDays() throws Exception {
+        assertMergeMatchesProcessing(Arrays.asList(createDay(Policy.VIOLATION), createDay(Policy.CLEARED)));
+        assertMergeMatchesProcessing(Arrays.asList(createDay(Policy.VIOLATION), createDay(Policy.OVERRIDE)));
+        assertMergeMatchesProcessing(Arrays.asList(createDay(Policy.CLEARED), createDay(Policy.VIOLATION)));
+        assertMergeMatchesProcessing(Arrays.asList(createDay(Policy.VIOLATION, Policy.CLEARED), createDay(Policy.OVERRIDE)));
+        assertMergeMatchesProcessing(Arrays.asList(createDay(Policy.OVERRIDE), createDay(Policy.CLEARED), createDay(Policy.VIOLATION)));
+        assertMergeMatchesProcessing(Arrays.asList(createDay(Policy.VIOLATION), createDay(), createDay(Policy.VIOLATION, Policy.CLEARED)));
+        assertMergeMatchesProcessing(Arrays.asList(createDay(Policy.CLEARED, Policy.VIOLATION), createDay(Policy.OVERRIDE, Policy.VIOLATION)));
+    }
+
+    @Test
+    public void testVulnerabilityMerge() {
+        final VulnerabilityRollup firstDay = new VulnerabilityRollup("url", Collections.emptyMap(), new HashSet<>(Arrays.asList("a", "b")),
+                new HashSet<>());
+        final VulnerabilityRollup secondDay = new VulnerabilityRollup("url", Collections.emptyMap(), new HashSet<>(Arrays.asList("c")),
+                new HashSet<>(Arrays.asList("a")));
+        final VulnerabilityRollup merged = firstDay.merge(secondDay);
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), merged.getAddedIds());
+        assertEquals(new HashSet<>(Arrays.asList("a")), merged.getRemovedIds());
+    }
+
+    @Test
+    public void testStoredRollupMerges() throws Exception {
+        final File directory = Files.createTempDirectory("rollups").toFile();
+        try {
+            final DailyRollupStore rollupStore = new DailyRollupStore(directory, ZoneId.systemDefault());
+            final LocalDate day = LocalDate.now().minusDays(2);
+            rollupStore.putRollup(day, rollupProcessor.createRollup(day.toString(), createDay(Policy.VIOLATION)));
+            final NotificationRollup storedRollup = rollupStore.getRollup(day);
+            final NotificationRollup windowRollup = storedRollup.merge(rollupProcessor.createRollup("next", createDay(Policy.CLEARED)));
+            for (final ProjectRollup project : windowRollup.getProjects().values()) {
+                assertNull(rollupProcessor.createProjectData(project, EnumSet.allOf(NotificationCategoryEnum.class)));
+            }
+            assertEquals(Arrays.asList(day.minusDays(1), day), rollupStore.getDays(new DateRange(
+                    rollupStore.getDayRange(day.minusDays(1)).getStart(), rollupStore.getDayRange(day).getEnd())));
+            rollupStore.deleteBefore(day.plusDays(1));
+            assertNull(rollupStore.getRollup(day));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
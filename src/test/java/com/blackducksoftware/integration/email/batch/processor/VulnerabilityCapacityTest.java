@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.batch.processor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.mock.MockLogger;
+import com.blackducksoftware.integration.email.mock.MockRestConnection;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.VulnerabilityContentItem;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.model.view.VulnerabilityView;
+import com.blackducksoftware.integration.hub.model.view.components.VulnerabilitySourceQualifiedId;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.blackducksoftware.integration.hub.notification.processor.event.NotificationEvent;
+import com.blackducksoftware.integration.hub.rest.RestConnection;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+import com.google.gson.Gson;
+
+public class VulnerabilityCapacityTest {
+    // scanning every vulnerability for each id would be 0.9 billion comparisons per component version
+    private static final int VULNERABILITY_COUNT = 10000;
+
+    private static final int COMPONENT_COUNT = 50;
+
+    private final ProcessorTestUtil testUtil = new ProcessorTestUtil();
+
+    private Gson gson;
+
+    @Before
+    public void init() throws Exception {
+        final RestConnection restConnection = new MockRestConnection(new MockLogger(), null);
+        gson = restConnection.gson;
+    }
+
+    private List<VulnerabilitySourceQualifiedId> createVulnerabilityList() {
+        final List<VulnerabilitySourceQualifiedId> list = new ArrayList<>(VULNERABILITY_COUNT * 3);
+        for (int index = 0; index < VULNERABILITY_COUNT; index++) {
+            list.add(testUtil.createVulnerabilitySourceId(ProcessorTestUtil.VULN_SOURCE, ProcessorTestUtil.HIGH_VULN_ID + index));
+            list.add(testUtil.createVulnerabilitySourceId(ProcessorTestUtil.VULN_SOURCE, ProcessorTestUtil.MEDIUM_VULN_ID + index));
+            list.add(testUtil.createVulnerabilitySourceId(ProcessorTestUtil.VULN_SOURCE, ProcessorTestUtil.LOW_VULN_ID + index));
+        }
+        return list;
+    }
+
+    private VulnerabilityCache createVulnerabilityCache(final List<VulnerabilityView> vulnerabilityList) throws Exception {
+        final ComponentVersionView compVersion = Mockito.mock(ComponentVersionView.class);
+        final VulnerabilityRequestService vulnerabilityRequestService = Mockito.mock(VulnerabilityRequestService.class);
+        final HubResponseService hubResponseService = Mockito.mock(HubResponseService.class);
+        final MetaService metaService = Mockito.mock(MetaService.class);
+        final List<String> linkList = new ArrayList<>();
+        linkList.add(ProcessorTestUtil.COMPONENT_VERSION_URL);
+        Mockito.when(hubResponseService.getItem(Mockito.anyString(), Mockito.eq(ComponentVersionView.class))).thenReturn(compVersion);
+        Mockito.when(metaService.getLinks(compVersion, MetaService.VULNERABILITIES_LINK)).thenReturn(linkList);
+        Mockito.when(vulnerabilityRequestService.getComponentVersionVulnerabilities(Mockito.anyString())).thenReturn(vulnerabilityList);
+        return new VulnerabilityCache(hubResponseService, vulnerabilityRequestService, metaService);
+    }
+
+    private NotificationEvent createEvent(final String eventKey, final List<VulnerabilitySourceQualifiedId> vulnerabilitySourceList) {
+        final VulnerabilityContentItem content = Mockito.mock(VulnerabilityContentItem.class);
+        Mockito.when(content.getComponentVersionUrl()).thenReturn(ProcessorTestUtil.COMPONENT_VERSION_URL);
+        final Set<String> vulnIdSet = new HashSet<>();
+        for (final VulnerabilitySourceQualifiedId vulnerabilitySource : vulnerabilitySourceList) {
+            vulnIdSet.add(vulnerabilitySource.vulnerabilityId);
+        }
+        final Map<String, Object> dataSet = new HashMap<>();
+        dataSet.put(NotificationEvent.DATA_SET_KEY_NOTIFICATION_CONTENT, content);
+        dataSet.put(VulnerabilityCache.VULNERABILITY_ID_SET, vulnIdSet);
+        return new NotificationEvent(eventKey, NotificationCategoryEnum.VULNERABILITY, dataSet);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(timeout = 30000)
+    public void testVulnerabilityClassification() throws Exception {
+        System.out.println("Start of vulnerability classification.");
+        final List<VulnerabilitySourceQualifiedId> vulnerabilitySourceList = createVulnerabilityList();
+        final List<VulnerabilityView> vulnerabilityList = testUtil.createVulnerabiltyItemList(vulnerabilitySourceList, gson);
+        final VulnerabilityCache cache = createVulnerabilityCache(vulnerabilityList);
+        for (int index = 0; index < COMPONENT_COUNT; index++) {
+            cache.addEvent(createEvent("event" + index, vulnerabilitySourceList));
+        }
+        final long startTime = System.currentTimeMillis();
+        final Collection<NotificationEvent> events = cache.getEvents();
+        final long endTime = System.currentTimeMillis();
+        final long diff = endTime - startTime;
+        System.out.println("Start Time (ms) = " + startTime);
+        System.out.println("End Time (ms)   = " + endTime);
+        System.out.println("Diff (ms)       = " + diff);
+
+        assertEquals(COMPONENT_COUNT * 3, events.size());
+        final Map<NotificationCategoryEnum, Integer> countMap = new EnumMap<>(NotificationCategoryEnum.class);
+        for (final NotificationEvent event : events) {
+            final Set<String> vulnIdSet = (Set<String>) event.getDataSet().get(VulnerabilityCache.VULNERABILITY_ID_SET);
+            assertEquals(VULNERABILITY_COUNT, vulnIdSet.size());
+            final Integer count = countMap.get(event.getCategoryType());
+            countMap.put(event.getCategoryType(), count == null ? 1 : count + 1);
+        }
+        assertEquals(Integer.valueOf(COMPONENT_COUNT), countMap.get(NotificationCategoryEnum.HIGH_VULNERABILITY));
+        assertEquals(Integer.valueOf(COMPONENT_COUNT), countMap.get(NotificationCategoryEnum.MEDIUM_VULNERABILITY));
+        assertEquals(Integer.valueOf(COMPONENT_COUNT), countMap.get(NotificationCategoryEnum.LOW_VULNERABILITY));
+    }
+}
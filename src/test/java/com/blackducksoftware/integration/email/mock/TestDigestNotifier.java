@@ -32,6 +32,7 @@ import com.blackducksoftware.integration.email.extension.config.ExtensionInfo;
 import com.blackducksoftware.integration.email.model.DateRange;
 import com.blackducksoftware.integration.email.model.ExtensionProperties;
 import com.blackducksoftware.integration.email.notifier.AbstractDigestNotifier;
+import com.blackducksoftware.integration.email.notifier.DigestResources;
 import com.blackducksoftware.integration.email.service.EmailMessagingService;
 import com.blackducksoftware.integration.hub.rest.RestConnection;
 import com.blackducksoftware.integration.hub.service.HubServicesFactory;
@@ -44,8 +45,9 @@ public class TestDigestNotifier extends AbstractDigestNotifier {
     private final String initialStartDate;
 
     public TestDigestNotifier(final ExtensionProperties extensionProperties,
-            final EmailMessagingService emailMessagingService, final HubServicesFactory hubServicesFactory, final ExtensionInfo extensionInfo) {
-        super(extensionProperties, emailMessagingService, hubServicesFactory, extensionInfo);
+            final EmailMessagingService emailMessagingService, final HubServicesFactory hubServicesFactory, final ExtensionInfo extensionInfo,
+            final DigestResources digestResources) {
+        super(extensionProperties, emailMessagingService, hubServicesFactory, extensionInfo, digestResources);
         lastRunPath = getExtensionProperties().getNotifierVariableProperties()
                 .get(getNotifierPropertyKey() + ".lastrun.file");
         initialStartDate = getExtensionProperties().getNotifierVariableProperties()
@@ -104,7 +104,7 @@ public class TestEmailEngine extends EmailEngine {
     public NotifierManager createNotifierManager() {
         final NotifierManager manager = new NotifierManager();
         final TestDigestNotifier digestNotifier = new TestDigestNotifier(getExtensionProperties(), getEmailMessagingService(), getHubServicesFactory(),
-                getExtensionInfoData());
+                getExtensionInfoData(), getDigestResources());
         manager.attach(digestNotifier);
         return manager;
     }
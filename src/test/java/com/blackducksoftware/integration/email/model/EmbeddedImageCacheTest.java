@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeUtility;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EmbeddedImageCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testImageLoadedOnce() throws Exception {
+        final File image = folder.newFile("logo.png");
+        FileUtils.writeByteArrayToFile(image, new byte[] { 1, 2, 3, 4 });
+        final EmbeddedImageCache cache = new EmbeddedImageCache();
+        assertSame(cache.getImage(image.getAbsolutePath()), cache.getImage(image.getAbsolutePath()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testImageReloadedWhenChanged() throws Exception {
+        final File image = folder.newFile("logo.png");
+        FileUtils.writeByteArrayToFile(image, new byte[] { 1, 2, 3, 4 });
+        final EmbeddedImageCache cache = new EmbeddedImageCache(EmbeddedImageCache.DEFAULT_MAX_BYTES, 0);
+        final EmbeddedImageCache.EmbeddedImage first = cache.getImage(image.getAbsolutePath());
+        assertSame(first, cache.getImage(image.getAbsolutePath()));
+
+        FileUtils.writeByteArrayToFile(image, new byte[] { 5, 6, 7, 8, 9 });
+        image.setLastModified(first.getLastModified() + 2000);
+        final EmbeddedImageCache.EmbeddedImage second = cache.getImage(image.getAbsolutePath());
+        assertNotSame(first, second);
+        assertArrayEquals(new byte[] { 5, 6, 7, 8, 9 }, decode(cache.createBodyPart(image.getAbsolutePath(), "<logo>")));
+    }
+
+    @Test
+    public void testBodyPartDecodesToImage() throws Exception {
+        final byte[] bytes = new byte[1000];
+        for (int index = 0; index < bytes.length; index++) {
+            bytes[index] = (byte) index;
+        }
+        final File image = folder.newFile("logo.png");
+        FileUtils.writeByteArrayToFile(image, bytes);
+        final EmbeddedImageCache cache = new EmbeddedImageCache();
+        final MimeBodyPart bodyPart = cache.createBodyPart(image.getAbsolutePath(), "<logo@blackducksoftware.com>");
+        assertEquals("<logo@blackducksoftware.com>", bodyPart.getContentID());
+        assertArrayEquals(bytes, decode(bodyPart));
+    }
+
+    @Test(expected = MessagingException.class)
+    public void testMissingImage() throws Exception {
+        new EmbeddedImageCache().createBodyPart(new File(folder.getRoot(), "missing.png").getAbsolutePath(), "<logo>");
+    }
+
+    private byte[] decode(final MimeBodyPart bodyPart) throws Exception {
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        bodyPart.getDataHandler().writeTo(encoded);
+        try (InputStream decoded = MimeUtility.decode(new ByteArrayInputStream(encoded.toByteArray()), "base64")) {
+            return IOUtils.toByteArray(decoded);
+        }
+    }
+}
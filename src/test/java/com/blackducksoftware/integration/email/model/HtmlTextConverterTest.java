@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.jsoup.Jsoup;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class HtmlTextConverterTest {
+    private final HtmlTextConverter converter = new HtmlTextConverter();
+
+    @Test
+    public void testTagsRemovedAndBlocksBroken() {
+        final String html = "<html><body><div>BLACK<span>DUCK</span></div><p>first   line</p><br/>second\n\t line</body></html>";
+        assertEquals("BLACKDUCK\n\nfirst line\n\nsecond line", converter.convert(html));
+    }
+
+    @Test
+    public void testEntitiesDecoded() {
+        assertEquals("a & b < c > d \"e\" 'f' g A B & h", converter.convert("a &amp; b &lt; c &gt; d &quot;e&quot; &#39;f&#39; g&nbsp;&#65; &#x42; & h"));
+    }
+
+    @Test
+    public void testScriptAndStyleSkipped() {
+        final String html = "<html><head><title>t</title><style>p { color: red; }</style></head><body><SCRIPT>var a = '<p>';</SCRIPT>text</body></html>";
+        final String text = converter.convert(html);
+        assertEquals("text", text);
+    }
+
+    @Test
+    public void testUnterminatedMarkup() {
+        assertEquals("before", converter.convert("before<div class=\"a"));
+        assertEquals("a &unknown; b", converter.convert("a &unknown; b"));
+    }
+
+    @Test
+    public void testDigestMatchesJsoupText() {
+        final String html = createDigestHtml(200, 25);
+        final String parsed = Jsoup.parse(html).text();
+        final String stripped = converter.convert(html);
+        assertTrue(stripped.contains("Rule: rule 199-24"));
+        assertFalse(stripped.contains("<div"));
+        // both keep the same words, the stripper just keeps the line structure
+        assertEquals(parsed.replaceAll("\\s+", " ").trim(), stripped.replaceAll("\\s+", " ").trim());
+    }
+
+    // compares the cost of the Jsoup parse with the stripper; only run with -Dbenchmark=true
+    @Test
+    public void testDigestBenchmark() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        final String html = createDigestHtml(200, 25);
+        final int iterations = 20;
+        long start = System.nanoTime();
+        for (int index = 0; index < iterations; index++) {
+            Jsoup.parse(html).text();
+        }
+        final long parseNanos = (System.nanoTime() - start) / iterations;
+        start = System.nanoTime();
+        for (int index = 0; index < iterations; index++) {
+            converter.convert(html);
+        }
+        final long stripNanos = (System.nanoTime() - start) / iterations;
+        System.out.println(String.format("html size %d chars, jsoup parse: %d us, strip: %d us", html.length(), parseNanos / 1000,
+                stripNanos / 1000));
+    }
+
+    private String createDigestHtml(final int projectCount, final int itemCount) {
+        final StringBuilder html = new StringBuilder("<html><body style=\"margin:1cm;width:620px;\">");
+        html.append("<div style=\"display:inline-block;width:100%;\"><span>BLACK</span><span>DUCK</span></div>");
+        for (int project = 0; project < projectCount; project++) {
+            html.append("<div style=\"background: #DDDDDD;margin:0px;padding-left: 15px;\">");
+            html.append("<div style=\"font-weight: bold;\">project ").append(project).append(" &gt; 1.0</div>");
+            html.append("<div style=\"font-weight: bold;\">").append(itemCount).append(" Policy Violations</div>");
+            for (int item = 0; item < itemCount; item++) {
+                html.append("<div><div style=\"font-family: monospace;display: inline-block;\">Rule: rule ").append(project).append('-')
+                        .append(item).append("</div>");
+                html.append("<div style=\"font-family: monospace;display: inline-block;\">Component: component &amp; ").append(item)
+                        .append("</div></div>");
+            }
+            html.append("</div>");
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+}
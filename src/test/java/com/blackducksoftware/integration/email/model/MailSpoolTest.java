@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MailSpoolTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] createContent(final int index) {
+        return ("message " + index).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSpoolSurvivesRestart() throws Exception {
+        final File directory = folder.newFolder("spool");
+        final MailSpool spool = new MailSpool(directory);
+        final SpooledMail first = spool.append(createContent(1));
+        spool.append(createContent(2));
+        spool.acknowledge(first);
+        assertEquals(1, spool.getDepth());
+        spool.close();
+
+        final MailSpool reopened = new MailSpool(directory);
+        final List<SpooledMail> pendingMail = reopened.getPendingMail();
+        assertEquals(1, pendingMail.size());
+        assertArrayEquals(createContent(2), reopened.read(pendingMail.get(0)));
+        assertTrue(reopened.getOldestAgeMillis() >= 0);
+        final SpooledMail third = reopened.append(createContent(3));
+        assertTrue(third.getId() > pendingMail.get(0).getId());
+        reopened.close();
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsDeleted() throws Exception {
+        final File directory = folder.newFolder("spool");
+        final MailSpool spool = new MailSpool(directory, 64);
+        for (int index = 0; index < 10; index++) {
+            spool.acknowledge(spool.append(createContent(index)));
+        }
+        assertEquals(0, spool.getDepth());
+        assertEquals(0, spool.getOldestAgeMillis());
+        assertEquals(1, directory.listFiles().length);
+        spool.close();
+    }
+
+    @Test
+    public void testAcknowledgedAcrossRotation() throws Exception {
+        final File directory = folder.newFolder("spool");
+        final MailSpool spool = new MailSpool(directory, 64);
+        final SpooledMail first = spool.append(createContent(1));
+        spool.append(createContent(2));
+        // the ack of the first message lands in the second segment, next to the third message
+        spool.acknowledge(first);
+        final SpooledMail third = spool.append(createContent(3));
+        spool.acknowledge(third);
+        assertEquals(1, spool.getDepth());
+        spool.close();
+
+        final MailSpool reopened = new MailSpool(directory, 64);
+        final List<SpooledMail> pendingMail = reopened.getPendingMail();
+        assertEquals(1, pendingMail.size());
+        assertArrayEquals(createContent(2), reopened.read(pendingMail.get(0)));
+        reopened.acknowledge(pendingMail.get(0));
+        reopened.close();
+
+        final MailSpool drained = new MailSpool(directory, 64);
+        assertEquals(0, drained.getDepth());
+        assertEquals(1, directory.listFiles().length);
+        drained.close();
+    }
+
+    @Test
+    public void testIncompleteRecordIgnored() throws Exception {
+        final File directory = folder.newFolder("spool");
+        final MailSpool spool = new MailSpool(directory);
+        spool.append(createContent(1));
+        spool.close();
+        final File segment = directory.listFiles()[0];
+        try (FileOutputStream output = new FileOutputStream(segment, true)) {
+            output.write(new byte[] { 1, 0, 0, 0 });
+        }
+
+        final MailSpool reopened = new MailSpool(directory);
+        assertEquals(1, reopened.getDepth());
+        assertArrayEquals(createContent(1), reopened.read(reopened.getPendingMail().get(0)));
+        reopened.close();
+    }
+}
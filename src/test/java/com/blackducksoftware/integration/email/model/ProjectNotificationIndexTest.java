@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.hub.dataservice.model.ProjectVersionModel;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.PolicyViolationContentItem;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.model.view.PolicyRuleView;
+
+public class ProjectNotificationIndexTest {
+    private static final String PROJECT_URL_1 = "http://a.hub.server/api/projects/project1";
+
+    private static final String PROJECT_URL_2 = "http://a.hub.server/api/projects/project2";
+
+    private static final String PROJECT_URL_3 = "http://a.hub.server/api/projects/project3";
+
+    private NotificationContentItem createNotification(final Date createdAt, final String projectUrl, final String versionName) throws Exception {
+        final ProjectVersionModel projectVersion = new ProjectVersionModel();
+        projectVersion.setProjectName(projectUrl);
+        projectVersion.setProjectVersionName(versionName);
+        projectVersion.setUrl(projectUrl + ProjectNotificationIndex.VERSIONS_URL_SEGMENT + versionName);
+        final ComponentVersionView componentVersion = Mockito.mock(ComponentVersionView.class);
+        componentVersion.versionName = "1.0";
+        final List<PolicyRuleView> policyRuleList = new ArrayList<>();
+        return new PolicyViolationContentItem(createdAt, projectVersion, "component", componentVersion, "http://a.hub.server/api/components/c",
+                "http://a.hub.server/api/components/c/versions/v", policyRuleList, "");
+    }
+
+    private ProjectNotificationIndex createIndex() throws Exception {
+        final long now = System.currentTimeMillis();
+        final List<NotificationContentItem> notifications = new ArrayList<>();
+        notifications.add(createNotification(new Date(now + 1), PROJECT_URL_1, "v1"));
+        notifications.add(createNotification(new Date(now + 2), PROJECT_URL_1, "v2"));
+        notifications.add(createNotification(new Date(now + 3), PROJECT_URL_1, "v2"));
+        notifications.add(createNotification(new Date(now + 4), PROJECT_URL_2, "v1"));
+        return new ProjectNotificationIndex(notifications);
+    }
+
+    @Test
+    public void testIndexCounts() throws Exception {
+        final ProjectNotificationIndex index = createIndex();
+        assertEquals(4, index.getNotificationCount());
+        assertEquals(3, index.getProjectVersionCount());
+    }
+
+    @Test
+    public void testProjectUrl() {
+        assertEquals(PROJECT_URL_1, ProjectNotificationIndex.getProjectUrl(PROJECT_URL_1 + "/versions/abc"));
+        assertEquals(PROJECT_URL_1, ProjectNotificationIndex.getProjectUrl(PROJECT_URL_1));
+        assertEquals("", ProjectNotificationIndex.getProjectUrl(null));
+    }
+
+    @Test
+    public void testUserSlice() throws Exception {
+        final ProjectNotificationIndex index = createIndex();
+        assertEquals(3, index.getNotifications(Collections.singleton(PROJECT_URL_1)).size());
+        assertEquals(1, index.getNotifications(Collections.singleton(PROJECT_URL_2)).size());
+        assertEquals(4, index.getNotifications(Arrays.asList(PROJECT_URL_1, PROJECT_URL_2, PROJECT_URL_3)).size());
+        assertTrue(index.getNotifications(Collections.singleton(PROJECT_URL_3)).isEmpty());
+        assertTrue(index.getNotifications(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testProjectVersionSlice() throws Exception {
+        final ProjectNotificationIndex index = createIndex();
+        final SortedSet<NotificationContentItem> notifications = index.getProjectVersionNotifications(PROJECT_URL_1 + "/versions/v2");
+        assertEquals(2, notifications.size());
+        assertTrue(index.getProjectVersionNotifications(PROJECT_URL_3 + "/versions/v1").isEmpty());
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ProjectSubscriptionIndexTest {
+    private static final String PROJECT_1 = "http://hub/api/projects/1";
+
+    private static final String PROJECT_2 = "http://hub/api/projects/2";
+
+    private static final String USER_1 = "http://hub/api/users/1";
+
+    private static final String USER_2 = "http://hub/api/users/2";
+
+    @Test
+    public void testSubscriptionsByProjectVersion() {
+        final ProjectSubscriptionIndex index = new ProjectSubscriptionIndex();
+        index.updateUser(USER_1, Arrays.asList(PROJECT_1, PROJECT_2));
+        index.updateUser(USER_2, Collections.singletonList(PROJECT_1));
+
+        assertTrue(index.isSubscribed(USER_1, PROJECT_2 + "/versions/5"));
+        assertFalse(index.isSubscribed(USER_2, PROJECT_2 + "/versions/5"));
+        assertEquals(new HashSet<>(Arrays.asList(USER_1, USER_2)), index.getSubscribers(PROJECT_1 + "/versions/1"));
+        assertTrue(index.getSubscribers("http://hub/api/projects/3/versions/1").isEmpty());
+    }
+
+    @Test
+    public void testUserUpdatedIncrementally() {
+        final ProjectSubscriptionIndex index = new ProjectSubscriptionIndex();
+        index.updateUser(USER_1, Arrays.asList(PROJECT_1, PROJECT_2));
+        index.updateUser(USER_1, Collections.singletonList(PROJECT_2));
+        assertFalse(index.isSubscribed(USER_1, PROJECT_1 + "/versions/1"));
+        assertTrue(index.isSubscribed(USER_1, PROJECT_2 + "/versions/1"));
+        assertEquals(1, index.getProjectCount());
+
+        index.updateUser(USER_2, Collections.singletonList(PROJECT_1));
+        index.retainUsers(Collections.singletonList(USER_2));
+        assertFalse(index.hasUser(USER_1));
+        assertEquals(1, index.getUserCount());
+        assertEquals(Collections.singleton(USER_2), index.getSubscribers(PROJECT_1));
+
+        index.removeUser(USER_2);
+        assertEquals(0, index.getProjectCount());
+    }
+
+    @Test
+    public void testManyUsersAndProjects() {
+        final ProjectSubscriptionIndex index = new ProjectSubscriptionIndex();
+        final int userCount = 5000;
+        final int projectCount = 2000;
+        for (int user = 0; user < userCount; user++) {
+            final List<String> projectUrls = new ArrayList<>();
+            for (int project = 0; project < 20; project++) {
+                projectUrls.add("http://hub/api/projects/" + ((user + project * 97) % projectCount));
+            }
+            index.updateUser("user" + user, projectUrls);
+        }
+        int subscriptions = 0;
+        for (int project = 0; project < projectCount; project++) {
+            subscriptions += index.getSubscribers("http://hub/api/projects/" + project + "/versions/1").size();
+        }
+        assertEquals(projectCount, index.getProjectCount());
+        assertEquals(userCount * 20, subscriptions);
+    }
+}
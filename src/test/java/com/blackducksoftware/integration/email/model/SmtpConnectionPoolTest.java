@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.NoSuchProviderException;
+import javax.mail.Provider;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.model.SmtpConnectionPool.PooledTransport;
+
+public class SmtpConnectionPoolTest {
+    private final Session session = Session.getInstance(new Properties());
+
+    // connects without a server so a new transport can be opened in a test
+    public static class LocalTransport extends Transport {
+        public LocalTransport(final Session session, final URLName urlName) {
+            super(session, urlName);
+        }
+
+        @Override
+        protected boolean protocolConnect(final String host, final int port, final String user, final String password) {
+            return true;
+        }
+
+        @Override
+        public void sendMessage(final Message message, final Address[] addresses) {
+        }
+    }
+
+    private Session createLocalSession() throws NoSuchProviderException {
+        final Session localSession = Session.getInstance(new Properties());
+        localSession.setProvider(new Provider(Provider.Type.TRANSPORT, "smtp", LocalTransport.class.getName(), "test", null));
+        return localSession;
+    }
+
+    private Transport createConnectedTransport() {
+        final Transport transport = Mockito.mock(Transport.class);
+        Mockito.when(transport.isConnected()).thenReturn(true);
+        return transport;
+    }
+
+    private ExtensionProperties createProperties() {
+        final Properties properties = new Properties();
+        properties.setProperty(ExtensionProperties.JAVAMAIL_CONFIG_PREFIX + ExtensionProperties.JAVAMAIL_HOST_KEY, "smtp.a.domain.com");
+        properties.setProperty(ExtensionProperties.JAVAMAIL_CONFIG_PREFIX + ExtensionProperties.JAVAMAIL_PORT_KEY, "25");
+        return new ExtensionProperties(properties);
+    }
+
+    @Test
+    public void testReleasedTransportReused() throws Exception {
+        final SmtpConnectionPool pool = new SmtpConnectionPool();
+        final Transport transport = createConnectedTransport();
+        final PooledTransport pooledTransport = new PooledTransport(session, transport);
+        assertFalse(pooledTransport.isReused());
+        pool.release(pooledTransport);
+        assertEquals(1, pool.getIdleCount());
+
+        final PooledTransport borrowed = pool.borrow(createProperties(), session);
+        assertSame(pooledTransport, borrowed);
+        assertTrue(borrowed.isReused());
+        assertEquals(0, pool.getIdleCount());
+        pool.shutDown();
+    }
+
+    @Test
+    public void testMaxMessagesClosesTransport() throws Exception {
+        final SmtpConnectionPool pool = new SmtpConnectionPool(2, SmtpConnectionPool.DEFAULT_MAX_IDLE, SmtpConnectionPool.DEFAULT_IDLE_MILLIS);
+        final Transport transport = createConnectedTransport();
+        final PooledTransport pooledTransport = new PooledTransport(session, transport);
+        pool.release(pooledTransport);
+        pool.borrow(createProperties(), session);
+        pool.release(pooledTransport);
+        assertEquals(0, pool.getIdleCount());
+        Mockito.verify(transport).close();
+        pool.shutDown();
+    }
+
+    @Test
+    public void testMaxIdle() throws Exception {
+        final SmtpConnectionPool pool = new SmtpConnectionPool(SmtpConnectionPool.DEFAULT_MAX_MESSAGES, 1, SmtpConnectionPool.DEFAULT_IDLE_MILLIS);
+        final Transport extra = Mockito.mock(Transport.class);
+        pool.release(new PooledTransport(session, Mockito.mock(Transport.class)));
+        pool.release(new PooledTransport(session, extra));
+        assertEquals(1, pool.getIdleCount());
+        Mockito.verify(extra).close();
+        pool.shutDown();
+    }
+
+    @Test
+    public void testSessionsKeptApart() throws Exception {
+        final SmtpConnectionPool pool = new SmtpConnectionPool();
+        final PooledTransport pooledTransport = new PooledTransport(session, createConnectedTransport());
+        pool.release(pooledTransport);
+
+        final Session otherSession = createLocalSession();
+        final PooledTransport borrowed = pool.borrow(createProperties(), otherSession);
+        assertNotSame(pooledTransport, borrowed);
+        assertSame(otherSession, borrowed.getSession());
+        assertEquals(1, pool.getIdleCount());
+        pool.shutDown();
+    }
+
+    @Test
+    public void testDroppedConnectionReplaced() throws Exception {
+        // every reused connection is checked
+        final SmtpConnectionPool pool = new SmtpConnectionPool(SmtpConnectionPool.DEFAULT_MAX_MESSAGES, SmtpConnectionPool.DEFAULT_MAX_IDLE,
+                SmtpConnectionPool.DEFAULT_IDLE_MILLIS, 0);
+        final Session localSession = createLocalSession();
+        final Transport dropped = Mockito.mock(Transport.class);
+        final PooledTransport pooledTransport = new PooledTransport(localSession, dropped);
+        pool.release(pooledTransport);
+
+        final PooledTransport borrowed = pool.borrow(createProperties(), localSession);
+        assertNotSame(pooledTransport, borrowed);
+        assertTrue(borrowed.getTransport().isConnected());
+        Mockito.verify(dropped).close();
+        assertEquals(0, pool.getIdleCount());
+        pool.shutDown();
+    }
+
+    @Test
+    public void testRecentConnectionNotChecked() throws Exception {
+        final SmtpConnectionPool pool = new SmtpConnectionPool();
+        final Transport transport = Mockito.mock(Transport.class);
+        final PooledTransport pooledTransport = new PooledTransport(session, transport);
+        pool.release(pooledTransport);
+        assertSame(pooledTransport, pool.borrow(createProperties(), session));
+        Mockito.verify(transport, Mockito.never()).isConnected();
+        pool.shutDown();
+    }
+
+    @Test
+    public void testRefusedMessageNotCounted() throws Exception {
+        final SmtpConnectionPool pool = new SmtpConnectionPool(1, SmtpConnectionPool.DEFAULT_MAX_IDLE, SmtpConnectionPool.DEFAULT_IDLE_MILLIS);
+        final Transport transport = createConnectedTransport();
+        final PooledTransport pooledTransport = new PooledTransport(session, transport);
+        pool.release(pooledTransport, false);
+        assertEquals(0, pooledTransport.getMessagesSent());
+        assertEquals(1, pool.getIdleCount());
+        pool.borrow(createProperties(), session);
+        pool.release(pooledTransport);
+        assertEquals(0, pool.getIdleCount());
+        Mockito.verify(transport).close();
+        pool.shutDown();
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        final SmtpConnectionPool pool = new SmtpConnectionPool(SmtpConnectionPool.DEFAULT_MAX_MESSAGES, SmtpConnectionPool.DEFAULT_MAX_IDLE, 1);
+        final Transport transport = Mockito.mock(Transport.class);
+        pool.release(new PooledTransport(session, transport));
+        Thread.sleep(5);
+        pool.evictIdle();
+        assertEquals(0, pool.getIdleCount());
+        Mockito.verify(transport, Mockito.atLeastOnce()).close();
+        pool.shutDown();
+    }
+}
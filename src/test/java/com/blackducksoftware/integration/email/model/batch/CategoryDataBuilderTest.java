@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.model.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumMap;
+
+import org.junit.Test;
+
+import com.blackducksoftware.integration.hub.notification.processor.ItemTypeEnum;
+
+public class CategoryDataBuilderTest {
+    private ItemData createItem(final String component, final int count, final long createdAt) {
+        final EnumMap<ItemTypeEnum, Object> items = new EnumMap<>(ItemTypeEnum.class);
+        items.put(ItemTypeEnum.COMPONENT, component);
+        items.put(ItemTypeEnum.COUNT, count);
+        return new ItemData(items, createdAt);
+    }
+
+    private CategoryData buildCategory(final CategoryItemLimit itemLimit) {
+        final CategoryDataBuilder builder = new CategoryDataBuilder(itemLimit);
+        builder.setCategoryKey("POLICY_VIOLATION");
+        for (int index = 0; index < 10; index++) {
+            builder.addItem(createItem("component" + index, index % 4, index * 1000L));
+            builder.incrementItemCount(1);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testUnbounded() {
+        final CategoryData categoryData = buildCategory(CategoryItemLimit.UNBOUNDED);
+        assertEquals(10, categoryData.getItemList().size());
+        assertEquals(10, categoryData.getItemCount());
+        assertEquals(0, categoryData.getMoreItemCount());
+    }
+
+    @Test
+    public void testNewestItems() {
+        final CategoryData categoryData = buildCategory(new CategoryItemLimit(3, CategoryItemLimit.Order.NEWEST));
+        assertEquals(3, categoryData.getItemList().size());
+        assertEquals("component9", categoryData.getItemList().get(0).getComponent());
+        assertEquals("component8", categoryData.getItemList().get(1).getComponent());
+        assertEquals("component7", categoryData.getItemList().get(2).getComponent());
+        assertEquals(10, categoryData.getItemCount());
+        assertEquals(7, categoryData.getMoreItemCount());
+    }
+
+    @Test
+    public void testLargestCounts() {
+        final CategoryData categoryData = buildCategory(new CategoryItemLimit(3, CategoryItemLimit.Order.COUNT));
+        assertEquals(3, categoryData.getItemList().size());
+        assertEquals("component7", categoryData.getItemList().get(0).getComponent());
+        assertEquals("component3", categoryData.getItemList().get(1).getComponent());
+        assertEquals("component6", categoryData.getItemList().get(2).getComponent());
+        assertEquals(10, categoryData.getItemCount());
+        assertEquals(7, categoryData.getMoreItemCount());
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.batch.processor.ComponentVulnerabilityCache;
+import com.blackducksoftware.integration.email.batch.processor.ProcessorTestUtil;
+import com.blackducksoftware.integration.email.batch.processor.RollupProcessor;
+import com.blackducksoftware.integration.email.mock.MockLogger;
+import com.blackducksoftware.integration.email.mock.MockRestConnection;
+import com.blackducksoftware.integration.email.model.DateRange;
+import com.blackducksoftware.integration.email.model.batch.NotificationRollup;
+import com.blackducksoftware.integration.email.model.batch.ProjectRollup;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
+import com.blackducksoftware.integration.hub.dataservice.notification.NotificationDataService;
+import com.blackducksoftware.integration.hub.dataservice.notification.NotificationResults;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
+import com.blackducksoftware.integration.log.IntBufferedLogger;
+
+public class DailyRollupBuilderTest {
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private final ProcessorTestUtil testUtil = new ProcessorTestUtil();
+
+    private final LocalDate day = LocalDate.now().minusDays(1);
+
+    private File directory;
+
+    private DailyRollupStore rollupStore;
+
+    private NotificationDataService notificationDataService;
+
+    private RollupProcessor rollupProcessor;
+
+    private DailyRollupBuilder rollupBuilder;
+
+    @Before
+    public void init() throws Exception {
+        directory = Files.createTempDirectory("rollups").toFile();
+        rollupStore = new DailyRollupStore(directory, ZoneId.systemDefault());
+        notificationDataService = Mockito.mock(NotificationDataService.class);
+        final MetaService metaService = new HubServicesFactory(new MockRestConnection(new MockLogger(), null))
+                .createMetaService(new IntBufferedLogger());
+        rollupProcessor = new RollupProcessor(new ComponentVulnerabilityCache(Mockito.mock(HubResponseService.class),
+                Mockito.mock(VulnerabilityRequestService.class), metaService), metaService);
+        rollupBuilder = new DailyRollupBuilder(rollupStore, notificationDataService, rollupProcessor);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private NotificationResults createResults(final NotificationContentItem... items) {
+        final TreeSet<NotificationContentItem> itemSet = new TreeSet<>();
+        Collections.addAll(itemSet, items);
+        return new NotificationResults(itemSet, new ArrayList<>());
+    }
+
+    private ComponentVersionView createComponentVersion() {
+        final ComponentVersionView componentVersion = Mockito.mock(ComponentVersionView.class);
+        componentVersion.versionName = ProcessorTestUtil.VERSION;
+        return componentVersion;
+    }
+
+    @Test
+    public void testIncrementsCompleteTheDay() throws Exception {
+        final DateRange dayRange = rollupStore.getDayRange(day);
+        final long dayStart = dayRange.getStart().getTime();
+        final Date incrementEnd = new Date(dayStart + HOUR);
+        Mockito.when(notificationDataService.getAllNotifications(dayRange.getStart(), incrementEnd))
+                .thenReturn(createResults(testUtil.createPolicyViolation(new Date(dayStart + HOUR / 2), ProcessorTestUtil.PROJECT_NAME,
+                        ProcessorTestUtil.PROJECT_VERSION_NAME, ProcessorTestUtil.COMPONENT, createComponentVersion())));
+        Mockito.when(notificationDataService.getAllNotifications(new Date(incrementEnd.getTime() + 1), dayRange.getEnd()))
+                .thenReturn(createResults(testUtil.createPolicyCleared(new Date(dayStart + 2 * HOUR), ProcessorTestUtil.PROJECT_NAME,
+                        ProcessorTestUtil.PROJECT_VERSION_NAME, ProcessorTestUtil.COMPONENT, createComponentVersion())));
+
+        final NotificationRollup partialRollup = rollupBuilder.advance(day, incrementEnd);
+        assertEquals(Long.valueOf(incrementEnd.getTime()), partialRollup.getCoveredUntil());
+        assertEquals(1, partialRollup.getProjects().size());
+        assertNull(rollupStore.getRollup(day));
+        assertNotNull(rollupStore.getPartialRollup(day));
+
+        // the clearing in the rest of the day cancels the violation pre-aggregated earlier
+        final NotificationRollup dayRollup = rollupBuilder.getRollup(day);
+        assertNull(dayRollup.getCoveredUntil());
+        for (final ProjectRollup project : dayRollup.getProjects().values()) {
+            assertNull(rollupProcessor.createProjectData(project, EnumSet.allOf(NotificationCategoryEnum.class)));
+        }
+        assertNotNull(rollupStore.getRollup(day));
+        assertNull(rollupStore.getPartialRollup(day));
+        Mockito.verify(notificationDataService, Mockito.times(2)).getAllNotifications(Matchers.any(Date.class), Matchers.any(Date.class));
+
+        // a completed day is not fetched again
+        rollupBuilder.getRollup(day);
+        Mockito.verify(notificationDataService, Mockito.times(2)).getAllNotifications(Matchers.any(Date.class), Matchers.any(Date.class));
+    }
+
+    @Test
+    public void testFailedFetchKeepsPartialRollup() throws Exception {
+        final DateRange dayRange = rollupStore.getDayRange(day);
+        final Date incrementEnd = new Date(dayRange.getStart().getTime() + HOUR);
+        Mockito.when(notificationDataService.getAllNotifications(Matchers.any(Date.class), Matchers.any(Date.class)))
+                .thenReturn(createResults())
+                .thenReturn(new NotificationResults(new TreeSet<>(), Collections.singletonList(new Exception("partial"))));
+        rollupBuilder.advance(day, incrementEnd);
+
+        assertNull(rollupBuilder.getRollup(day));
+        assertNull(rollupStore.getRollup(day));
+        assertEquals(Long.valueOf(incrementEnd.getTime()), rollupStore.getPartialRollup(day).getCoveredUntil());
+    }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.blackducksoftware.integration.email.model.batch.CategoryData;
+import com.blackducksoftware.integration.email.model.batch.ItemData;
+import com.blackducksoftware.integration.email.model.batch.ProjectData;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+
+public class DigestFingerprintTest {
+    private final DigestFingerprint digestFingerprint = new DigestFingerprint();
+
+    private List<ProjectData> createProjectData(final String projectName, final String rule) {
+        final List<ItemData> itemList = new ArrayList<>();
+        final Map<String, Object> dataSet = new HashMap<>();
+        dataSet.put("RULE", rule);
+        dataSet.put("COMPONENT", "component");
+        itemList.add(ItemData.fromDataSet(dataSet));
+        final Map<NotificationCategoryEnum, CategoryData> categoryMap = new TreeMap<>();
+        categoryMap.put(NotificationCategoryEnum.POLICY_VIOLATION,
+                new CategoryData(NotificationCategoryEnum.POLICY_VIOLATION.name(), itemList, itemList.size()));
+        final List<ProjectData> projectList = new ArrayList<>();
+        projectList.add(new ProjectData(projectName, "1.0", categoryMap));
+        return projectList;
+    }
+
+    @Test
+    public void testSameContentSameFingerprint() {
+        assertEquals(digestFingerprint.create("digest.ftl", createProjectData("project", "rule")),
+                digestFingerprint.create("digest.ftl", createProjectData("project", "rule")));
+    }
+
+    @Test
+    public void testDifferentContentDifferentFingerprint() {
+        final String fingerprint = digestFingerprint.create("digest.ftl", createProjectData("project", "rule"));
+        assertNotEquals(fingerprint, digestFingerprint.create("digest.ftl", createProjectData("project", "other rule")));
+        assertNotEquals(fingerprint, digestFingerprint.create("digest.ftl", createProjectData("other project", "rule")));
+        assertNotEquals(fingerprint, digestFingerprint.create("custom.ftl", createProjectData("project", "rule")));
+    }
+
+    @Test
+    public void testFieldBoundaries() {
+        assertNotEquals(digestFingerprint.create("digest.ftl", createProjectData("ab", "c")),
+                digestFingerprint.create("digest.ftl", createProjectData("a", "bc")));
+    }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.integration.email.model.DateRange;
+
+public class NotifierCheckpointStoreTest {
+    private static final String USER_1 = "http://hub/api/users/1";
+
+    private static final String USER_2 = "http://hub/api/users/2";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DateRange dateRange = new DateRange(new Date(1000000L), new Date(2000000L));
+
+    @Test
+    public void testResumePartialRun() throws Exception {
+        final File file = new File(folder.getRoot(), "digest-checkpoint.properties");
+        final NotifierCheckpointStore store = new NotifierCheckpointStore(file);
+        store.beginRun(dateRange);
+        store.advanceUser(USER_1, dateRange.getEnd());
+
+        final NotifierCheckpointStore reloaded = new NotifierCheckpointStore(file);
+        final DateRange pendingRun = reloaded.getPendingRun();
+        assertEquals(dateRange.getStart(), pendingRun.getStart());
+        assertEquals(dateRange.getEnd(), pendingRun.getEnd());
+        assertEquals(1, reloaded.getRunAttempts());
+        assertNull(reloaded.getWatermark());
+        assertTrue(reloaded.isDelivered(USER_1, pendingRun));
+        assertFalse(reloaded.isDelivered(USER_2, pendingRun));
+
+        reloaded.beginRun(pendingRun);
+        assertEquals(2, reloaded.getRunAttempts());
+    }
+
+    @Test
+    public void testCompleteRun() throws Exception {
+        final File file = new File(folder.getRoot(), "digest-checkpoint.properties");
+        final NotifierCheckpointStore store = new NotifierCheckpointStore(file);
+        store.beginRun(dateRange);
+        store.advanceUser(USER_1, dateRange.getEnd());
+        store.advanceUser(USER_2, dateRange.getEnd());
+        store.completeRun(Arrays.asList(USER_1));
+
+        final NotifierCheckpointStore reloaded = new NotifierCheckpointStore(file);
+        assertNull(reloaded.getPendingRun());
+        assertEquals(dateRange.getEnd(), reloaded.getWatermark());
+        assertTrue(reloaded.isCompleted(dateRange));
+        assertEquals(dateRange.getEnd(), reloaded.getUserWatermark(USER_1));
+        assertNull(reloaded.getUserWatermark(USER_2));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testJournalMarks() throws Exception {
+        final File file = new File(folder.getRoot(), "digest-checkpoint.properties");
+        final File journalFile = new File(file.getPath() + ".journal");
+        final NotifierCheckpointStore store = new NotifierCheckpointStore(file, 2);
+        store.beginRun(dateRange);
+        final long checkpointLength = file.length();
+        for (int index = 0; index < 5; index++) {
+            store.advanceUser(USER_1 + index, dateRange.getEnd());
+        }
+        assertEquals(checkpointLength, file.length());
+        assertTrue(journalFile.exists());
+
+        final NotifierCheckpointStore reloaded = new NotifierCheckpointStore(file);
+        for (int index = 0; index < 5; index++) {
+            assertTrue(reloaded.isDelivered(USER_1 + index, dateRange));
+        }
+        assertFalse(reloaded.isDelivered(USER_2, dateRange));
+
+        store.completeRun(Arrays.asList(USER_1 + 0));
+        assertFalse(journalFile.exists());
+        final NotifierCheckpointStore completed = new NotifierCheckpointStore(file);
+        assertEquals(dateRange.getEnd(), completed.getUserWatermark(USER_1 + 0));
+        assertNull(completed.getUserWatermark(USER_1 + 1));
+    }
+
+    @Test
+    public void testInitializeWatermark() throws Exception {
+        final File file = new File(folder.getRoot(), "digest-checkpoint.properties");
+        final NotifierCheckpointStore store = new NotifierCheckpointStore(file);
+        store.initializeWatermark(dateRange.getStart());
+        assertEquals(dateRange.getStart(), store.getWatermark());
+        store.beginRun(dateRange);
+        store.completeRun(Collections.emptyList());
+        store.initializeWatermark(dateRange.getStart());
+        assertEquals(dateRange.getEnd(), store.getWatermark());
+    }
+
+    @Test
+    public void testFailuresClearedOnDelivery() throws Exception {
+        final File file = new File(folder.getRoot(), "digest-checkpoint.properties");
+        final NotifierCheckpointStore store = new NotifierCheckpointStore(file);
+        store.beginRun(dateRange);
+        store.advanceUser(USER_1, dateRange.getEnd());
+        assertEquals(1, store.recordFailure(USER_2));
+        store.completeRun(Arrays.asList(USER_1, USER_2));
+
+        // the failed user keeps no watermark for the window while the others move on
+        final NotifierCheckpointStore reloaded = new NotifierCheckpointStore(file);
+        assertTrue(reloaded.isCompleted(dateRange));
+        assertFalse(reloaded.isDelivered(USER_2, dateRange));
+        assertEquals(1, reloaded.getFailures(USER_2));
+        assertEquals(2, reloaded.recordFailure(USER_2));
+        reloaded.advanceUser(USER_2, dateRange.getEnd());
+        assertEquals(0, reloaded.getFailures(USER_2));
+
+        reloaded.completeRun(Arrays.asList(USER_1));
+        assertEquals(0, new NotifierCheckpointStore(file).getFailures(USER_2));
+    }
+}
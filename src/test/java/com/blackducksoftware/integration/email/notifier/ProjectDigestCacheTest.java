@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.notifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.batch.processor.ComponentVulnerabilityCache;
+import com.blackducksoftware.integration.email.batch.processor.ProcessorTestUtil;
+import com.blackducksoftware.integration.email.mock.MockLogger;
+import com.blackducksoftware.integration.email.mock.MockRestConnection;
+import com.blackducksoftware.integration.email.model.ExtensionProperties;
+import com.blackducksoftware.integration.email.model.JavaMailWrapper;
+import com.blackducksoftware.integration.email.model.ProjectNotificationIndex;
+import com.blackducksoftware.integration.email.model.batch.ProjectData;
+import com.blackducksoftware.integration.email.service.EmailMessagingService;
+import com.blackducksoftware.integration.hub.api.item.MetaService;
+import com.blackducksoftware.integration.hub.api.vulnerability.VulnerabilityRequestService;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+import com.blackducksoftware.integration.hub.rest.RestConnection;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
+import com.blackducksoftware.integration.log.IntBufferedLogger;
+
+import freemarker.template.Configuration;
+
+public class ProjectDigestCacheTest {
+    private final ProcessorTestUtil testUtil = new ProcessorTestUtil();
+
+    private MetaService metaService;
+
+    private ComponentVulnerabilityCache componentVulnerabilityCache;
+
+    private ProjectNotificationIndex notificationIndex;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void init() throws Exception {
+        final RestConnection restConnection = new MockRestConnection(new MockLogger(), null);
+        metaService = new HubServicesFactory(restConnection).createMetaService(new IntBufferedLogger());
+        componentVulnerabilityCache = new ComponentVulnerabilityCache(Mockito.mock(HubResponseService.class),
+                Mockito.mock(VulnerabilityRequestService.class), metaService);
+        final ComponentVersionView componentVersion = Mockito.mock(ComponentVersionView.class);
+        componentVersion.versionName = ProcessorTestUtil.VERSION;
+        final List<NotificationContentItem> notifications = new ArrayList<>();
+        notifications.add(testUtil.createPolicyViolation(new Date(), ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME,
+                ProcessorTestUtil.COMPONENT, componentVersion));
+        notifications.add(testUtil.createPolicyViolation(new Date(System.currentTimeMillis() + 1000), ProcessorTestUtil.PROJECT_NAME2,
+                ProcessorTestUtil.PROJECT_VERSION_NAME2, ProcessorTestUtil.COMPONENT2, componentVersion));
+        notificationIndex = new ProjectNotificationIndex(notifications);
+    }
+
+    // the test util's version urls carry no '/versions/' segment so each one is also its own project url
+    private String getProjectUrl(final String projectName, final String projectVersionName) {
+        return ProcessorTestUtil.PROJECT_VERSION_URL_PREFIX + projectName + ProcessorTestUtil.PROJECT_VERSION_URL_SEGMENT + projectVersionName;
+    }
+
+    private EmailMessagingService createEmailMessagingService() {
+        final Configuration configuration = new Configuration(Configuration.VERSION_2_3_25);
+        configuration.setClassForTemplateLoading(getClass(), "/templates");
+        return new EmailMessagingService(new ExtensionProperties(new Properties()), configuration, Mockito.mock(JavaMailWrapper.class));
+    }
+
+    private Map<String, Object> createDigestModel(final Collection<ProjectData> projectList) {
+        final Map<String, Object> model = new HashMap<>();
+        model.put(AbstractDigestNotifier.KEY_TOPICS_LIST, projectList);
+        model.put(AbstractDigestNotifier.KEY_NOTIFIER_CATEGORY, "DAILY");
+        model.put("hub_server_url", "http://hub.a.domain.com");
+        model.put("logo_image", "logo");
+        return model;
+    }
+
+    @Test
+    public void testProjectDataProcessedOnce() throws Exception {
+        final ProjectDigestCache projectDigests = new ProjectDigestCache(notificationIndex, componentVulnerabilityCache, metaService,
+                createEmailMessagingService(), EnumSet.allOf(NotificationCategoryEnum.class));
+        final Collection<ProjectData> projectList = projectDigests.getProjectData(Collections.singleton(getProjectUrl(ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME)));
+        assertEquals(1, projectList.size());
+        assertEquals(ProcessorTestUtil.PROJECT_NAME, projectList.iterator().next().getProjectName());
+
+        final Collection<ProjectData> bothProjects = projectDigests.getProjectData(
+                Arrays.asList(getProjectUrl(ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME), getProjectUrl(ProcessorTestUtil.PROJECT_NAME2, ProcessorTestUtil.PROJECT_VERSION_NAME2)));
+        assertEquals(2, bothProjects.size());
+        assertSame(projectList.iterator().next(), bothProjects.iterator().next());
+        assertEquals(2, projectDigests.getProjectVersionCount());
+    }
+
+    @Test
+    public void testFragmentsMatchWholeRender() throws Exception {
+        final EmailMessagingService emailMessagingService = createEmailMessagingService();
+        final ProjectDigestCache projectDigests = new ProjectDigestCache(notificationIndex, componentVulnerabilityCache, metaService,
+                emailMessagingService, EnumSet.allOf(NotificationCategoryEnum.class));
+        final Collection<ProjectData> projectList = projectDigests.getProjectData(
+                Arrays.asList(getProjectUrl(ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME), getProjectUrl(ProcessorTestUtil.PROJECT_NAME2, ProcessorTestUtil.PROJECT_VERSION_NAME2)));
+        final List<String> fragments = projectDigests.getFragments("digest.ftl", projectList);
+        assertEquals(2, fragments.size());
+        assertSame(fragments.get(0), projectDigests.getFragments("digest.ftl", projectList).get(0));
+        assertEquals(2, projectDigests.getFragmentCount());
+
+        final Map<String, Object> model = createDigestModel(projectList);
+        final String wholeHtml = emailMessagingService.renderTemplate("digest.ftl", model);
+        model.put(AbstractDigestNotifier.KEY_TOPIC_FRAGMENTS, fragments);
+        final String composedHtml = emailMessagingService.renderTemplate("digest.ftl", model);
+        assertEquals(wholeHtml.replaceAll("\\s+", " "), composedHtml.replaceAll("\\s+", " "));
+    }
+
+    @Test
+    public void testMissingProjectTemplate() throws Exception {
+        final ProjectDigestCache projectDigests = new ProjectDigestCache(notificationIndex, componentVulnerabilityCache, metaService,
+                createEmailMessagingService(), EnumSet.allOf(NotificationCategoryEnum.class));
+        final Collection<ProjectData> projectList = projectDigests.getProjectData(Collections.singleton(getProjectUrl(ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME)));
+        assertNull(projectDigests.getFragments("sampleTemplate.ftl", projectList));
+    }
+
+    @Test
+    public void testDigestWithoutProjectTemplateDirectory() throws Exception {
+        // a custom template directory from before the project template was split out of digest.ftl
+        final File templateDirectory = folder.newFolder("templates");
+        try (InputStream input = getClass().getResourceAsStream("/templates/digest.ftl")) {
+            Files.copy(input, new File(templateDirectory, "digest.ftl").toPath());
+        }
+        final Configuration configuration = new Configuration(Configuration.VERSION_2_3_25);
+        configuration.setDirectoryForTemplateLoading(templateDirectory);
+        final EmailMessagingService emailMessagingService = new EmailMessagingService(new ExtensionProperties(new Properties()), configuration,
+                Mockito.mock(JavaMailWrapper.class));
+        final ProjectDigestCache projectDigests = new ProjectDigestCache(notificationIndex, componentVulnerabilityCache, metaService,
+                emailMessagingService, EnumSet.allOf(NotificationCategoryEnum.class));
+        final Collection<ProjectData> projectList = projectDigests.getProjectData(Collections.singleton(getProjectUrl(ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME)));
+        assertNull(projectDigests.getFragments("digest.ftl", projectList));
+
+        final String html = emailMessagingService.renderTemplate("digest.ftl", createDigestModel(projectList));
+        assertTrue(html.contains(ProcessorTestUtil.PROJECT_NAME + " > " + ProcessorTestUtil.PROJECT_VERSION_NAME));
+        assertEquals(createEmailMessagingService().renderTemplate("digest.ftl", createDigestModel(projectList)), html);
+    }
+}
@@ -44,6 +44,7 @@ import com.blackducksoftware.integration.email.model.batch.CategoryData;
 import com.blackducksoftware.integration.email.model.batch.ItemData;
 import com.blackducksoftware.integration.email.model.batch.ProjectData;
 import com.blackducksoftware.integration.email.notifier.AbstractDigestNotifier;
+import com.blackducksoftware.integration.hub.notification.processor.ItemTypeEnum;
 import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
 
 import freemarker.template.TemplateException;
@@ -94,8 +95,10 @@ public class EmailMessagingServiceTest {
             final List<ItemData> itemList = new ArrayList<>(15);
             for (int itemIndex = 0; itemIndex < 15; itemIndex++) {
                 final Map<String, Object> dataSet = new HashMap<>();
-                dataSet.put("KEY_" + itemIndex, "VALUE_" + itemIndex);
-                itemList.add(new ItemData(dataSet));
+                dataSet.put(ItemTypeEnum.RULE.name(), "RULE_" + itemIndex);
+                dataSet.put(ItemTypeEnum.COMPONENT.name(), "COMPONENT_" + itemIndex);
+                dataSet.put(ItemTypeEnum.VERSION.name(), "VERSION_" + itemIndex);
+                itemList.add(ItemData.fromDataSet(dataSet));
             }
             final String projectName = "PROJECT_NAME";
             final String projectVersion = "PROJECT_VERSION";
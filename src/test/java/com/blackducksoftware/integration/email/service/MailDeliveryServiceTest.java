@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import javax.mail.Message;
+import javax.mail.Session;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.model.ExtensionProperties;
+import com.blackducksoftware.integration.email.model.JavaMailWrapper;
+import com.blackducksoftware.integration.email.model.MailSpool;
+
+public class MailDeliveryServiceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSpoolDrainedOnceConfigured() throws Exception {
+        final File directory = folder.newFolder("spool");
+        final MailSpool previousSpool = new MailSpool(directory);
+        previousSpool.append("Subject: left over\r\n\r\nbody\r\n".getBytes(StandardCharsets.UTF_8));
+        previousSpool.close();
+
+        final JavaMailWrapper javaMailWrapper = Mockito.mock(JavaMailWrapper.class);
+        final MailSpool mailSpool = new MailSpool(directory);
+        final MailDeliveryService deliveryService = new MailDeliveryService(javaMailWrapper, mailSpool, 1, 3);
+        deliveryService.start();
+        Thread.sleep(100);
+        // nothing is sent before the configuration with the Hub's settings is known
+        Mockito.verifyZeroInteractions(javaMailWrapper);
+        assertEquals(1, deliveryService.getQueueDepth());
+
+        final ExtensionProperties properties = new ExtensionProperties(new Properties());
+        final Session session = Session.getInstance(new Properties());
+        deliveryService.configure(properties, session);
+        Mockito.verify(javaMailWrapper, Mockito.timeout(5000)).sendMessage(Matchers.same(properties), Matchers.same(session),
+                Matchers.any(Message.class));
+        deliveryService.shutDown();
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.batch.processor.ProcessorTestUtil;
+import com.blackducksoftware.integration.email.model.DateRange;
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.dataservice.notification.NotificationDataService;
+import com.blackducksoftware.integration.hub.dataservice.notification.NotificationResults;
+import com.blackducksoftware.integration.hub.dataservice.notification.model.NotificationContentItem;
+import com.blackducksoftware.integration.hub.model.view.ComponentVersionView;
+
+public class NotificationIngestServiceTest {
+    private static final String USER_KEY = "http://hub.a.domain.com/api/users/1";
+
+    private static final String OTHER_USER_KEY = "http://hub.a.domain.com/api/users/2";
+
+    private static final String PROJECT_URL = ProcessorTestUtil.PROJECT_VERSION_URL_PREFIX + ProcessorTestUtil.PROJECT_NAME
+            + ProcessorTestUtil.PROJECT_VERSION_URL_SEGMENT + ProcessorTestUtil.PROJECT_VERSION_NAME;
+
+    private final ProcessorTestUtil testUtil = new ProcessorTestUtil();
+
+    private NotificationDataService notificationDataService;
+
+    private NotificationIngestService ingestService;
+
+    @Before
+    public void init() {
+        notificationDataService = Mockito.mock(NotificationDataService.class);
+        ingestService = new NotificationIngestService(notificationDataService, 32);
+    }
+
+    private NotificationContentItem createNotification(final long createdAt, final String projectName, final String projectVersionName)
+            throws URISyntaxException, IntegrationException {
+        final ComponentVersionView componentVersion = Mockito.mock(ComponentVersionView.class);
+        componentVersion.versionName = ProcessorTestUtil.VERSION;
+        return testUtil.createPolicyViolation(new Date(createdAt), projectName, projectVersionName, ProcessorTestUtil.COMPONENT, componentVersion);
+    }
+
+    private void returnNotifications(final NotificationContentItem... items) throws Exception {
+        final SortedSet<NotificationContentItem> itemSet = new TreeSet<>();
+        Collections.addAll(itemSet, items);
+        Mockito.when(notificationDataService.getAllNotifications(Matchers.any(Date.class), Matchers.any(Date.class)))
+                .thenReturn(new NotificationResults(itemSet, new ArrayList<>()));
+    }
+
+    @Test
+    public void testSpanIsPolledOnce() throws Exception {
+        returnNotifications();
+        ingestService.ensureIngested(new Date(1000));
+        Mockito.verify(notificationDataService, Mockito.never()).getAllNotifications(Matchers.any(Date.class), Matchers.any(Date.class));
+
+        ingestService.ensureIngested(new Date(2000));
+        ingestService.ensureIngested(new Date(2000));
+        ingestService.ensureIngested(new Date(1500));
+        Mockito.verify(notificationDataService, Mockito.times(1)).getAllNotifications(new Date(1001), new Date(2000));
+        assertEquals(new Date(2000), ingestService.getCursor());
+    }
+
+    @Test
+    public void testMailboxCollectsSubscribedProjects() throws Exception {
+        final Set<String> projectUrls = Collections.singleton(PROJECT_URL);
+        ingestService.ensureIngested(new Date(1000));
+        // opened before anything was ingested for it, the current window is left to the caller
+        assertNull(ingestService.readMailbox(USER_KEY, projectUrls, new DateRange(new Date(0), new Date(1000))));
+
+        returnNotifications(createNotification(1500, ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME),
+                createNotification(1600, ProcessorTestUtil.PROJECT_NAME2, ProcessorTestUtil.PROJECT_VERSION_NAME2));
+        ingestService.ensureIngested(new Date(2000));
+        final DateRange window = new DateRange(new Date(1001), new Date(2000));
+        final SortedSet<NotificationContentItem> items = ingestService.readMailbox(USER_KEY, projectUrls, window);
+        assertNotNull(items);
+        assertEquals(1, items.size());
+        assertEquals(1500, items.first().getCreatedAt().getTime());
+
+        // a window past the cursor has not been ingested yet
+        assertNull(ingestService.readMailbox(USER_KEY, projectUrls, new DateRange(new Date(2001), new Date(3000))));
+
+        ingestService.acknowledge(USER_KEY, window.getEnd());
+        assertEquals(0, ingestService.getMailboxSize(USER_KEY));
+        assertNull(ingestService.readMailbox(USER_KEY, projectUrls, window));
+    }
+
+    @Test
+    public void testMailboxesReadTogether() throws Exception {
+        final Map<String, Set<String>> userProjectUrls = new HashMap<>();
+        userProjectUrls.put(USER_KEY, Collections.singleton(PROJECT_URL));
+        userProjectUrls.put(OTHER_USER_KEY, Collections.singleton(ProcessorTestUtil.PROJECT_VERSION_URL_PREFIX + ProcessorTestUtil.PROJECT_NAME2
+                + ProcessorTestUtil.PROJECT_VERSION_URL_SEGMENT + ProcessorTestUtil.PROJECT_VERSION_NAME2));
+        ingestService.ensureIngested(new Date(1000));
+        assertNull(ingestService.readMailboxes(userProjectUrls, new DateRange(new Date(0), new Date(1000))));
+
+        returnNotifications(createNotification(1500, ProcessorTestUtil.PROJECT_NAME, ProcessorTestUtil.PROJECT_VERSION_NAME),
+                createNotification(1600, ProcessorTestUtil.PROJECT_NAME2, ProcessorTestUtil.PROJECT_VERSION_NAME2));
+        ingestService.ensureIngested(new Date(2000));
+        final SortedSet<NotificationContentItem> items = ingestService.readMailboxes(userProjectUrls, new DateRange(new Date(1001), new Date(2000)));
+        assertNotNull(items);
+        assertEquals(2, items.size());
+    }
+
+    @Test
+    public void testNewProjectRestartsCoverage() throws Exception {
+        returnNotifications();
+        ingestService.ensureIngested(new Date(1000));
+        ingestService.readMailbox(USER_KEY, Collections.singleton(PROJECT_URL), new DateRange(new Date(0), new Date(1000)));
+        ingestService.ensureIngested(new Date(2000));
+        final DateRange window = new DateRange(new Date(1001), new Date(2000));
+        assertNotNull(ingestService.readMailbox(USER_KEY, Collections.singleton(PROJECT_URL), window));
+
+        final Set<String> moreProjectUrls = new TreeSet<>();
+        moreProjectUrls.add(PROJECT_URL);
+        moreProjectUrls.add(ProcessorTestUtil.PROJECT_VERSION_URL_PREFIX + ProcessorTestUtil.PROJECT_NAME2);
+        assertNull(ingestService.readMailbox(USER_KEY, moreProjectUrls, window));
+        ingestService.ensureIngested(new Date(3000));
+        assertNotNull(ingestService.readMailbox(USER_KEY, moreProjectUrls, new DateRange(new Date(2001), new Date(3000))));
+    }
+
+    @Test
+    public void testFailedPollKeepsCursor() throws Exception {
+        ingestService.ensureIngested(new Date(1000));
+        ingestService.readMailbox(USER_KEY, Collections.singleton(PROJECT_URL), new DateRange(new Date(0), new Date(1000)));
+        final ArrayList<Exception> exceptions = new ArrayList<>();
+        exceptions.add(new Exception("partial"));
+        Mockito.when(notificationDataService.getAllNotifications(Matchers.any(Date.class), Matchers.any(Date.class)))
+                .thenReturn(new NotificationResults(new TreeSet<>(), exceptions));
+        ingestService.ensureIngested(new Date(2000));
+        assertEquals(new Date(1000), ingestService.getCursor());
+        assertNull(ingestService.readMailbox(USER_KEY, Collections.singleton(PROJECT_URL), new DateRange(new Date(1001), new Date(2000))));
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.mail.Message;
+import javax.mail.Session;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.model.ExtensionProperties;
+import com.blackducksoftware.integration.email.model.JavaMailWrapper;
+import com.blackducksoftware.integration.email.model.RenderedEmail;
+
+import freemarker.cache.StringTemplateLoader;
+import freemarker.template.Configuration;
+
+public class SharedRenderTest {
+    private Configuration createConfiguration() {
+        final StringTemplateLoader templateLoader = new StringTemplateLoader();
+        templateLoader.putTemplate("digest.ftl", "<html><body>${personal_header}<p>${body}</p></body></html>");
+        templateLoader.putTemplate("digest.header.ftl", "<p>Hello ${user_first_name}</p>");
+        templateLoader.putTemplate("plain.ftl", "<html><body>${personal_header}<p>${body}</p></body></html>");
+        templateLoader.putTemplate("plain.txt.ftl", "TITLE\n\n${personal_header}${body}\n");
+        templateLoader.putTemplate("plain.header.ftl", "<#-- no greeting -->");
+        final Configuration configuration = new Configuration(Configuration.VERSION_2_3_25);
+        configuration.setTemplateLoader(templateLoader);
+        return configuration;
+    }
+
+    @Test
+    public void testHeaderRenderedPerRecipient() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty(ExtensionProperties.EMAIL_FROM_ADDRESS_KEY, "noreply@a.domain.com");
+        final JavaMailWrapper javaMailWrapper = Mockito.mock(JavaMailWrapper.class);
+        final EmailMessagingService emailMessagingService = new EmailMessagingService(new ExtensionProperties(properties),
+                createConfiguration(), javaMailWrapper);
+
+        final Map<String, Object> model = new HashMap<>();
+        model.put("body", "shared body");
+        final RenderedEmail renderedEmail = emailMessagingService.renderEmail("digest.ftl", model, null);
+        for (final String firstName : new String[] { "Ann", "Bob" }) {
+            final Map<String, Object> personalModel = new HashMap<>();
+            personalModel.put("user_first_name", firstName);
+            emailMessagingService.sendRenderedEmail(firstName + "@a.domain.com", renderedEmail, personalModel, null);
+        }
+
+        final ArgumentCaptor<Message> messages = ArgumentCaptor.forClass(Message.class);
+        Mockito.verify(javaMailWrapper, Mockito.times(2)).sendMessage(Mockito.any(ExtensionProperties.class), Mockito.any(Session.class),
+                messages.capture());
+        final List<Message> sentMessages = messages.getAllValues();
+        assertEquals(2, sentMessages.size());
+        final String first = writeMessage(sentMessages.get(0));
+        final String second = writeMessage(sentMessages.get(1));
+        assertTrue(first.contains("<p>Hello Ann</p><p>shared body</p>"));
+        assertTrue(second.contains("<p>Hello Bob</p><p>shared body</p>"));
+        assertTrue(sentMessages.get(1).getAllRecipients()[0].toString().startsWith("Bob@"));
+    }
+
+    @Test
+    public void testEmptyHeaderLeavesBodyUnchanged() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty(ExtensionProperties.EMAIL_FROM_ADDRESS_KEY, "noreply@a.domain.com");
+        final JavaMailWrapper javaMailWrapper = Mockito.mock(JavaMailWrapper.class);
+        final EmailMessagingService emailMessagingService = new EmailMessagingService(new ExtensionProperties(properties),
+                createConfiguration(), javaMailWrapper);
+
+        final Map<String, Object> model = new HashMap<>();
+        model.put("body", "shared body");
+        model.put(EmailMessagingService.TEXT_MODE_KEY, EmailMessagingService.TEXT_MODE_TEMPLATE);
+        final RenderedEmail renderedEmail = emailMessagingService.renderEmail("plain.ftl", model, null);
+        final Map<String, Object> personalModel = new HashMap<>();
+        personalModel.put("user_first_name", "Ann");
+        emailMessagingService.sendRenderedEmail("Ann@a.domain.com", renderedEmail, personalModel, null);
+
+        final ArgumentCaptor<Message> messages = ArgumentCaptor.forClass(Message.class);
+        Mockito.verify(javaMailWrapper).sendMessage(Mockito.any(ExtensionProperties.class), Mockito.any(Session.class), messages.capture());
+        final String message = writeMessage(messages.getValue());
+        assertTrue(message.contains("<html><body><p>shared body</p></body></html>"));
+        assertTrue(message.contains("TITLE\n\nshared body"));
+    }
+
+    private String writeMessage(final Message message) throws Exception {
+        message.saveChanges();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        message.writeTo(output);
+        return output.toString("UTF-8");
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.model.ExtensionProperties;
+import com.blackducksoftware.integration.email.model.JavaMailWrapper;
+import com.blackducksoftware.integration.email.model.RenderedEmail;
+
+import freemarker.cache.StringTemplateLoader;
+import freemarker.template.Configuration;
+
+public class TemplateVariablesTest {
+    private EmailMessagingService createService() {
+        final Properties properties = new Properties();
+        properties.setProperty(ExtensionProperties.TEMPLATE_VARIABLE_PREFIX + "all.templates.subject_line", "all subject");
+        properties.setProperty(ExtensionProperties.TEMPLATE_VARIABLE_PREFIX + "digest.ftl.subject_line", "digest subject");
+        properties.setProperty(ExtensionProperties.TEMPLATE_VARIABLE_PREFIX + "all.templates.footer", "all footer");
+        properties.setProperty(ExtensionProperties.TEMPLATE_VARIABLE_PREFIX + "all.templates.logo.image", "images/logo.png");
+        properties.setProperty(ExtensionProperties.TEMPLATE_VARIABLE_PREFIX + "other.ftl.title", "other title");
+        final StringTemplateLoader templateLoader = new StringTemplateLoader();
+        templateLoader.putTemplate("digest.ftl", "<p>${footer}</p>");
+        templateLoader.putTemplate("other.ftl", "<p>${title}</p>");
+        final Configuration configuration = new Configuration(Configuration.VERSION_2_3_25);
+        configuration.setTemplateLoader(templateLoader);
+        return new EmailMessagingService(new ExtensionProperties(properties), configuration, Mockito.mock(JavaMailWrapper.class));
+    }
+
+    @Test
+    public void testTemplateValuesOverrideAllTemplates() throws Exception {
+        final EmailMessagingService emailMessagingService = createService();
+        for (int index = 0; index < 2; index++) {
+            final RenderedEmail renderedEmail = emailMessagingService.renderEmail("digest.ftl", new HashMap<String, Object>(), null);
+            final Map<String, Object> model = renderedEmail.getModel();
+            assertEquals("digest subject", model.get("subject_line"));
+            assertEquals("all footer", model.get("footer"));
+            assertFalse(model.containsKey("title"));
+            assertEquals("logobdimage@blackducksoftware.com", model.get("logo_image"));
+            assertEquals("images/logo.png", renderedEmail.getContentIdsToFilePaths().get("<logobdimage@blackducksoftware.com>"));
+        }
+
+        final RenderedEmail otherEmail = emailMessagingService.renderEmail("other.ftl", new HashMap<String, Object>(), null);
+        assertEquals("all subject", otherEmail.getModel().get("subject_line"));
+        assertEquals("other title", otherEmail.getModel().get("title"));
+    }
+
+    @Test
+    public void testCallerValuesKeptOverAllTemplates() throws Exception {
+        final Map<String, Object> model = new HashMap<>();
+        model.put("footer", "caller footer");
+        model.put("logo_image", "caller logo");
+        model.put("subject_line", "caller subject");
+        final RenderedEmail renderedEmail = createService().renderEmail("digest.ftl", model, null);
+        assertEquals("caller footer", renderedEmail.getModel().get("footer"));
+        assertEquals("caller logo", renderedEmail.getModel().get("logo_image"));
+        assertEquals("digest subject", renderedEmail.getModel().get("subject_line"));
+        assertTrue(renderedEmail.getContentIdsToFilePaths().isEmpty());
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.blackducksoftware.integration.email.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.blackducksoftware.integration.email.EmailExtensionConstants;
+import com.blackducksoftware.integration.email.model.EmailFrequency;
+import com.blackducksoftware.integration.email.model.UserProfile;
+import com.blackducksoftware.integration.hub.dataservice.extension.item.UserConfigItem;
+import com.blackducksoftware.integration.hub.model.view.ExternalExtensionConfigValueView;
+import com.blackducksoftware.integration.hub.model.view.UserView;
+import com.blackducksoftware.integration.hub.notification.processor.NotificationCategoryEnum;
+
+public class UserProfileServiceTest {
+    private static final String USER_KEY = "http://hub.a.domain.com/api/users/1";
+
+    private UserConfigItem createUserConfig(final String frequency, final String... triggers) {
+        final Map<String, ExternalExtensionConfigValueView> configMap = new HashMap<>();
+        configMap.put(EmailExtensionConstants.CONFIG_KEY_OPT_IN, createValue("true"));
+        configMap.put(EmailExtensionConstants.CONFIG_KEY_FREQUENCY, createValue(frequency));
+        configMap.put(EmailExtensionConstants.CONFIG_KEY_TRIGGERS, createValue(triggers));
+        configMap.put(EmailExtensionConstants.CONFIG_KEY_TEMPLATE_NAME, createValue("digest.ftl"));
+        final UserConfigItem userConfig = Mockito.mock(UserConfigItem.class);
+        Mockito.when(userConfig.getConfigMap()).thenReturn(configMap);
+        return userConfig;
+    }
+
+    private ExternalExtensionConfigValueView createValue(final String... values) {
+        final ExternalExtensionConfigValueView configValue = new ExternalExtensionConfigValueView();
+        configValue.value = Arrays.asList(values);
+        return configValue;
+    }
+
+    @Test
+    public void testProfileCompiled() {
+        final UserProfileService userProfileService = new UserProfileService(Mockito.mock(UserProjectService.class));
+        final UserProfile profile = userProfileService.getProfile(USER_KEY,
+                createUserConfig("Daily", "POLICY_VIOLATION", "NOT_A_TRIGGER", "HIGH_VULNERABILITY"));
+        assertTrue(profile.isOptedIn());
+        assertEquals(EmailFrequency.DAILY, profile.getFrequency());
+        assertEquals(EnumSet.of(NotificationCategoryEnum.POLICY_VIOLATION, NotificationCategoryEnum.HIGH_VULNERABILITY), profile.getTriggers());
+        assertTrue(profile.hasTrigger(NotificationCategoryEnum.HIGH_VULNERABILITY));
+        assertFalse(profile.hasTrigger(NotificationCategoryEnum.LOW_VULNERABILITY));
+        assertEquals("digest.ftl", profile.getTemplateName());
+    }
+
+    @Test
+    public void testProfileRecompiledOnConfigChange() {
+        final UserProfileService userProfileService = new UserProfileService(Mockito.mock(UserProjectService.class));
+        final UserProfile profile = userProfileService.getProfile(USER_KEY, createUserConfig("Daily", "POLICY_VIOLATION"));
+        assertSame(profile, userProfileService.getProfile(USER_KEY, createUserConfig("Daily", "POLICY_VIOLATION")));
+
+        final UserProfile changedProfile = userProfileService.getProfile(USER_KEY, createUserConfig("Real Time", "POLICY_VIOLATION"));
+        assertNotSame(profile, changedProfile);
+        assertEquals(EmailFrequency.REAL_TIME, changedProfile.getFrequency());
+        assertEquals(1, userProfileService.size());
+    }
+
+    @Test
+    public void testProjectUrlsCached() throws Exception {
+        final UserProjectService userProjectService = Mockito.mock(UserProjectService.class);
+        final Set<String> projectUrls = Collections.singleton("http://hub.a.domain.com/api/projects/1");
+        final UserView user = new UserView();
+        Mockito.when(userProjectService.getProjectUrls(user)).thenReturn(projectUrls);
+        final UserProfileService userProfileService = new UserProfileService(userProjectService);
+
+        final UserProfile profile = userProfileService.getProfile(USER_KEY, createUserConfig("Daily", "POLICY_VIOLATION"));
+        assertEquals(projectUrls, userProfileService.getProjectUrls(profile, user));
+        final UserProfile resolvedProfile = userProfileService.getProfile(USER_KEY, createUserConfig("Daily", "POLICY_VIOLATION"));
+        assertEquals(projectUrls, userProfileService.getProjectUrls(resolvedProfile, user));
+        Mockito.verify(userProjectService, Mockito.times(1)).getProjectUrls(user);
+        assertTrue(userProfileService.getSubscriptionIndex().isSubscribed(USER_KEY, "http://hub.a.domain.com/api/projects/1/versions/2"));
+
+        userProfileService.retainUsers(Collections.<String> emptyList());
+        assertEquals(0, userProfileService.size());
+        assertFalse(userProfileService.getSubscriptionIndex().hasUser(USER_KEY));
+    }
+}